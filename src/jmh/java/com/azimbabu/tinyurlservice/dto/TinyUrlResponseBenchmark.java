@@ -0,0 +1,63 @@
+package com.azimbabu.tinyurlservice.dto;
+
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import com.azimbabu.tinyurlservice.model.UserUDT;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/** Throughput and allocation of the JSON serialization of @{@link TinyUrlResponse}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TinyUrlResponseBenchmark {
+
+  private ObjectMapper objectMapper;
+
+  private ObjectWriter responseWriter;
+
+  private TinyUrlResponse response;
+
+  @Setup
+  public void setUp() {
+    objectMapper = new ObjectMapper();
+    responseWriter = objectMapper.writerFor(TinyUrlResponse.class);
+    Instant now = Instant.now();
+    response =
+        TinyUrlResponse.builder()
+            .success(true)
+            .data(
+                TinyUrl.builder()
+                    .shortUrl("aB3dE5g")
+                    .originalUrl("https://www.example.com/articles/2020/01/some-long-article-title")
+                    .user(UserUDT.builder().username("testuser@gmail.com").build())
+                    .createdAt(Date.from(now))
+                    .expiredAt(Date.from(now.plus(Duration.ofDays(30))))
+                    .build())
+            .build();
+  }
+
+  /** Serialization with a writer resolved once, as the bulk endpoint does. */
+  @Benchmark
+  public byte[] writeWithWriter() throws IOException {
+    return responseWriter.writeValueAsBytes(response);
+  }
+
+  /** Serialization through the mapper, resolving the serializer on every call. */
+  @Benchmark
+  public byte[] writeWithMapper() throws IOException {
+    return objectMapper.writeValueAsBytes(response);
+  }
+}
@@ -0,0 +1,52 @@
+package com.azimbabu.tinyurlservice.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Throughput and allocation of the base62 short url key codec. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ShortKeyCodecBenchmark {
+
+  private ShortKeyCodec shortKeyCodec;
+
+  private long id;
+
+  private String key;
+
+  @Setup
+  public void setUp() {
+    shortKeyCodec = new ShortKeyCodec(7, "benchmark-secret");
+    key = shortKeyCodec.encodeId(123_456_789L);
+  }
+
+  @Benchmark
+  public String encode() {
+    id = (id + 1) % shortKeyCodec.getKeySpace();
+    return shortKeyCodec.encode(id);
+  }
+
+  @Benchmark
+  public String encodeId() {
+    id = (id + 1) % shortKeyCodec.getKeySpace();
+    return shortKeyCodec.encodeId(id);
+  }
+
+  @Benchmark
+  public String randomKey() {
+    return shortKeyCodec.randomKey();
+  }
+
+  @Benchmark
+  public long decodeId() {
+    return shortKeyCodec.decodeId(key);
+  }
+}
@@ -0,0 +1,180 @@
+package com.azimbabu.tinyurlservice.service;
+
+import com.azimbabu.tinyurlservice.cache.TinyUrlCache;
+import com.azimbabu.tinyurlservice.cache.UserCache;
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import com.azimbabu.tinyurlservice.repository.LinkByUserRepository;
+import com.azimbabu.tinyurlservice.repository.ReactiveLinkByUserRepository;
+import com.azimbabu.tinyurlservice.repository.ReactiveTinyUrlRepository;
+import com.azimbabu.tinyurlservice.repository.TinyUrlRepository;
+import com.azimbabu.tinyurlservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.cassandra.core.CassandraOperations;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and allocation of the create and lookup paths of @{@link TinyUrlService}, with the
+ * repositories replaced by an in-memory map so that only the service, codec and cache are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TinyUrlServiceBenchmark {
+
+  /** Number of distinct short urls looked up, larger than the cache to measure misses. */
+  @Param({"1000", "1000000"})
+  public int keyCount;
+
+  private final Map<String, TinyUrl> store = new ConcurrentHashMap<>();
+
+  /** The looked up urls, restored before every iteration to drop the urls created by the last. */
+  private final Map<String, TinyUrl> seeded = new HashMap<>();
+
+  private String[] shortUrls;
+
+  private TinyUrlService tinyUrlService;
+
+  @Setup
+  public void setUp() {
+    TinyUrlProperties tinyUrlProperties =
+        TinyUrlProperties.builder()
+            .shortUrlLength(7)
+            .maxShortUrlRetry(5)
+            .maxUrlExpirationInDays(365)
+            .defaultUrlExpirationInDays(30)
+            .keyRangeEnabled(false)
+            .keySecret("benchmark-secret")
+            .storageTtlEnabled(true)
+            .cacheMaximumSize(100_000L)
+            .cacheTtlInSeconds(3600L)
+            .cacheNegativeTtlInSeconds(10L)
+            .userCacheMaximumSize(1000L)
+            .userCacheTtlInSeconds(300L)
+            .build();
+
+    TinyUrlRepository tinyUrlRepository =
+        stub(
+            TinyUrlRepository.class,
+            (method, args) -> {
+              switch (method) {
+                case "findByShortUrl":
+                  return Optional.ofNullable(store.get((String) args[0]));
+                case "insertIfNotExists":
+                  TinyUrl tinyUrl = (TinyUrl) args[0];
+                  return store.putIfAbsent(tinyUrl.getShortUrl(), tinyUrl) == null;
+                case "replaceIfExpiredAt":
+                  TinyUrl replacement = (TinyUrl) args[0];
+                  TinyUrl existing = store.get(replacement.getShortUrl());
+                  return existing != null
+                      && Objects.equals(existing.getExpiredAt(), args[1])
+                      && store.replace(replacement.getShortUrl(), existing, replacement);
+                default:
+                  throw new UnsupportedOperationException(method);
+              }
+            });
+
+    tinyUrlService =
+        new TinyUrlService(
+            tinyUrlRepository,
+            stub(ReactiveTinyUrlRepository.class, null),
+            stub(LinkByUserRepository.class, null),
+            stub(ReactiveLinkByUserRepository.class, null),
+            new UserCache(
+                stub(UserRepository.class, (method, args) -> Optional.empty()),
+                tinyUrlProperties,
+                new SimpleMeterRegistry()),
+            tinyUrlProperties,
+            new ShortKeyAllocator(stub(CassandraOperations.class, null), tinyUrlProperties),
+            new TinyUrlCache(tinyUrlProperties, new SimpleMeterRegistry()),
+            Optional.empty(),
+            Optional.empty(),
+            Optional.empty(),
+            Optional.empty(),
+            new SimpleMeterRegistry());
+
+    ShortKeyCodec shortKeyCodec = new ShortKeyCodec(7, "benchmark-secret");
+    Date expiredAt = Date.from(Instant.now().plus(Duration.ofDays(30)));
+    shortUrls = new String[keyCount];
+    for (int i = 0; i < keyCount; i++) {
+      shortUrls[i] = shortKeyCodec.encodeId(i);
+      seeded.put(
+          shortUrls[i],
+          TinyUrl.builder()
+              .shortUrl(shortUrls[i])
+              .originalUrl("https://www.example.com/articles/" + i)
+              .createdAt(new Date())
+              .expiredAt(expiredAt)
+              .build());
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void resetStore() {
+    store.clear();
+    store.putAll(seeded);
+  }
+
+  @Benchmark
+  public Optional<TinyUrl> getTinyUrlByShortUrl() {
+    return tinyUrlService.getTinyUrlByShortUrl(
+        shortUrls[ThreadLocalRandom.current().nextInt(keyCount)]);
+  }
+
+  @Benchmark
+  public TinyUrl createTinyUrl() {
+    return tinyUrlService.createTinyUrl("https://www.example.com/new", null, null, null);
+  }
+
+  /** Interface stub answering every call with the handler, or failing if there is none. */
+  @SuppressWarnings("unchecked")
+  private static <T> T stub(Class<T> type, StubHandler handler) {
+    return (T)
+        Proxy.newProxyInstance(
+            type.getClassLoader(),
+            new Class<?>[] {type},
+            (proxy, method, args) -> {
+              if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                  case "equals":
+                    return proxy == args[0];
+                  case "hashCode":
+                    return System.identityHashCode(proxy);
+                  default:
+                    return type.getSimpleName();
+                }
+              }
+              if (handler == null) {
+                if (method.getName().equals("getCqlOperations")) {
+                  return null;
+                }
+                throw new UnsupportedOperationException(method.getName());
+              }
+              return handler.handle(method.getName(), args);
+            });
+  }
+
+  private interface StubHandler {
+    Object handle(String method, Object[] args);
+  }
+}
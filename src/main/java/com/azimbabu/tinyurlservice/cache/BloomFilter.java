@@ -0,0 +1,117 @@
+package com.azimbabu.tinyurlservice.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Thread safe Bloom filter of strings. Bits are set with a CAS on an @{@link AtomicLongArray}, so
+ * concurrent puts and lookups never lock. Bit indexes are derived from two 64 bit hashes of the
+ * key (Kirsch-Mitzenmacher double hashing).
+ */
+public class BloomFilter {
+
+  private final long bitSize;
+  private final int hashCount;
+  private final AtomicLongArray words;
+
+  public BloomFilter(long bitSize, int hashCount) {
+    checkArgument(bitSize > 0 && hashCount > 0, "Bloom filter dimensions should be positive");
+    long wordCount = (bitSize + 63) / 64;
+    checkArgument(wordCount <= Integer.MAX_VALUE, "Bloom filter is too large");
+    this.bitSize = wordCount * 64;
+    this.hashCount = hashCount;
+    this.words = new AtomicLongArray((int) wordCount);
+  }
+
+  /**
+   * Creates a filter sized for the expected number of keys.
+   *
+   * @param expectedInsertions number of keys the filter should hold.
+   * @param falsePositiveProbability false positive probability at the expected number of keys.
+   */
+  public static BloomFilter create(long expectedInsertions, double falsePositiveProbability) {
+    checkArgument(expectedInsertions > 0, "Expected insertions should be positive");
+    checkArgument(
+        falsePositiveProbability > 0 && falsePositiveProbability < 1,
+        "False positive probability should be between 0 and 1");
+    long bitSize =
+        (long)
+            Math.ceil(
+                -expectedInsertions
+                    * Math.log(falsePositiveProbability)
+                    / (Math.log(2) * Math.log(2)));
+    int hashCount =
+        Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+    return new BloomFilter(bitSize, hashCount);
+  }
+
+  public void put(String key) {
+    long hash1 = hash(key);
+    long hash2 = mix64(hash1 ^ 0x9e3779b97f4a7c15L);
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Long.remainderUnsigned(hash1 + i * hash2, bitSize);
+      int index = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      long word = words.get(index);
+      while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+        word = words.get(index);
+      }
+    }
+  }
+
+  /** False if the key was definitely never put, true if it probably was. */
+  public boolean mightContain(String key) {
+    long hash1 = hash(key);
+    long hash2 = mix64(hash1 ^ 0x9e3779b97f4a7c15L);
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Long.remainderUnsigned(hash1 + i * hash2, bitSize);
+      if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public long getBitSize() {
+    return bitSize;
+  }
+
+  public int getHashCount() {
+    return hashCount;
+  }
+
+  /** Writes the bits, readable with @{@link #readFrom(DataInputStream)}. */
+  public void writeTo(DataOutputStream out) throws IOException {
+    out.writeLong(bitSize);
+    out.writeInt(hashCount);
+    for (int i = 0; i < words.length(); i++) {
+      out.writeLong(words.get(i));
+    }
+  }
+
+  public static BloomFilter readFrom(DataInputStream in) throws IOException {
+    BloomFilter bloomFilter = new BloomFilter(in.readLong(), in.readInt());
+    for (int i = 0; i < bloomFilter.words.length(); i++) {
+      bloomFilter.words.set(i, in.readLong());
+    }
+    return bloomFilter;
+  }
+
+  private static long hash(String key) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < key.length(); i++) {
+      hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+    }
+    return mix64(hash);
+  }
+
+  private static long mix64(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+}
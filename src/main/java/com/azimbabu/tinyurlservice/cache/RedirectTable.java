@@ -0,0 +1,415 @@
+package com.azimbabu.tinyurlservice.cache;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.Redirect;
+import com.azimbabu.tinyurlservice.service.ShortKeyAllocator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.concurrent.locks.StampedLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Memory mapped open addressing table of short url to original url, kept off the java heap and
+ * persisted to a file so that a restarted node serves hot links straight away.
+ *
+ * <p>The file is one contiguous region: a header, then {@code capacity} slots of {@code
+ * [key bytes][expiry epoch seconds : int][data offset : int]}, then a data area used as a circular
+ * log of {@code [url length : short][key bytes][UTF-8 original url]} records. Keys are ASCII short
+ * urls of at most the short url length, zero padded. Expired entries are treated as misses. Once
+ * the slots are 75% full or the log reaches its tail, the oldest records are evicted one by one
+ * until the new entry fits. Their slots are removed with backward shift deletion, so probe chains
+ * stay intact. The @{@link TinyUrlCache} behind the table absorbs the misses of evicted entries.
+ *
+ * <p>The header records the @{@link ShortKeyAllocator#getEpoch() key epoch} the entries belong to.
+ * A file written before the keyspace or its {@code key_range} table was recreated is reset on
+ * open, since its short urls may have been handed out again with different original urls. The
+ * magic number is cleared before the first write and only set again by @{@link #flush()}, so a file
+ * left behind by a crash in the middle of a write is reset on open as well.
+ */
+@Component
+@ConditionalOnProperty(prefix = "tinyurl", name = "redirect-table-enabled", havingValue = "true")
+public class RedirectTable {
+
+  private static final int MAGIC = 0x54555255;
+  private static final int HEADER_SIZE = 48;
+  private static final int MAGIC_OFFSET = 0;
+  private static final int KEY_LENGTH_OFFSET = 4;
+  private static final int CAPACITY_OFFSET = 8;
+  private static final int DATA_CAPACITY_OFFSET = 12;
+  private static final int SIZE_OFFSET = 16;
+  private static final int DATA_HEAD_OFFSET = 20;
+  private static final int EPOCH_OFFSET = 24;
+  private static final int DATA_TAIL_OFFSET = 32;
+  private static final int DATA_USED_OFFSET = 36;
+  private static final int WRAP = 0xFFFF;
+  private static final int MAX_URL_BYTES = WRAP - 1;
+  private static final double MAX_LOAD_FACTOR = 0.75;
+
+  private final int keyLength;
+  private final int slotSize;
+  private final int capacity;
+  private final int dataStart;
+  private final int dataCapacity;
+  private final MappedByteBuffer buffer;
+  private final StampedLock lock = new StampedLock();
+  private boolean dirty;
+
+  @Autowired
+  public RedirectTable(TinyUrlProperties tinyUrlProperties, ShortKeyAllocator shortKeyAllocator)
+      throws IOException {
+    this(tinyUrlProperties, shortKeyAllocator.getEpoch());
+  }
+
+  /**
+   * @param tinyUrlProperties table location and dimensions.
+   * @param epoch key epoch of the entries, a file of another epoch is reset.
+   */
+  public RedirectTable(TinyUrlProperties tinyUrlProperties, long epoch) throws IOException {
+    this.keyLength = tinyUrlProperties.getShortUrlLength();
+    this.slotSize = keyLength + 8;
+    this.capacity = Integer.highestOneBit(tinyUrlProperties.getRedirectTableCapacity());
+    this.dataCapacity = tinyUrlProperties.getRedirectTableDataSizeInMb() * 1024 * 1024;
+
+    long fileSize = HEADER_SIZE + (long) capacity * slotSize + dataCapacity;
+    checkArgument(fileSize <= Integer.MAX_VALUE, "Redirect table should be smaller than 2GB");
+    this.dataStart = HEADER_SIZE + capacity * slotSize;
+
+    Path path = Paths.get(tinyUrlProperties.getRedirectTablePath());
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    try (FileChannel channel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+    }
+
+    if (buffer.getInt(MAGIC_OFFSET) != MAGIC
+        || buffer.getInt(KEY_LENGTH_OFFSET) != keyLength
+        || buffer.getInt(CAPACITY_OFFSET) != capacity
+        || buffer.getInt(DATA_CAPACITY_OFFSET) != dataCapacity
+        || buffer.getLong(EPOCH_OFFSET) != epoch) {
+      buffer.putInt(MAGIC_OFFSET, 0);
+      reset();
+      buffer.putInt(KEY_LENGTH_OFFSET, keyLength);
+      buffer.putInt(CAPACITY_OFFSET, capacity);
+      buffer.putInt(DATA_CAPACITY_OFFSET, dataCapacity);
+      buffer.putLong(EPOCH_OFFSET, epoch);
+      buffer.putInt(MAGIC_OFFSET, MAGIC);
+    }
+  }
+
+  /**
+   * Looks up a live redirect.
+   *
+   * @param shortUrl short url key.
+   * @return @{@link Redirect} or null if the key is absent or expired.
+   */
+  public Redirect get(String shortUrl) {
+    if (!isStorable(shortUrl)) {
+      return null;
+    }
+    long stamp = lock.tryOptimisticRead();
+    Redirect redirect;
+    try {
+      redirect = find(shortUrl);
+    } catch (RuntimeException e) {
+      // torn read while a writer was active, retried under the read lock below
+      redirect = null;
+    }
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        redirect = find(shortUrl);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return redirect;
+  }
+
+  /**
+   * Stores a redirect, evicting the oldest entries if the table is full. Keys longer than the short
+   * url length or non ASCII are ignored.
+   */
+  public void put(String shortUrl, Redirect redirect) {
+    if (!isStorable(shortUrl) || redirect.getExpiredAt() == null) {
+      return;
+    }
+    byte[] url = redirect.getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+    int recordSize = 2 + keyLength + url.length;
+    if (url.length > MAX_URL_BYTES || recordSize > dataCapacity) {
+      return;
+    }
+    int expiry = (int) Math.min(redirect.getExpiredAt().getTime() / 1000, 0xFFFFFFFFL);
+
+    long stamp = lock.writeLock();
+    try {
+      markDirty();
+      if (!holdsKey(slotOf(shortUrl), shortUrl)) {
+        while (buffer.getInt(SIZE_OFFSET) + 1 > capacity * MAX_LOAD_FACTOR) {
+          evictOldest();
+        }
+      }
+      int position = allocate(recordSize);
+
+      int record = dataStart + position;
+      buffer.putShort(record, (short) url.length);
+      putKey(record + 2, shortUrl);
+      for (int i = 0; i < url.length; i++) {
+        buffer.put(record + 2 + keyLength + i, url[i]);
+      }
+      buffer.putInt(DATA_HEAD_OFFSET, position + recordSize);
+      buffer.putInt(DATA_USED_OFFSET, buffer.getInt(DATA_USED_OFFSET) + recordSize);
+
+      // slots may have moved while evicting, so the key is looked up after making room
+      int slot = slotOf(shortUrl);
+      if (!holdsKey(slot, shortUrl)) {
+        putKey(slot, shortUrl);
+        buffer.putInt(SIZE_OFFSET, buffer.getInt(SIZE_OFFSET) + 1);
+      }
+      buffer.putInt(slot + keyLength, expiry);
+      buffer.putInt(slot + keyLength + 4, position + 1);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /** Marks the entry as expired, its slot stays in place to keep probe chains intact. */
+  public void invalidate(String shortUrl) {
+    if (!isStorable(shortUrl)) {
+      return;
+    }
+    long stamp = lock.writeLock();
+    try {
+      int slot = slotOf(shortUrl);
+      if (holdsKey(slot, shortUrl)) {
+        markDirty();
+        buffer.putInt(slot + keyLength, 0);
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  public int size() {
+    return buffer.getInt(SIZE_OFFSET);
+  }
+
+  /** Writes the table to its file and marks the file as consistent. */
+  @PreDestroy
+  public void flush() {
+    long stamp = lock.writeLock();
+    try {
+      buffer.force();
+      if (dirty) {
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.force();
+        dirty = false;
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  private Redirect find(String shortUrl) {
+    int mask = capacity - 1;
+    int index = hash(shortUrl) & mask;
+    for (int probe = 0; probe < capacity; probe++) {
+      int slot = HEADER_SIZE + index * slotSize;
+      int offset = buffer.getInt(slot + keyLength + 4);
+      if (offset == 0) {
+        return null;
+      }
+      if (keyEquals(slot, shortUrl)) {
+        long expiry = Integer.toUnsignedLong(buffer.getInt(slot + keyLength));
+        if (expiry * 1000 <= System.currentTimeMillis()) {
+          return null;
+        }
+        int record = dataStart + offset - 1;
+        byte[] url = new byte[Short.toUnsignedInt(buffer.getShort(record))];
+        for (int i = 0; i < url.length; i++) {
+          url[i] = buffer.get(record + 2 + keyLength + i);
+        }
+        return new Redirect(new String(url, StandardCharsets.UTF_8), new Date(expiry * 1000));
+      }
+      index = (index + 1) & mask;
+    }
+    return null;
+  }
+
+  /** Returns the slot holding the key, or the first empty slot of its probe chain. */
+  private int slotOf(String shortUrl) {
+    int mask = capacity - 1;
+    int index = hash(shortUrl) & mask;
+    while (true) {
+      int slot = HEADER_SIZE + index * slotSize;
+      if (buffer.getInt(slot + keyLength + 4) == 0 || keyEquals(slot, shortUrl)) {
+        return slot;
+      }
+      index = (index + 1) & mask;
+    }
+  }
+
+  private boolean holdsKey(int slot, String shortUrl) {
+    return buffer.getInt(slot + keyLength + 4) != 0 && keyEquals(slot, shortUrl);
+  }
+
+  private boolean keyEquals(int position, String shortUrl) {
+    for (int i = 0; i < keyLength; i++) {
+      byte expected = i < shortUrl.length() ? (byte) shortUrl.charAt(i) : 0;
+      if (buffer.get(position + i) != expected) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void putKey(int position, String shortUrl) {
+    for (int i = 0; i < keyLength; i++) {
+      buffer.put(position + i, i < shortUrl.length() ? (byte) shortUrl.charAt(i) : 0);
+    }
+  }
+
+  private String keyAt(int position) {
+    StringBuilder key = new StringBuilder(keyLength);
+    for (int i = 0; i < keyLength && buffer.get(position + i) != 0; i++) {
+      key.append((char) buffer.get(position + i));
+    }
+    return key.toString();
+  }
+
+  /**
+   * Returns the data position of a record of the given size at the head of the log, evicting the
+   * oldest records until it fits. A record never wraps around the end of the data area: the rest of
+   * the area is skipped, marked with @{@link #WRAP} if there is room for the marker.
+   */
+  private int allocate(int recordSize) {
+    while (true) {
+      int head = buffer.getInt(DATA_HEAD_OFFSET);
+      int tail = buffer.getInt(DATA_TAIL_OFFSET);
+      int used = buffer.getInt(DATA_USED_OFFSET);
+      if (used == 0 && (head != 0 || tail != 0)) {
+        buffer.putInt(DATA_HEAD_OFFSET, 0);
+        buffer.putInt(DATA_TAIL_OFFSET, 0);
+        continue;
+      }
+      boolean wrapped = head < tail || (head == tail && used > 0);
+      if (!wrapped) {
+        if (head + recordSize <= dataCapacity) {
+          return head;
+        }
+        if (head + 2 <= dataCapacity) {
+          buffer.putShort(dataStart + head, (short) WRAP);
+        }
+        buffer.putInt(DATA_USED_OFFSET, used + dataCapacity - head);
+        buffer.putInt(DATA_HEAD_OFFSET, 0);
+      } else if (tail - head >= recordSize) {
+        return head;
+      } else {
+        evictOldest();
+      }
+    }
+  }
+
+  /** Drops the record at the tail of the log and the slot still pointing at it, if any. */
+  private void evictOldest() {
+    int tail = buffer.getInt(DATA_TAIL_OFFSET);
+    int used = buffer.getInt(DATA_USED_OFFSET);
+    int record = dataStart + tail;
+    if (tail + 2 > dataCapacity || Short.toUnsignedInt(buffer.getShort(record)) == WRAP) {
+      buffer.putInt(DATA_USED_OFFSET, used - (dataCapacity - tail));
+      buffer.putInt(DATA_TAIL_OFFSET, 0);
+      return;
+    }
+    int recordSize = 2 + keyLength + Short.toUnsignedInt(buffer.getShort(record));
+    // a record overwritten by a later put of its key has no slot any more
+    int slot = slotOf(keyAt(record + 2));
+    if (buffer.getInt(slot + keyLength + 4) == tail + 1) {
+      removeSlot((slot - HEADER_SIZE) / slotSize);
+      buffer.putInt(SIZE_OFFSET, buffer.getInt(SIZE_OFFSET) - 1);
+    }
+    buffer.putInt(DATA_USED_OFFSET, used - recordSize);
+    buffer.putInt(DATA_TAIL_OFFSET, tail + recordSize);
+  }
+
+  /**
+   * Empties a slot and shifts the following entries of its probe chain back into the hole, so
+   * every remaining key is still reachable from its home slot without tombstones.
+   */
+  private void removeSlot(int index) {
+    int mask = capacity - 1;
+    int hole = index;
+    for (int next = (hole + 1) & mask; next != index; next = (next + 1) & mask) {
+      int slot = HEADER_SIZE + next * slotSize;
+      if (buffer.getInt(slot + keyLength + 4) == 0) {
+        break;
+      }
+      int home = hash(keyAt(slot)) & mask;
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        int target = HEADER_SIZE + hole * slotSize;
+        for (int i = 0; i < slotSize; i++) {
+          buffer.put(target + i, buffer.get(slot + i));
+        }
+        hole = next;
+      }
+    }
+    int slot = HEADER_SIZE + hole * slotSize;
+    for (int i = 0; i < slotSize; i++) {
+      buffer.put(slot + i, (byte) 0);
+    }
+  }
+
+  /** Clears the magic number before the first write since the last flush. */
+  private void markDirty() {
+    if (!dirty) {
+      buffer.putInt(MAGIC_OFFSET, 0);
+      buffer.force();
+      dirty = true;
+    }
+  }
+
+  private boolean isStorable(String shortUrl) {
+    if (shortUrl == null || shortUrl.isEmpty() || shortUrl.length() > keyLength) {
+      return false;
+    }
+    for (int i = 0; i < shortUrl.length(); i++) {
+      char c = shortUrl.charAt(i);
+      if (c == 0 || c > 127) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void reset() {
+    for (int position = HEADER_SIZE; position < dataStart; position++) {
+      buffer.put(position, (byte) 0);
+    }
+    buffer.putInt(SIZE_OFFSET, 0);
+    buffer.putInt(DATA_HEAD_OFFSET, 0);
+    buffer.putInt(DATA_TAIL_OFFSET, 0);
+    buffer.putInt(DATA_USED_OFFSET, 0);
+  }
+
+  private static int hash(String shortUrl) {
+    int hash = 0x811c9dc5;
+    for (int i = 0; i < shortUrl.length(); i++) {
+      hash = (hash ^ shortUrl.charAt(i)) * 0x01000193;
+    }
+    return hash ^ (hash >>> 16);
+  }
+}
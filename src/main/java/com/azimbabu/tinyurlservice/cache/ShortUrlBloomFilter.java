@@ -0,0 +1,236 @@
+package com.azimbabu.tinyurlservice.cache;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node local @{@link BloomFilter} of all live short urls, so that lookups of keys that were never
+ * created are answered without a Cassandra read.
+ *
+ * <p>Keys created through this node are added right away. The filter is rebuilt from a full scan
+ * of {@code tiny_url} every rebuild interval, which drops expired keys and picks up keys created
+ * on other nodes. Until then such keys look absent on this node, so only enable the filter when
+ * all writes go through one node or a redirect may 404 for up to one rebuild interval after the
+ * link was created elsewhere.
+ *
+ * <p>The filter is written to a snapshot file after every rebuild and on shutdown, and a clean
+ * shutdown also leaves a marker file next to it. A restarted node loads the snapshot instead of
+ * scanning the table only if the marker is present and the snapshot was built less than one
+ * rebuild interval ago. After a crash the snapshot lacks the keys created since it was written,
+ * and would report them as definitely absent. Without a usable snapshot every key is reported as
+ * possibly present until the first rebuild completes.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "tinyurl", name = "bloom-filter-enabled", havingValue = "true")
+public class ShortUrlBloomFilter {
+
+  private static final int SNAPSHOT_MAGIC = 0x54554246;
+  private static final int SCAN_FETCH_SIZE = 5000;
+
+  private static final String SELECT_SHORT_URLS = "SELECT shorturl, expiredat FROM tiny_url";
+
+  private Session session;
+
+  private TinyUrlProperties tinyUrlProperties;
+
+  private final Path snapshotPath;
+
+  private final Path cleanShutdownPath;
+
+  private final ScheduledExecutorService rebuildExecutor =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "bloom-filter-rebuild");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private volatile BloomFilter bloomFilter;
+
+  private volatile BloomFilter rebuilding;
+
+  private volatile long builtAt;
+
+  @Autowired
+  public ShortUrlBloomFilter(Session session, TinyUrlProperties tinyUrlProperties) {
+    this.session = session;
+    this.tinyUrlProperties = tinyUrlProperties;
+    this.snapshotPath = Paths.get(tinyUrlProperties.getBloomFilterPath());
+    this.cleanShutdownPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".clean");
+    this.bloomFilter = loadSnapshot();
+
+    long interval = tinyUrlProperties.getBloomFilterRebuildIntervalInMs();
+    long initialDelay =
+        bloomFilter == null
+            ? 0
+            : Math.max(0, interval - (System.currentTimeMillis() - builtAt));
+    rebuildExecutor.scheduleWithFixedDelay(
+        this::rebuild, initialDelay, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /** False if the short url definitely doesn't exist, true if it may exist. */
+  public boolean mightContain(String shortUrl) {
+    BloomFilter current = bloomFilter;
+    return current == null || current.mightContain(shortUrl);
+  }
+
+  /** Adds a short url created through this node. */
+  public void put(String shortUrl) {
+    BloomFilter current = bloomFilter;
+    if (current != null) {
+      current.put(shortUrl);
+    }
+    BloomFilter next = rebuilding;
+    if (next != null) {
+      next.put(shortUrl);
+    }
+  }
+
+  /** Rebuilds the filter from a scan of all live short urls and snapshots it. */
+  void rebuild() {
+    try {
+      BloomFilter next = newBloomFilter();
+      long startedAt = System.currentTimeMillis();
+      rebuilding = next;
+
+      Date now = new Date(startedAt);
+      long count = 0;
+      SimpleStatement scan = new SimpleStatement(SELECT_SHORT_URLS);
+      scan.setFetchSize(SCAN_FETCH_SIZE);
+      for (Row row : session.execute(scan)) {
+        Date expiredAt = row.getTimestamp("expiredat");
+        if (expiredAt == null || expiredAt.after(now)) {
+          next.put(row.getString("shorturl"));
+          count++;
+        }
+      }
+
+      bloomFilter = next;
+      builtAt = startedAt;
+      log.info(
+          "Rebuilt short url bloom filter with {} keys in {} ms",
+          count,
+          System.currentTimeMillis() - startedAt);
+      saveSnapshot();
+    } catch (RuntimeException e) {
+      log.warn("Failed to rebuild short url bloom filter", e);
+    } finally {
+      rebuilding = null;
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    rebuildExecutor.shutdownNow();
+    if (saveSnapshot()) {
+      try {
+        Files.write(cleanShutdownPath, new byte[0]);
+      } catch (IOException e) {
+        log.warn("Failed to mark a clean shutdown in {}", cleanShutdownPath, e);
+      }
+    }
+  }
+
+  private BloomFilter newBloomFilter() {
+    return BloomFilter.create(
+        tinyUrlProperties.getBloomFilterExpectedInsertions(),
+        tinyUrlProperties.getBloomFilterFalsePositiveProbability());
+  }
+
+  private BloomFilter loadSnapshot() {
+    // the marker only vouches for the snapshot written by the shutdown that created it
+    boolean cleanShutdown;
+    try {
+      cleanShutdown = Files.deleteIfExists(cleanShutdownPath);
+    } catch (IOException e) {
+      log.warn("Failed to remove the clean shutdown marker {}", cleanShutdownPath, e);
+      return null;
+    }
+    if (!cleanShutdown) {
+      if (Files.exists(snapshotPath)) {
+        log.info("Ignoring short url bloom filter snapshot left by an unclean shutdown");
+      }
+      return null;
+    }
+
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+      if (in.readInt() != SNAPSHOT_MAGIC) {
+        log.warn("Ignoring short url bloom filter snapshot {} of unknown format", snapshotPath);
+        return null;
+      }
+      long snapshotBuiltAt = in.readLong();
+      BloomFilter snapshot = BloomFilter.readFrom(in);
+      BloomFilter expected = newBloomFilter();
+      if (snapshot.getBitSize() != expected.getBitSize()
+          || snapshot.getHashCount() != expected.getHashCount()) {
+        log.info("Ignoring short url bloom filter snapshot sized for other settings");
+        return null;
+      }
+      if (System.currentTimeMillis() - snapshotBuiltAt
+          >= tinyUrlProperties.getBloomFilterRebuildIntervalInMs()) {
+        log.info("Ignoring short url bloom filter snapshot older than the rebuild interval");
+        return null;
+      }
+      builtAt = snapshotBuiltAt;
+      return snapshot;
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException | RuntimeException e) {
+      log.warn("Failed to load short url bloom filter snapshot {}", snapshotPath, e);
+      return null;
+    }
+  }
+
+  /** @return true if the snapshot was written. */
+  private synchronized boolean saveSnapshot() {
+    BloomFilter current = bloomFilter;
+    if (current == null) {
+      return false;
+    }
+    try {
+      if (snapshotPath.getParent() != null) {
+        Files.createDirectories(snapshotPath.getParent());
+      }
+      Path tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeLong(builtAt);
+        current.writeTo(out);
+      }
+      Files.move(
+          tempPath,
+          snapshotPath,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      return true;
+    } catch (IOException e) {
+      log.warn("Failed to save short url bloom filter snapshot {}", snapshotPath, e);
+      return false;
+    }
+  }
+}
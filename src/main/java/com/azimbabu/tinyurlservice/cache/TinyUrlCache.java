@@ -0,0 +1,273 @@
+package com.azimbabu.tinyurlservice.cache;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded W-TinyLFU read-through cache of tiny urls keyed by short url. Found entries live until
+ * their {@code expiredAt} or the cache ttl, whichever comes first. Missing keys are cached for a
+ * short negative ttl so that scans for random keys don't reach Cassandra every time.
+ *
+ * <p>Concurrent misses for the same key share a single load, on the blocking as well as on the
+ * reactive path. Hot entries are refreshed ahead of expiry: once an entry has lived the refresh
+ * ratio of its cache lifetime and is read at least the minimum hits per second, the next read
+ * reloads it in the background while the current value keeps being served. Entries that expire
+ * with their tiny url rather than the cache ttl are left to expire.
+ */
+@Slf4j
+@Component
+public class TinyUrlCache {
+
+  private final Cache<String, Entry> cache;
+
+  private final Map<String, Mono<Optional<TinyUrl>>> reactiveLoads = new ConcurrentHashMap<>();
+
+  private final Ticker ticker;
+
+  private final long ttlNanos;
+
+  private final long negativeTtlNanos;
+
+  private final boolean refreshAheadEnabled;
+
+  private final double refreshAheadRatio;
+
+  private final double refreshAheadMinHitsPerSecond;
+
+  private final Counter refreshCounter;
+
+  private final ExecutorService refreshExecutor =
+      Executors.newFixedThreadPool(
+          2,
+          runnable -> {
+            Thread thread = new Thread(runnable, "tiny-url-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  @Autowired
+  public TinyUrlCache(TinyUrlProperties tinyUrlProperties, MeterRegistry meterRegistry) {
+    this(tinyUrlProperties, meterRegistry, Ticker.systemTicker());
+  }
+
+  TinyUrlCache(TinyUrlProperties tinyUrlProperties, MeterRegistry meterRegistry, Ticker ticker) {
+    this.ticker = ticker;
+    this.ttlNanos = TimeUnit.SECONDS.toNanos(tinyUrlProperties.getCacheTtlInSeconds());
+    this.negativeTtlNanos =
+        TimeUnit.SECONDS.toNanos(tinyUrlProperties.getCacheNegativeTtlInSeconds());
+    this.refreshAheadEnabled =
+        Boolean.TRUE.equals(tinyUrlProperties.getCacheRefreshAheadEnabled());
+    this.refreshAheadRatio =
+        refreshAheadEnabled ? tinyUrlProperties.getCacheRefreshAheadRatio() : 1;
+    this.refreshAheadMinHitsPerSecond =
+        refreshAheadEnabled ? tinyUrlProperties.getCacheRefreshAheadMinHitsPerSecond() : 0;
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumSize(tinyUrlProperties.getCacheMaximumSize())
+            .expireAfter(new TinyUrlExpiry())
+            .ticker(ticker)
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "tinyUrl");
+    this.refreshCounter =
+        Counter.builder("tinyurl.cache.refreshes")
+            .description("Hot tiny urls reloaded ahead of their cache expiry")
+            .register(meterRegistry);
+  }
+
+  /**
+   * Returns the cached tiny url, loading it with the loader on a miss. Concurrent misses for the
+   * same key wait for a single load. A hot entry close to expiry is reloaded with the loader in
+   * the background, an entry loaded by this call is never old enough for that.
+   */
+  public Optional<TinyUrl> get(
+      String shortUrl, Function<String, Optional<TinyUrl>> loader) {
+    Entry entry = cache.get(shortUrl, key -> newEntry(loader.apply(key)));
+    if (shouldRefresh(entry)) {
+      try {
+        refreshExecutor.execute(
+            () -> {
+              try {
+                refreshed(shortUrl, entry, loader.apply(shortUrl));
+              } catch (RuntimeException e) {
+                refreshFailed(shortUrl, entry, e);
+              }
+            });
+      } catch (RejectedExecutionException e) {
+        entry.refreshing.set(false);
+      }
+    }
+    return entry.value;
+  }
+
+  /**
+   * Non-blocking variant of @{@link #get(String, Function)}. Concurrent misses for the same key
+   * subscribe to a single load, which completes even if the subscriber that started it cancels.
+   *
+   * @return @{@link Mono} of the lookup result, which is empty for a missing key.
+   */
+  public Mono<Optional<TinyUrl>> getReactive(
+      String shortUrl, Function<String, Mono<Optional<TinyUrl>>> loader) {
+    return Mono.defer(
+        () -> {
+          Entry entry = cache.getIfPresent(shortUrl);
+          if (entry == null) {
+            return reactiveLoads.computeIfAbsent(shortUrl, key -> load(key, loader));
+          }
+          if (shouldRefresh(entry)) {
+            loader
+                .apply(shortUrl)
+                .subscribe(
+                    value -> refreshed(shortUrl, entry, value),
+                    e -> refreshFailed(shortUrl, entry, e));
+          }
+          return Mono.just(entry.value);
+        });
+  }
+
+  /**
+   * Returns the cached tiny url without loading it.
+   *
+   * @return the cached lookup result, which is empty for a cached miss, or null if the key isn't
+   *     cached at all.
+   */
+  public Optional<TinyUrl> getIfPresent(String shortUrl) {
+    Entry entry = cache.getIfPresent(shortUrl);
+    return entry != null ? entry.value : null;
+  }
+
+  public void put(TinyUrl tinyUrl) {
+    put(tinyUrl.getShortUrl(), Optional.of(tinyUrl));
+  }
+
+  public void put(String shortUrl, Optional<TinyUrl> tinyUrl) {
+    cache.put(shortUrl, newEntry(tinyUrl));
+  }
+
+  public void invalidate(String shortUrl) {
+    cache.invalidate(shortUrl);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    refreshExecutor.shutdownNow();
+  }
+
+  private Mono<Optional<TinyUrl>> load(
+      String shortUrl, Function<String, Mono<Optional<TinyUrl>>> loader) {
+    // removed only once the load terminated, by then its result is in the cache
+    return loader
+        .apply(shortUrl)
+        .doOnNext(value -> cache.put(shortUrl, newEntry(value)))
+        .doFinally(signal -> reactiveLoads.remove(shortUrl))
+        .cache();
+  }
+
+  private Entry newEntry(Optional<TinyUrl> value) {
+    long lifetimeNanos;
+    boolean refreshable;
+    if (!value.isPresent()) {
+      lifetimeNanos = negativeTtlNanos;
+      refreshable = true;
+    } else if (value.get().getExpiredAt() == null) {
+      lifetimeNanos = ttlNanos;
+      refreshable = true;
+    } else {
+      long remainingMillis = value.get().getExpiredAt().getTime() - System.currentTimeMillis();
+      long remainingNanos = Math.max(0, Duration.ofMillis(remainingMillis).toNanos());
+      lifetimeNanos = Math.min(ttlNanos, remainingNanos);
+      refreshable = remainingNanos > ttlNanos;
+    }
+    return new Entry(value, ticker.read(), lifetimeNanos, refreshable && refreshAheadEnabled);
+  }
+
+  /** Counts the hit and claims the refresh of the entry if it is hot and close to expiry. */
+  private boolean shouldRefresh(Entry entry) {
+    if (!entry.refreshable) {
+      return false;
+    }
+    entry.hits.increment();
+    if (entry.refreshing.get()) {
+      return false;
+    }
+    long ageNanos = ticker.read() - entry.loadedAt;
+    if (ageNanos < entry.lifetimeNanos * refreshAheadRatio) {
+      return false;
+    }
+    double hitsPerSecond = entry.hits.sum() * 1e9 / Math.max(1, ageNanos);
+    return hitsPerSecond >= refreshAheadMinHitsPerSecond
+        && entry.refreshing.compareAndSet(false, true);
+  }
+
+  private void refreshed(String shortUrl, Entry entry, Optional<TinyUrl> value) {
+    // an entry replaced or evicted meanwhile is left alone
+    if (cache.asMap().replace(shortUrl, entry, newEntry(value))) {
+      refreshCounter.increment();
+    }
+  }
+
+  private void refreshFailed(String shortUrl, Entry entry, Throwable e) {
+    log.debug("Failed to refresh {}", shortUrl, e);
+    entry.refreshing.set(false);
+  }
+
+  private static class Entry {
+
+    private final Optional<TinyUrl> value;
+    private final long loadedAt;
+    private final long lifetimeNanos;
+    private final boolean refreshable;
+    private final LongAdder hits = new LongAdder();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private Entry(
+        Optional<TinyUrl> value, long loadedAt, long lifetimeNanos, boolean refreshable) {
+      this.value = value;
+      this.loadedAt = loadedAt;
+      this.lifetimeNanos = lifetimeNanos;
+      this.refreshable = refreshable;
+    }
+  }
+
+  private static class TinyUrlExpiry implements Expiry<String, Entry> {
+
+    @Override
+    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+      return entry.lifetimeNanos;
+    }
+
+    @Override
+    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+      return entry.lifetimeNanos;
+    }
+
+    @Override
+    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package com.azimbabu.tinyurlservice.cache;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.User;
+import com.azimbabu.tinyurlservice.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Bounded read-through cache of users keyed by username, so that creating many tiny urls for the
+ * same owner reads the user once per ttl instead of once per tiny url. Unknown usernames are not
+ * cached, a user created after a failed lookup is found on the next one.
+ */
+@Component
+public class UserCache {
+
+  private final Cache<String, User> cache;
+
+  private UserRepository userRepository;
+
+  @Autowired
+  public UserCache(
+      UserRepository userRepository,
+      TinyUrlProperties tinyUrlProperties,
+      MeterRegistry meterRegistry) {
+    this.userRepository = userRepository;
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumSize(tinyUrlProperties.getUserCacheMaximumSize())
+            .expireAfterWrite(Duration.ofSeconds(tinyUrlProperties.getUserCacheTtlInSeconds()))
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "user");
+  }
+
+  /**
+   * Returns the user, reading it from Cassandra on a miss. Concurrent misses for the same username
+   * wait for a single read.
+   */
+  public Optional<User> get(String username) {
+    return Optional.ofNullable(
+        cache.get(username, key -> userRepository.findByUsername(key).orElse(null)));
+  }
+
+  /** Drops the cached user, to be called whenever a user is updated or deleted. */
+  public void invalidate(String username) {
+    cache.invalidate(username);
+  }
+}
@@ -0,0 +1,44 @@
+package com.azimbabu.tinyurlservice.config;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fails startup while {@code tinyurl.key-secret} is unset or still the placeholder of the {@code
+ * dev} profile. Generated keys and their check digits are only as hard to guess as the secret, so
+ * only the {@code dev} profile may run without one.
+ */
+@Component
+public class KeySecretValidator implements InitializingBean {
+
+  static final String DEV_PROFILE = "dev";
+  static final String PLACEHOLDER_SECRET = "change-me";
+
+  private TinyUrlProperties tinyUrlProperties;
+
+  private Environment environment;
+
+  @Autowired
+  public KeySecretValidator(TinyUrlProperties tinyUrlProperties, Environment environment) {
+    this.tinyUrlProperties = tinyUrlProperties;
+    this.environment = environment;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    if (environment.acceptsProfiles(Profiles.of(DEV_PROFILE))) {
+      return;
+    }
+    String keySecret = tinyUrlProperties.getKeySecret();
+    if (StringUtils.isBlank(keySecret) || PLACEHOLDER_SECRET.equals(keySecret)) {
+      throw new IllegalStateException(
+          "Set tinyurl.key-secret, e.g. through TINYURL_KEY_SECRET, or run with the "
+              + DEV_PROFILE
+              + " profile");
+    }
+  }
+}
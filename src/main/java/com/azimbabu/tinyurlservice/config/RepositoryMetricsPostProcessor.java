@@ -0,0 +1,135 @@
+package com.azimbabu.tinyurlservice.config;
+
+import com.azimbabu.tinyurlservice.limit.LoadShedder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every call of every Spring Data repository bean in {@code tinyurl.repository}, tagged with
+ * the repository interface, the method and the outcome. Reactive results are timed from
+ * subscription until they terminate, not just until the @{@link Mono} or @{@link Flux} is
+ * assembled. Each call's latency is also fed to the @{@link LoadShedder} when load shedding is
+ * enabled.
+ *
+ * <p>The registry is resolved on first use since post processors are created before the beans the
+ * registry depends on. Timers are registered once per repository, method and outcome and reused,
+ * so a call doesn't pay for building the meter id and looking it up in the registry.
+ */
+@Component
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+  private static final String TIMER_NAME = "tinyurl.repository";
+
+  private final ObjectProvider<MeterRegistry> meterRegistry;
+
+  private final ObjectProvider<LoadShedder> loadShedder;
+
+  private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
+  public RepositoryMetricsPostProcessor(
+      ObjectProvider<MeterRegistry> meterRegistry, ObjectProvider<LoadShedder> loadShedder) {
+    this.meterRegistry = meterRegistry;
+    this.loadShedder = loadShedder;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (!(bean instanceof Repository)) {
+      return bean;
+    }
+    String repository =
+        Arrays.stream(bean.getClass().getInterfaces())
+            .filter(Repository.class::isAssignableFrom)
+            .map(Class::getSimpleName)
+            .findFirst()
+            .orElse(beanName);
+
+    ProxyFactory proxyFactory = new ProxyFactory(bean);
+    proxyFactory.addAdvice(
+        (MethodInterceptor)
+            invocation -> {
+              String method = invocation.getMethod().getName();
+              if (invocation.getMethod().getDeclaringClass() == Object.class) {
+                return invocation.proceed();
+              }
+              Timer.Sample sample = Timer.start(meterRegistry.getObject());
+              Object result;
+              try {
+                result = invocation.proceed();
+              } catch (Throwable e) {
+                record(sample.stop(timer(repository, method, "error")));
+                throw e;
+              }
+              if (result instanceof Mono) {
+                return Mono.defer(
+                    () -> {
+                      Timer.Sample subscribed = Timer.start(meterRegistry.getObject());
+                      return ((Mono<?>) result)
+                          .doFinally(
+                              signal ->
+                                  record(subscribed.stop(timer(repository, method, signal))));
+                    });
+              }
+              if (result instanceof Flux) {
+                return Flux.defer(
+                    () -> {
+                      Timer.Sample subscribed = Timer.start(meterRegistry.getObject());
+                      return ((Flux<?>) result)
+                          .doFinally(
+                              signal ->
+                                  record(subscribed.stop(timer(repository, method, signal))));
+                    });
+              }
+              record(sample.stop(timer(repository, method, "success")));
+              return result;
+            });
+    return proxyFactory.getProxy();
+  }
+
+  private void record(long nanos) {
+    loadShedder.ifAvailable(shedder -> shedder.recordLatency(nanos));
+  }
+
+  private Timer timer(String repository, String method, SignalType signal) {
+    return timer(
+        repository,
+        method,
+        signal == SignalType.ON_ERROR
+            ? "error"
+            : signal == SignalType.CANCEL ? "cancelled" : "success");
+  }
+
+  private Timer timer(String repository, String method, String outcome) {
+    return timers.computeIfAbsent(
+        new TimerKey(repository, method, outcome),
+        key ->
+            Timer.builder(TIMER_NAME)
+                .tag("repository", key.getRepository())
+                .tag("method", key.getMethod())
+                .tag("outcome", key.getOutcome())
+                .register(meterRegistry.getObject()));
+  }
+
+  @Data
+  @RequiredArgsConstructor
+  private static class TimerKey {
+    private final String repository;
+    private final String method;
+    private final String outcome;
+  }
+}
@@ -7,6 +7,8 @@ import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "tinyurl")
 @Data
@@ -18,4 +20,69 @@ public class TinyUrlProperties {
   private Integer shortUrlLength;
   private Integer defaultUrlExpirationInDays;
   private Integer maxUrlExpirationInDays;
+  private Boolean keyRangeEnabled;
+  private Integer keyRangeSize;
+  private Integer keyRangeRefillThreshold;
+  private Long keyRangeLeaseTimeoutInMs;
+  private String keySecret;
+  private Boolean keyCheckEnabled;
+  private Integer keyCheckDigits;
+  private Long cacheMaximumSize;
+  private Long cacheTtlInSeconds;
+  private Long cacheNegativeTtlInSeconds;
+  private Boolean cacheRefreshAheadEnabled;
+  private Double cacheRefreshAheadRatio;
+  private Double cacheRefreshAheadMinHitsPerSecond;
+  private Boolean redirectTableEnabled;
+  private String redirectTablePath;
+  private Integer redirectTableCapacity;
+  private Integer redirectTableDataSizeInMb;
+  private Boolean permanentRedirectEnabled;
+  private Long redirectMaxAgeInSeconds;
+  private Boolean storageTtlEnabled;
+  private Integer bulkInFlightWindow;
+  private Long clickFlushIntervalInMs;
+  private Integer clickFlushMaxInFlight;
+  private String nodeId;
+  private Integer topLinksCapacity;
+  private Integer topLinksSketchWidth;
+  private Integer topLinksSketchDepth;
+  private Long topLinksSnapshotIntervalInMs;
+  private Integer clickEventBufferSize;
+  private Long clickEventFlushIntervalInMs;
+  private Integer clickEventBatchSize;
+  private Integer clickEventMaxInFlight;
+  private Boolean bloomFilterEnabled;
+  private String bloomFilterPath;
+  private Long bloomFilterExpectedInsertions;
+  private Double bloomFilterFalsePositiveProbability;
+  private Long bloomFilterRebuildIntervalInMs;
+  private Long userCacheMaximumSize;
+  private Long userCacheTtlInSeconds;
+  private String lookupConsistencyLevel;
+  private String claimConsistencyLevel;
+  private String claimSerialConsistencyLevel;
+  private Boolean dedupeEnabled;
+  private Long dedupeWindowInSeconds;
+  private Boolean rateLimitEnabled;
+  private String rateLimitClientHeader;
+  private List<String> rateLimitTrustedProxies;
+  private Long rateLimitMaxClients;
+  private Double createRateLimitPerSecond;
+  private Integer createRateLimitBurst;
+  private Double redirectRateLimitPerSecond;
+  private Integer redirectRateLimitBurst;
+  private Boolean loadSheddingEnabled;
+  private Integer loadSheddingMaxConcurrency;
+  private Integer loadSheddingMinConcurrency;
+  private Long loadSheddingLatencyThresholdInMs;
+  private Boolean peerCacheEnabled;
+  private String peerCacheSelf;
+  private List<String> peerCachePeers;
+  private Integer peerCacheTimeoutInMs;
+  private Long peerCacheDownIntervalInMs;
+  private Integer peerCacheMaxConnections;
+  private Integer peerCacheServerMaxConnections;
+  private Long peerCacheNearMaximumSize;
+  private Long peerCacheNearTtlInSeconds;
 }
@@ -0,0 +1,54 @@
+package com.azimbabu.tinyurlservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs Tomcat request handling, and with it the blocking repository calls made by the
+ * controllers, on virtual threads instead of the bounded worker pool. A slow Cassandra replica
+ * then parks cheap virtual threads rather than exhausting the pool.
+ *
+ * <p>Requires a JDK with virtual threads (21 or later) at runtime. The executor is looked up
+ * reflectively so the build can keep targeting the current baseline JDK.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "tinyurl", name = "virtual-threads-enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+  private ExecutorService executor;
+
+  @Bean
+  public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+    executor = newVirtualThreadPerTaskExecutor();
+    log.info("Serving requests on virtual threads");
+    return protocolHandler -> protocolHandler.setExecutor(executor);
+  }
+
+  /** Tomcat doesn't shut down an executor it was given, requests still running may finish. */
+  @PreDestroy
+  public void shutdown() {
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(
+          "tinyurl.virtual-threads-enabled requires a JDK with virtual threads (21+), running on "
+              + System.getProperty("java.version"),
+          e);
+    }
+  }
+}
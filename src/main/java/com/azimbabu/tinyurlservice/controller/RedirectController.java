@@ -0,0 +1,94 @@
+package com.azimbabu.tinyurlservice.controller;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.Redirect;
+import com.azimbabu.tinyurlservice.service.TinyUrlService;
+import com.azimbabu.tinyurlservice.stats.ClickCounter;
+import com.azimbabu.tinyurlservice.stats.ClickEventRecorder;
+import com.azimbabu.tinyurlservice.stats.TopLinksTracker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Serves short url redirects with an empty body. Only the {@code Location} and {@code
+ * Cache-Control} headers are written, the tiny url metadata is available from @{@link
+ * TinyUrlController}.
+ */
+@RestController
+public class RedirectController {
+
+  private TinyUrlService tinyUrlService;
+
+  private TinyUrlProperties tinyUrlProperties;
+
+  private ClickCounter clickCounter;
+
+  private TopLinksTracker topLinksTracker;
+
+  private ClickEventRecorder clickEventRecorder;
+
+  @Autowired
+  public RedirectController(
+      TinyUrlService tinyUrlService,
+      TinyUrlProperties tinyUrlProperties,
+      ClickCounter clickCounter,
+      TopLinksTracker topLinksTracker,
+      ClickEventRecorder clickEventRecorder) {
+    this.tinyUrlService = tinyUrlService;
+    this.tinyUrlProperties = tinyUrlProperties;
+    this.clickCounter = clickCounter;
+    this.topLinksTracker = topLinksTracker;
+    this.clickEventRecorder = clickEventRecorder;
+  }
+
+  /**
+   * Redirects to the original url. The lookup is non-blocking, so the request thread is released
+   * while a cache miss is read from Cassandra.
+   */
+  @GetMapping("/{short-url}")
+  public Mono<ResponseEntity<Void>> redirect(
+      @PathVariable("short-url") String shortUrl,
+      @RequestHeader(value = HttpHeaders.REFERER, required = false) String referrer,
+      @RequestHeader(value = HttpHeaders.USER_AGENT, required = false) String userAgent) {
+    return tinyUrlService
+        .findRedirectReactive(shortUrl)
+        .doOnNext(
+            redirect -> {
+              clickCounter.record(shortUrl);
+              topLinksTracker.record(shortUrl);
+              clickEventRecorder.record(shortUrl, referrer, userAgent);
+            })
+        .map(this::buildRedirectResponse)
+        .defaultIfEmpty(ResponseEntity.notFound().build());
+  }
+
+  private ResponseEntity<Void> buildRedirectResponse(Redirect redirect) {
+    long remainingSeconds =
+        Math.max(
+            0,
+            Duration.ofMillis(redirect.getExpiredAt().getTime() - System.currentTimeMillis())
+                .getSeconds());
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.add(HttpHeaders.LOCATION, redirect.getOriginalUrl());
+    if (Boolean.TRUE.equals(tinyUrlProperties.getPermanentRedirectEnabled())) {
+      headers.setCacheControl(
+          CacheControl.maxAge(Duration.ofSeconds(remainingSeconds)).cachePublic());
+      return new ResponseEntity<>(headers, HttpStatus.MOVED_PERMANENTLY);
+    }
+
+    long maxAge = Math.min(remainingSeconds, tinyUrlProperties.getRedirectMaxAgeInSeconds());
+    headers.setCacheControl(CacheControl.maxAge(Duration.ofSeconds(maxAge)).cachePrivate());
+    return new ResponseEntity<>(headers, HttpStatus.FOUND);
+  }
+}
@@ -0,0 +1,32 @@
+package com.azimbabu.tinyurlservice.controller;
+
+import com.azimbabu.tinyurlservice.dto.TopLinksResponse;
+import com.azimbabu.tinyurlservice.stats.StatsPeriod;
+import com.azimbabu.tinyurlservice.stats.TopLinksTracker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/tiny-url/stats")
+public class StatsController {
+
+  private TopLinksTracker topLinksTracker;
+
+  @Autowired
+  public StatsController(TopLinksTracker topLinksTracker) {
+    this.topLinksTracker = topLinksTracker;
+  }
+
+  /** Top 10 redirected short urls of the period, refreshed every snapshot interval. */
+  @GetMapping("/top")
+  public TopLinksResponse top(
+      @RequestParam(value = "period", defaultValue = "DAILY") StatsPeriod period) {
+    return TopLinksResponse.builder()
+        .period(period)
+        .data(topLinksTracker.getTopLinks(period))
+        .build();
+  }
+}
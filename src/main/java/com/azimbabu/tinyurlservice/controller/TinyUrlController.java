@@ -2,25 +2,58 @@ package com.azimbabu.tinyurlservice.controller;
 
 import com.azimbabu.tinyurlservice.dto.TinyUrlRequest;
 import com.azimbabu.tinyurlservice.dto.TinyUrlResponse;
+import com.azimbabu.tinyurlservice.dto.UserLinksResponse;
+import com.azimbabu.tinyurlservice.limit.RateLimitFilter;
+import com.azimbabu.tinyurlservice.limit.RateLimiter;
+import com.azimbabu.tinyurlservice.limit.Route;
 import com.azimbabu.tinyurlservice.model.TinyUrl;
+import com.azimbabu.tinyurlservice.service.ErrorCode;
 import com.azimbabu.tinyurlservice.service.TinyUrlService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
 
+@Slf4j
 @RestController
 @RequestMapping("/tiny-url")
 public class TinyUrlController {
 
+  private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+  private static final int BULK_FLUSH_INTERVAL = 100;
+  private static final TinyUrlRequest MALFORMED_REQUEST = TinyUrlRequest.builder().build();
+
   private TinyUrlService tinyUrlService;
 
+  private ObjectMapper objectMapper;
+
+  private Optional<RateLimiter> rateLimiter;
+
   @Autowired
-  public TinyUrlController(TinyUrlService tinyUrlService) {
+  public TinyUrlController(
+      TinyUrlService tinyUrlService,
+      ObjectMapper objectMapper,
+      Optional<RateLimiter> rateLimiter) {
     this.tinyUrlService = tinyUrlService;
+    this.objectMapper = objectMapper;
+    this.rateLimiter = rateLimiter;
   }
 
   @PostMapping
@@ -34,18 +67,110 @@ public class TinyUrlController {
     return TinyUrlResponse.builder().data(tinyUrl).success(true).build();
   }
 
-  @GetMapping("/{short-url}")
-  public ResponseEntity<TinyUrlResponse> get(@PathVariable("short-url") String shortUrl) {
-    Optional<TinyUrl> tinyUrlOptional = tinyUrlService.getTinyUrlByShortUrl(shortUrl);
-    if (tinyUrlOptional.isPresent()) {
-      TinyUrl tinyUrl = tinyUrlOptional.get();
-      HttpHeaders headers = new HttpHeaders();
-      headers.add(HttpHeaders.LOCATION, tinyUrl.getOriginalUrl());
-      TinyUrlResponse tinyUrlResponse =
-          TinyUrlResponse.builder().data(tinyUrl).success(true).build();
-      return new ResponseEntity<>(tinyUrlResponse, headers, HttpStatus.FOUND);
-    } else {
-      return ResponseEntity.notFound().build();
+  /**
+   * Creates tiny urls in bulk. The request body is newline delimited JSON with one @{@link
+   * TinyUrlRequest} per line, the response streams one @{@link TinyUrlResponse} per line in the
+   * same order as soon as each result is known. Blank lines are skipped and a line that isn't a
+   * @{@link TinyUrlRequest} is answered with @{@link ErrorCode#INVALID_REQUEST}, since the response
+   * is already committed when it is read. With rate limiting on, every row takes a create token of
+   * the client, and the rows from the first one over the client's rate on are answered with
+   * @{@link ErrorCode#RATE_LIMITED}.
+   */
+  @PostMapping(
+      path = "/bulk",
+      consumes = APPLICATION_NDJSON_VALUE,
+      produces = APPLICATION_NDJSON_VALUE)
+  public StreamingResponseBody createBulk(
+      @RequestParam(value = "username", required = false) String username,
+      HttpServletRequest httpServletRequest) {
+    ObjectReader requestReader = objectMapper.readerFor(TinyUrlRequest.class);
+    ObjectWriter responseWriter = objectMapper.writerFor(TinyUrlResponse.class);
+    // the body is read with blocking servlet I/O, off the threads completing Cassandra writes
+    Flux<TinyUrlRequest> requests =
+        Flux.using(
+                () ->
+                    new BufferedReader(
+                        new InputStreamReader(
+                            httpServletRequest.getInputStream(), StandardCharsets.UTF_8)),
+                reader -> Flux.fromStream(reader.lines()),
+                TinyUrlController::closeQuietly)
+            .filter(StringUtils::isNotBlank)
+            .map(line -> readRequest(requestReader, line))
+            .subscribeOn(Schedulers.boundedElastic());
+
+    BooleanSupplier rowPermit = rowPermit(httpServletRequest);
+    return outputStream -> {
+      Flux<TinyUrlResponse> responses =
+          tinyUrlService.createTinyUrls(requests, username, rowPermit);
+      int count = 0;
+      for (TinyUrlResponse response : responses.toIterable()) {
+        outputStream.write(responseWriter.writeValueAsBytes(response));
+        outputStream.write('\n');
+        if (++count % BULK_FLUSH_INTERVAL == 0) {
+          outputStream.flush();
+        }
+      }
+      outputStream.flush();
+    };
+  }
+
+  /** Charges each bulk row to the client the @{@link RateLimitFilter} identified. */
+  private BooleanSupplier rowPermit(HttpServletRequest httpServletRequest) {
+    String client = (String) httpServletRequest.getAttribute(RateLimitFilter.CLIENT_ATTRIBUTE);
+    if (!rateLimiter.isPresent() || client == null) {
+      return () -> true;
+    }
+    // the filter already took the token of the first row
+    AtomicBoolean first = new AtomicBoolean(true);
+    return () ->
+        first.getAndSet(false) || rateLimiter.get().tryAcquire(Route.CREATE, client) == 0;
+  }
+
+  /** A malformed line fails validation like a request without an original url. */
+  private static TinyUrlRequest readRequest(ObjectReader requestReader, String line) {
+    try {
+      return requestReader.readValue(line);
+    } catch (IOException e) {
+      return MALFORMED_REQUEST;
     }
   }
+
+  private static void closeQuietly(BufferedReader reader) {
+    try {
+      reader.close();
+    } catch (IOException e) {
+      log.debug("Failed to close the bulk request body", e);
+    }
+  }
+
+  /**
+   * Lists the tiny urls of a user, newest first. Pass the returned {@code nextPageToken} as {@code
+   * pageToken} to read the next page.
+   */
+  @GetMapping("/users/{username}/links")
+  public UserLinksResponse getLinksByUser(
+      @PathVariable("username") String username,
+      @RequestParam(value = "pageToken", required = false) String pageToken,
+      @RequestParam(value = "size", defaultValue = "20") int size) {
+    return tinyUrlService.getLinksByUser(username, pageToken, size);
+  }
+
+  /** Returns the tiny url metadata. Redirects are served by @{@link RedirectController}. */
+  @GetMapping("/{short-url}")
+  public Mono<ResponseEntity<TinyUrlResponse>> get(@PathVariable("short-url") String shortUrl) {
+    return tinyUrlService
+        .getTinyUrlByShortUrlReactive(shortUrl)
+        .map(
+            tinyUrl ->
+                ResponseEntity.ok(TinyUrlResponse.builder().data(tinyUrl).success(true).build()))
+        .defaultIfEmpty(ResponseEntity.notFound().build());
+  }
+
+  /** Invalid input, e.g. an empty original url or a malformed page token, is a bad request. */
+  @ExceptionHandler(IllegalArgumentException.class)
+  public ResponseEntity<TinyUrlResponse> handleIllegalArgument(IllegalArgumentException e) {
+    return ResponseEntity.badRequest()
+        .body(
+            TinyUrlResponse.builder().success(false).errorCode(ErrorCode.INVALID_REQUEST).build());
+  }
 }
@@ -0,0 +1,12 @@
+package com.azimbabu.tinyurlservice.dto;
+
+import lombok.*;
+
+@Data
+@Builder(toBuilder = true)
+@RequiredArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE, force = true)
+public class TopLink {
+  private final String shortUrl;
+  private final long clicks;
+}
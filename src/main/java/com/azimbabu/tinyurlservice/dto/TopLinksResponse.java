@@ -0,0 +1,15 @@
+package com.azimbabu.tinyurlservice.dto;
+
+import com.azimbabu.tinyurlservice.stats.StatsPeriod;
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@Builder(toBuilder = true)
+@RequiredArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE, force = true)
+public class TopLinksResponse {
+  private final StatsPeriod period;
+  private final List<TopLink> data;
+}
@@ -0,0 +1,16 @@
+package com.azimbabu.tinyurlservice.dto;
+
+import lombok.*;
+
+import java.util.Date;
+
+@Data
+@Builder(toBuilder = true)
+@RequiredArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE, force = true)
+public class UserLink {
+  private final String shortUrl;
+  private final String originalUrl;
+  private final Date createdAt;
+  private final Date expiredAt;
+}
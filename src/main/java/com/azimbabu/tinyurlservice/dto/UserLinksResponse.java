@@ -0,0 +1,14 @@
+package com.azimbabu.tinyurlservice.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@Builder(toBuilder = true)
+@RequiredArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE, force = true)
+public class UserLinksResponse {
+  private final List<UserLink> data;
+  private final String nextPageToken;
+}
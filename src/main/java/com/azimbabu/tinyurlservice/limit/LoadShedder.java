@@ -0,0 +1,108 @@
+package com.azimbabu.tinyurlservice.limit;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the number of creates in flight, and lowers the bound while Cassandra is slow so that a
+ * storm of creates is turned away up front instead of queueing up request threads.
+ *
+ * <p>Every repository call feeds an exponentially weighted moving average of Cassandra latency.
+ * Below the latency threshold up to the max concurrency is admitted. Above it the limit shrinks in
+ * proportion, down to the min concurrency, whose calls keep the average current so the limit
+ * recovers as soon as Cassandra does.
+ */
+@Component
+@ConditionalOnProperty(prefix = "tinyurl", name = "load-shedding-enabled", havingValue = "true")
+public class LoadShedder {
+
+  private static final double ALPHA = 0.1;
+
+  private final int maxConcurrency;
+  private final int minConcurrency;
+  private final long latencyThresholdInNanos;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLong latencyBits = new AtomicLong(Double.doubleToLongBits(0));
+
+  @Autowired
+  public LoadShedder(TinyUrlProperties tinyUrlProperties, MeterRegistry meterRegistry) {
+    this.maxConcurrency = tinyUrlProperties.getLoadSheddingMaxConcurrency();
+    this.minConcurrency =
+        Math.max(1, Math.min(maxConcurrency, tinyUrlProperties.getLoadSheddingMinConcurrency()));
+    this.latencyThresholdInNanos =
+        TimeUnit.MILLISECONDS.toNanos(tinyUrlProperties.getLoadSheddingLatencyThresholdInMs());
+
+    Gauge.builder("tinyurl.shedding.limit", this, LoadShedder::getLimit)
+        .description("Current limit of creates in flight")
+        .register(meterRegistry);
+    Gauge.builder("tinyurl.shedding.in.flight", inFlight, AtomicInteger::get)
+        .description("Creates in flight")
+        .register(meterRegistry);
+    Gauge.builder("tinyurl.shedding.latency", this, shedder -> shedder.getLatencyInNanos() / 1e6)
+        .description("Moving average of Cassandra latency in milliseconds")
+        .register(meterRegistry);
+  }
+
+  /** Admits a create if the current limit allows it, admitted creates must be released. */
+  public boolean tryAcquire() {
+    return tryAcquire(1);
+  }
+
+  /**
+   * Admits a request weighing the given number of creates if the current limit allows it. A
+   * request heavier than the whole limit is only admitted while nothing else is in flight.
+   * Admitted requests must release the same number of permits.
+   */
+  public boolean tryAcquire(int permits) {
+    int limit = getLimit();
+    while (true) {
+      int current = inFlight.get();
+      if (current > 0 && current + permits > limit) {
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + permits)) {
+        return true;
+      }
+    }
+  }
+
+  public void release() {
+    release(1);
+  }
+
+  public void release(int permits) {
+    inFlight.addAndGet(-permits);
+  }
+
+  /** Adds the latency of one Cassandra call to the moving average. */
+  public void recordLatency(long nanos) {
+    while (true) {
+      long current = latencyBits.get();
+      double average = Double.longBitsToDouble(current);
+      double next = average == 0 ? nanos : average + ALPHA * (nanos - average);
+      if (latencyBits.compareAndSet(current, Double.doubleToLongBits(next))) {
+        return;
+      }
+    }
+  }
+
+  public int getLimit() {
+    double latency = getLatencyInNanos();
+    if (latency <= latencyThresholdInNanos) {
+      return maxConcurrency;
+    }
+    return Math.max(minConcurrency, (int) (maxConcurrency * latencyThresholdInNanos / latency));
+  }
+
+  public double getLatencyInNanos() {
+    return Double.longBitsToDouble(latencyBits.get());
+  }
+}
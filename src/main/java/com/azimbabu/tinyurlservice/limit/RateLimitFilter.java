@@ -0,0 +1,236 @@
+package com.azimbabu.tinyurlservice.limit;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.dto.TinyUrlResponse;
+import com.azimbabu.tinyurlservice.service.ErrorCode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Turns away creates and redirects before they reach a controller. Clients over their
+ * @{@link RateLimiter} rate get a 429, creates beyond the @{@link LoadShedder} limit get a 503,
+ * both with a {@code Retry-After} header.
+ *
+ * <p>Clients are identified by their remote address. The configured client header is only used
+ * when the request comes from one of the trusted proxies, since anyone else could send a new value
+ * per request. Creates are {@code POST /tiny-url} and {@code POST /tiny-url/bulk}, redirects are
+ * single segment {@code GET} paths no longer than a short url, other than the paths of the api,
+ * actuator and error pages. Only creates are shed, since they cost the most Cassandra operations
+ * and shedding them keeps redirects fast.
+ *
+ * <p>A bulk create takes the token of its first row here; the controller charges every later row
+ * to the client found in the @{@link #CLIENT_ATTRIBUTE} request attribute. It weighs {@code
+ * bulk-in-flight-window} creates against the load shedding limit, as that many of its rows may be
+ * written at once.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+  /** Request attribute holding the rate limited client of a bulk create. */
+  public static final String CLIENT_ATTRIBUTE = RateLimitFilter.class.getName() + ".client";
+
+  private static final String CREATE_PATH = "/tiny-url";
+  private static final String BULK_CREATE_PATH = "/tiny-url/bulk";
+  private static final Set<String> NON_REDIRECT_PATHS =
+      Set.of("/tiny-url", "/actuator", "/error", "/favicon.ico");
+
+  private Optional<RateLimiter> rateLimiter;
+
+  private Optional<LoadShedder> loadShedder;
+
+  private TinyUrlProperties tinyUrlProperties;
+
+  private ObjectMapper objectMapper;
+
+  private final Set<String> trustedProxies;
+
+  private final Counter rateLimitedCounter;
+
+  private final Counter shedCounter;
+
+  @Autowired
+  public RateLimitFilter(
+      Optional<RateLimiter> rateLimiter,
+      Optional<LoadShedder> loadShedder,
+      TinyUrlProperties tinyUrlProperties,
+      ObjectMapper objectMapper,
+      MeterRegistry meterRegistry) {
+    this.rateLimiter = rateLimiter;
+    this.loadShedder = loadShedder;
+    this.tinyUrlProperties = tinyUrlProperties;
+    this.objectMapper = objectMapper;
+    this.trustedProxies =
+        tinyUrlProperties.getRateLimitTrustedProxies() != null
+            ? new HashSet<>(tinyUrlProperties.getRateLimitTrustedProxies())
+            : Collections.emptySet();
+    this.rateLimitedCounter =
+        Counter.builder("tinyurl.requests.rejected")
+            .tag("reason", "rate_limited")
+            .description("Requests rejected before reaching a controller")
+            .register(meterRegistry);
+    this.shedCounter =
+        Counter.builder("tinyurl.requests.rejected")
+            .tag("reason", "overloaded")
+            .description("Requests rejected before reaching a controller")
+            .register(meterRegistry);
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return (!rateLimiter.isPresent() && !loadShedder.isPresent()) || routeOf(request) == null;
+  }
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    Route route = routeOf(request);
+    boolean bulk = route == Route.CREATE && isBulkCreate(request);
+
+    if (rateLimiter.isPresent()) {
+      String client = clientOf(request);
+      long waitInNanos = rateLimiter.get().tryAcquire(route, client);
+      if (waitInNanos > 0) {
+        rateLimitedCounter.increment();
+        reject(response, HttpStatus.TOO_MANY_REQUESTS, ErrorCode.RATE_LIMITED, waitInNanos);
+        return;
+      }
+      if (bulk) {
+        request.setAttribute(CLIENT_ATTRIBUTE, client);
+      }
+    }
+
+    if (route != Route.CREATE || !loadShedder.isPresent()) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+    LoadShedder shedder = loadShedder.get();
+    int permits = bulk ? tinyUrlProperties.getBulkInFlightWindow() : 1;
+    if (!shedder.tryAcquire(permits)) {
+      shedCounter.increment();
+      reject(response, HttpStatus.SERVICE_UNAVAILABLE, ErrorCode.OVERLOADED, 0);
+      return;
+    }
+    AtomicBoolean released = new AtomicBoolean();
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      if (request.isAsyncStarted()) {
+        // bulk creates stream their response asynchronously, release once it completes
+        request.getAsyncContext().addListener(new ReleasingListener(shedder, permits, released));
+      } else if (released.compareAndSet(false, true)) {
+        shedder.release(permits);
+      }
+    }
+  }
+
+  private Route routeOf(HttpServletRequest request) {
+    String path = pathOf(request);
+    if (HttpMethod.POST.matches(request.getMethod())) {
+      return CREATE_PATH.equals(path) || BULK_CREATE_PATH.equals(path) ? Route.CREATE : null;
+    }
+    if (HttpMethod.GET.matches(request.getMethod())
+        && path.length() > 1
+        && path.length() <= tinyUrlProperties.getShortUrlLength() + 1
+        && path.indexOf('/', 1) < 0
+        && !NON_REDIRECT_PATHS.contains(path)) {
+      return Route.REDIRECT;
+    }
+    return null;
+  }
+
+  private boolean isBulkCreate(HttpServletRequest request) {
+    return BULK_CREATE_PATH.equals(pathOf(request));
+  }
+
+  private String pathOf(HttpServletRequest request) {
+    return request.getRequestURI().substring(request.getContextPath().length());
+  }
+
+  private String clientOf(HttpServletRequest request) {
+    String remoteAddr = request.getRemoteAddr();
+    String clientHeader = tinyUrlProperties.getRateLimitClientHeader();
+    if (StringUtils.isNotEmpty(clientHeader) && trustedProxies.contains(remoteAddr)) {
+      String client = request.getHeader(clientHeader);
+      if (StringUtils.isNotEmpty(client)) {
+        return client;
+      }
+    }
+    return remoteAddr;
+  }
+
+  private void reject(
+      HttpServletResponse response, HttpStatus status, ErrorCode errorCode, long waitInNanos)
+      throws IOException {
+    response.setStatus(status.value());
+    response.setHeader(
+        HttpHeaders.RETRY_AFTER,
+        String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitInNanos + 999_999_999L))));
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    objectMapper.writeValue(
+        response.getOutputStream(),
+        TinyUrlResponse.builder().success(false).errorCode(errorCode).build());
+  }
+
+  private static class ReleasingListener implements AsyncListener {
+
+    private final LoadShedder loadShedder;
+    private final int permits;
+    private final AtomicBoolean released;
+
+    private ReleasingListener(LoadShedder loadShedder, int permits, AtomicBoolean released) {
+      this.loadShedder = loadShedder;
+      this.permits = permits;
+      this.released = released;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      release();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      release();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      release();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      event.getAsyncContext().addListener(this);
+    }
+
+    private void release() {
+      if (released.compareAndSet(false, true)) {
+        loadShedder.release(permits);
+      }
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package com.azimbabu.tinyurlservice.limit;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Per client, per @{@link Route} @{@link TokenBucket} rate limiter. Buckets live in a bounded
+ * cache and are dropped once they have been idle long enough to be full again, so a dropped bucket
+ * is indistinguishable from the fresh one that replaces it.
+ */
+@Component
+@ConditionalOnProperty(prefix = "tinyurl", name = "rate-limit-enabled", havingValue = "true")
+public class RateLimiter {
+
+  private final Map<Route, Limit> limits = new EnumMap<>(Route.class);
+
+  @Autowired
+  public RateLimiter(TinyUrlProperties tinyUrlProperties) {
+    limits.put(
+        Route.CREATE,
+        new Limit(
+            tinyUrlProperties.getCreateRateLimitPerSecond(),
+            tinyUrlProperties.getCreateRateLimitBurst(),
+            tinyUrlProperties.getRateLimitMaxClients()));
+    limits.put(
+        Route.REDIRECT,
+        new Limit(
+            tinyUrlProperties.getRedirectRateLimitPerSecond(),
+            tinyUrlProperties.getRedirectRateLimitBurst(),
+            tinyUrlProperties.getRateLimitMaxClients()));
+  }
+
+  /**
+   * Takes a token of the client for the route.
+   *
+   * @return 0 if the request may proceed, otherwise the nanos until the client may retry.
+   */
+  public long tryAcquire(Route route, String client) {
+    Limit limit = limits.get(route);
+    long now = System.nanoTime();
+    return limit.buckets.get(client, key -> limit.newBucket(now)).tryAcquire(now);
+  }
+
+  private static class Limit {
+
+    private final double tokensPerSecond;
+    private final int burst;
+    private final Cache<String, TokenBucket> buckets;
+
+    private Limit(double tokensPerSecond, int burst, long maxClients) {
+      this.tokensPerSecond = tokensPerSecond;
+      this.burst = burst;
+      long capacityInNanos = newBucket(System.nanoTime()).getCapacityInNanos();
+      this.buckets =
+          Caffeine.newBuilder()
+              .maximumSize(maxClients)
+              .expireAfterAccess(Duration.ofNanos(capacityInNanos))
+              .build();
+    }
+
+    private TokenBucket newBucket(long now) {
+      return new TokenBucket(tokensPerSecond, burst, now);
+    }
+  }
+}
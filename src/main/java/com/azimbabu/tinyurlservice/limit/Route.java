@@ -0,0 +1,7 @@
+package com.azimbabu.tinyurlservice.limit;
+
+/** Request routes that are rate limited separately. */
+public enum Route {
+  CREATE,
+  REDIRECT
+}
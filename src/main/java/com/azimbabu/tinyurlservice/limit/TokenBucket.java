@@ -0,0 +1,54 @@
+package com.azimbabu.tinyurlservice.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Lock-free token bucket. Instead of a token count and a refill timestamp, the bucket keeps the
+ * single time at which it would be full again (the generic cell rate algorithm), so taking a
+ * token is one compare-and-set of one {@code long}.
+ */
+public class TokenBucket {
+
+  private final long nanosPerToken;
+  private final long capacityInNanos;
+  private final AtomicLong fullAt;
+
+  /**
+   * @param tokensPerSecond refill rate.
+   * @param burst bucket size, the number of tokens that can be taken at once after idling.
+   * @param nowInNanos current @{@link System#nanoTime()}, the bucket starts full.
+   */
+  public TokenBucket(double tokensPerSecond, int burst, long nowInNanos) {
+    checkArgument(tokensPerSecond > 0 && burst > 0, "Rate and burst should be positive");
+    this.nanosPerToken = Math.max(1, (long) (1_000_000_000L / tokensPerSecond));
+    this.capacityInNanos = burst * nanosPerToken;
+    this.fullAt = new AtomicLong(nowInNanos);
+  }
+
+  /**
+   * Takes one token.
+   *
+   * @param nowInNanos current @{@link System#nanoTime()}.
+   * @return 0 if a token was taken, otherwise the nanos until the next token is available.
+   */
+  public long tryAcquire(long nowInNanos) {
+    while (true) {
+      long current = fullAt.get();
+      long next = (current - nowInNanos < 0 ? nowInNanos : current) + nanosPerToken;
+      long wait = next - nowInNanos - capacityInNanos;
+      if (wait > 0) {
+        return wait;
+      }
+      if (fullAt.compareAndSet(current, next)) {
+        return 0;
+      }
+    }
+  }
+
+  /** Nanos after which an unused bucket is full again and can be replaced by a new one. */
+  public long getCapacityInNanos() {
+    return capacityInNanos;
+  }
+}
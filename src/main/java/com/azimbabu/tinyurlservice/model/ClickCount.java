@@ -0,0 +1,32 @@
+package com.azimbabu.tinyurlservice.model;
+
+import com.datastax.driver.core.DataType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.Ordering;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.CassandraType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.LocalDate;
+
+/** Redirect count of a short url for one UTC day. */
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+@Table("click_count")
+public class ClickCount {
+
+  @PrimaryKeyColumn(type = PrimaryKeyType.PARTITIONED)
+  private String shortUrl;
+
+  @PrimaryKeyColumn(type = PrimaryKeyType.CLUSTERED, ordering = Ordering.DESCENDING)
+  private LocalDate day;
+
+  @CassandraType(type = DataType.Name.COUNTER)
+  private Long clicks;
+}
@@ -0,0 +1,42 @@
+package com.azimbabu.tinyurlservice.model;
+
+import com.datastax.driver.core.DataType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.Ordering;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.CassandraType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.UUID;
+
+/** One redirect of a short url, partitioned by short url and UTC day. */
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+@Table("click_event")
+public class ClickEvent {
+
+  @PrimaryKeyColumn(ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+  private String shortUrl;
+
+  @PrimaryKeyColumn(ordinal = 1, type = PrimaryKeyType.PARTITIONED)
+  private LocalDate day;
+
+  @PrimaryKeyColumn(ordinal = 2, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.DESCENDING)
+  private Date clickedAt;
+
+  @PrimaryKeyColumn(ordinal = 3, type = PrimaryKeyType.CLUSTERED)
+  @CassandraType(type = DataType.Name.TIMEUUID)
+  private UUID eventId;
+
+  private String referrer;
+
+  private String userAgent;
+}
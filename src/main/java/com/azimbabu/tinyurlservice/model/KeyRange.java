@@ -0,0 +1,26 @@
+package com.azimbabu.tinyurlservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+/**
+ * Lease row for short url key ids. Each node claims the block {@code [nextValue, nextValue +
+ * keyRangeSize)} by compare-and-set on {@code nextValue}.
+ */
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+@Table("key_range")
+public class KeyRange {
+
+  @PrimaryKeyColumn(type = PrimaryKeyType.PARTITIONED)
+  private String name;
+
+  private Long nextValue;
+}
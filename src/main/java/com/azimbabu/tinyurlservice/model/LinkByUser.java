@@ -0,0 +1,63 @@
+package com.azimbabu.tinyurlservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.Ordering;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.YearMonth;
+import java.util.Date;
+
+import static java.time.ZoneOffset.UTC;
+
+/**
+ * Tiny url of a user, partitioned by username and the UTC month it was created in so that a heavy
+ * user's links are spread over one bounded partition per month. Newest links come first.
+ */
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+@Table("links_by_user")
+public class LinkByUser {
+
+  @PrimaryKeyColumn(ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+  private String username;
+
+  /** Creation month as {@code yyyyMM}. */
+  @PrimaryKeyColumn(ordinal = 1, type = PrimaryKeyType.PARTITIONED)
+  private Integer bucket;
+
+  @PrimaryKeyColumn(ordinal = 2, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.DESCENDING)
+  private Date createdAt;
+
+  @PrimaryKeyColumn(ordinal = 3, type = PrimaryKeyType.CLUSTERED)
+  private String shortUrl;
+
+  private String originalUrl;
+
+  private Date expiredAt;
+
+  public static LinkByUser of(TinyUrl tinyUrl) {
+    return LinkByUser.builder()
+        .username(tinyUrl.getUser().getUsername())
+        .bucket(bucketOf(YearMonth.from(tinyUrl.getCreatedAt().toInstant().atOffset(UTC))))
+        .createdAt(tinyUrl.getCreatedAt())
+        .shortUrl(tinyUrl.getShortUrl())
+        .originalUrl(tinyUrl.getOriginalUrl())
+        .expiredAt(tinyUrl.getExpiredAt())
+        .build();
+  }
+
+  public static int bucketOf(YearMonth month) {
+    return month.getYear() * 100 + month.getMonthValue();
+  }
+
+  public static YearMonth monthOf(int bucket) {
+    return YearMonth.of(bucket / 100, bucket % 100);
+  }
+}
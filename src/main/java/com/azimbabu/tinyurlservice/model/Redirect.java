@@ -0,0 +1,24 @@
+package com.azimbabu.tinyurlservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/** The part of a @{@link TinyUrl} needed to serve a redirect. */
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class Redirect {
+
+  private String originalUrl;
+
+  private Date expiredAt;
+
+  public static Redirect of(TinyUrl tinyUrl) {
+    return new Redirect(tinyUrl.getOriginalUrl(), tinyUrl.getExpiredAt());
+  }
+}
@@ -0,0 +1,32 @@
+package com.azimbabu.tinyurlservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.Map;
+
+/** Top redirected short urls of one node for one UTC day, merged across nodes on read. */
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+@Table("top_links_snapshot")
+public class TopLinksSnapshot {
+
+  @PrimaryKeyColumn(type = PrimaryKeyType.PARTITIONED)
+  private LocalDate day;
+
+  @PrimaryKeyColumn(type = PrimaryKeyType.CLUSTERED)
+  private String nodeId;
+
+  private Map<String, Long> clicks;
+
+  private Date updatedAt;
+}
@@ -0,0 +1,37 @@
+package com.azimbabu.tinyurlservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.util.Date;
+
+/**
+ * Latest generated tiny url of an original url and owner, keyed by a 128-bit hash of both so that
+ * a repeat shorten is answered from a single partition.
+ */
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+@Table("url_by_hash")
+public class UrlByHash {
+
+  /** Hex encoded hash of the owner and the normalized original url. */
+  @PrimaryKeyColumn(type = PrimaryKeyType.PARTITIONED)
+  private String hash;
+
+  private String shortUrl;
+
+  private String originalUrl;
+
+  private String username;
+
+  private Date createdAt;
+
+  private Date expiredAt;
+}
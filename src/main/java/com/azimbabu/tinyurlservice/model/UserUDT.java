@@ -7,8 +7,11 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.cassandra.core.mapping.UserDefinedType;
 
 import javax.validation.constraints.NotEmpty;
-import java.util.Date;
 
+/**
+ * Owner reference of a tiny url. Only the username is stored, the rest of the profile is read from
+ * the {@code user} table when needed so that tiny url rows never carry a stale copy of it.
+ */
 @Data
 @Builder(toBuilder = true)
 @AllArgsConstructor
@@ -17,9 +20,4 @@ import java.util.Date;
 public class UserUDT {
   @NotEmpty(message = "User name should not be empty")
   private String username;
-
-  @NotEmpty(message = "User email should not be empty")
-  private String email;
-
-  private Date lastLoginDate;
 }
@@ -0,0 +1,219 @@
+package com.azimbabu.tinyurlservice.peer;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Spreads the tiny url cache over all app nodes. Every short url is owned by one node of the
+ * static {@code peer-cache-peers} list, picked by @{@link RendezvousHash}, and only the owner
+ * caches it and reads it from Cassandra. Other nodes ask the owner over the @{@link PeerProtocol}
+ * and keep the tiny urls it found only briefly in a small near cache, so that total cache capacity
+ * grows with the number of nodes while hot links don't all land on their owner. Misses are never
+ * kept in the near cache, and a node creating a short url it doesn't own tells the owner to drop
+ * it from its cache, so a cached miss doesn't hide the new tiny url.
+ *
+ * <p>An owner that can't be reached is skipped for the down interval, lookups of its keys fall
+ * back to the local cache and Cassandra meanwhile. All nodes should list the same peers, nodes
+ * with different lists still answer correctly but cache keys twice.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "tinyurl", name = "peer-cache-enabled", havingValue = "true")
+public class PeerCache {
+
+  private static final int MAX_PENDING_INVALIDATIONS = 1024;
+
+  private final String self;
+
+  private final RendezvousHash rendezvousHash;
+
+  private final Map<String, Peer> peers = new HashMap<>();
+
+  private final Cache<String, TinyUrl> nearCache;
+
+  /** Sends invalidations without holding up creates. A full queue drops them. */
+  private final ExecutorService invalidations =
+      new ThreadPoolExecutor(
+          1,
+          1,
+          0L,
+          TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(MAX_PENDING_INVALIDATIONS),
+          runnable -> {
+            Thread thread = new Thread(runnable, "peer-cache-invalidate");
+            thread.setDaemon(true);
+            return thread;
+          },
+          new ThreadPoolExecutor.DiscardPolicy());
+
+  private final long downIntervalInNanos;
+
+  private final Counter successCounter;
+
+  private final Counter failureCounter;
+
+  @Autowired
+  public PeerCache(TinyUrlProperties tinyUrlProperties, MeterRegistry meterRegistry) {
+    List<String> addresses = tinyUrlProperties.getPeerCachePeers();
+    this.self = tinyUrlProperties.getPeerCacheSelf();
+    checkArgument(addresses.contains(self), "Peer cache peers should contain the own address");
+    this.rendezvousHash = new RendezvousHash(addresses);
+    for (String address : addresses) {
+      if (!address.equals(self)) {
+        peers.put(
+            address,
+            new Peer(
+                new PeerClient(
+                    hostOf(address),
+                    portOf(address),
+                    tinyUrlProperties.getPeerCacheTimeoutInMs(),
+                    tinyUrlProperties.getPeerCacheMaxConnections())));
+      }
+    }
+    this.downIntervalInNanos =
+        Duration.ofMillis(tinyUrlProperties.getPeerCacheDownIntervalInMs()).toNanos();
+
+    this.nearCache =
+        Caffeine.newBuilder()
+            .maximumSize(tinyUrlProperties.getPeerCacheNearMaximumSize())
+            .expireAfterWrite(
+                Duration.ofSeconds(tinyUrlProperties.getPeerCacheNearTtlInSeconds()))
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, nearCache, "peerNear");
+    this.successCounter =
+        Counter.builder("tinyurl.peer.fetches")
+            .tag("outcome", "success")
+            .description("Lookups answered by the owning peer")
+            .register(meterRegistry);
+    this.failureCounter =
+        Counter.builder("tinyurl.peer.fetches")
+            .tag("outcome", "failure")
+            .description("Lookups the owning peer failed to answer")
+            .register(meterRegistry);
+  }
+
+  /** Whether this node owns the short url and looks it up itself. */
+  public boolean isOwner(String shortUrl) {
+    return self.equals(rendezvousHash.ownerOf(shortUrl));
+  }
+
+  /**
+   * Looks up a short url owned by another node, from the near cache or the owner.
+   *
+   * @return the owner's answer, or an unavailable @{@link PeerLookup} if the owner couldn't answer
+   *     and the caller should look the short url up itself.
+   */
+  public PeerLookup fetch(String shortUrl) {
+    TinyUrl near = nearCache.getIfPresent(shortUrl);
+    if (near != null) {
+      return PeerLookup.answered(Optional.of(near));
+    }
+    Peer owner = availableOwnerOf(shortUrl);
+    if (owner == null) {
+      return PeerLookup.unavailable();
+    }
+
+    PeerLookup lookup;
+    try {
+      lookup = owner.client.get(shortUrl);
+    } catch (IOException e) {
+      log.debug("Peer failed to look up {}", shortUrl, e);
+      markDown(owner);
+      failureCounter.increment();
+      return PeerLookup.unavailable();
+    }
+    if (!lookup.isAnswered()) {
+      failureCounter.increment();
+      return lookup;
+    }
+    successCounter.increment();
+    lookup.getTinyUrl().ifPresent(tinyUrl -> nearCache.put(shortUrl, tinyUrl));
+    return lookup;
+  }
+
+  /**
+   * Tells the owner of a short url created on this node to drop it from its cache, in the
+   * background. Owners that are down or busy keep a cached miss until it expires.
+   */
+  public void invalidate(String shortUrl) {
+    nearCache.invalidate(shortUrl);
+    Peer owner = availableOwnerOf(shortUrl);
+    if (owner == null) {
+      return;
+    }
+    invalidations.execute(
+        () -> {
+          try {
+            owner.client.invalidate(shortUrl);
+          } catch (IOException e) {
+            log.debug("Peer failed to invalidate {}", shortUrl, e);
+            markDown(owner);
+          }
+        });
+  }
+
+  @PreDestroy
+  public void close() {
+    invalidations.shutdownNow();
+    peers.values().forEach(peer -> peer.client.close());
+  }
+
+  /** The owner of a short url owned by another node, or null if that node is down. */
+  private Peer availableOwnerOf(String shortUrl) {
+    Peer owner = peers.get(rendezvousHash.ownerOf(shortUrl));
+    if (owner == null || System.nanoTime() - owner.downSince < downIntervalInNanos) {
+      return null;
+    }
+    return owner;
+  }
+
+  /** Skips the peer for the down interval, unless the wait was cut short by an interrupt. */
+  private static void markDown(Peer peer) {
+    if (!Thread.currentThread().isInterrupted()) {
+      peer.downSince = System.nanoTime();
+    }
+  }
+
+  static String hostOf(String address) {
+    return address.substring(0, address.lastIndexOf(':'));
+  }
+
+  static int portOf(String address) {
+    return Integer.parseInt(address.substring(address.lastIndexOf(':') + 1));
+  }
+
+  private static class Peer {
+
+    private final PeerClient client;
+
+    private volatile long downSince = System.nanoTime() - Long.MAX_VALUE / 2;
+
+    private Peer(PeerClient client) {
+      this.client = client;
+    }
+  }
+}
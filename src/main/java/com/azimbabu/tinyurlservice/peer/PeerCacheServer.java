@@ -0,0 +1,161 @@
+package com.azimbabu.tinyurlservice.peer;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import com.azimbabu.tinyurlservice.service.TinyUrlService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Answers @{@link PeerCache} lookups of other nodes for the short urls this node owns, from the
+ * local cache and Cassandra, and drops short urls other nodes created from the local cache, so that
+ * a cached miss doesn't outlive the create. Requests are never forwarded to another peer, so nodes
+ * with different peer lists can't send a lookup around in circles. Listens on the host and port of
+ * {@code peer-cache-self} only, one thread per peer connection. Connections beyond {@code
+ * peer-cache-server-max-connections} are closed as soon as they are accepted, so the peers skip
+ * this node instead of piling up threads on it.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "tinyurl", name = "peer-cache-enabled", havingValue = "true")
+public class PeerCacheServer {
+
+  private final ServerSocket serverSocket;
+
+  private final Function<String, Optional<TinyUrl>> lookup;
+
+  private final Consumer<String> invalidate;
+
+  private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+  private final Semaphore connectionPermits;
+
+  private final ExecutorService executor =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "peer-cache-server");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  @Autowired
+  public PeerCacheServer(TinyUrlService tinyUrlService, TinyUrlProperties tinyUrlProperties)
+      throws IOException {
+    this(
+        PeerCache.hostOf(tinyUrlProperties.getPeerCacheSelf()),
+        PeerCache.portOf(tinyUrlProperties.getPeerCacheSelf()),
+        tinyUrlProperties.getPeerCacheServerMaxConnections(),
+        tinyUrlService::getLocalTinyUrlByShortUrl,
+        tinyUrlService::invalidateLocalTinyUrl);
+  }
+
+  /**
+   * @param host host to listen on.
+   * @param port port to listen on, 0 for any free port.
+   * @param maxConnections number of peer connections served at once.
+   * @param lookup local lookup of a short url.
+   * @param invalidate removal of a short url from the local cache.
+   */
+  public PeerCacheServer(
+      String host,
+      int port,
+      int maxConnections,
+      Function<String, Optional<TinyUrl>> lookup,
+      Consumer<String> invalidate)
+      throws IOException {
+    this.lookup = lookup;
+    this.invalidate = invalidate;
+    this.connectionPermits = new Semaphore(maxConnections);
+    // a backlog of 0 keeps the default of the platform
+    this.serverSocket = new ServerSocket(port, 0, InetAddress.getByName(host));
+    executor.execute(this::accept);
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    serverSocket.close();
+    for (Socket connection : connections) {
+      connection.close();
+    }
+    executor.shutdownNow();
+  }
+
+  private void accept() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        if (!connectionPermits.tryAcquire()) {
+          log.debug("Rejected a peer connection from {}", socket.getRemoteSocketAddress());
+          socket.close();
+          continue;
+        }
+        connections.add(socket);
+        executor.execute(() -> serve(socket));
+      } catch (IOException e) {
+        if (!serverSocket.isClosed()) {
+          log.warn("Failed to accept a peer connection", e);
+        }
+      }
+    }
+  }
+
+  private void serve(Socket socket) {
+    try (Socket connection = socket;
+        DataInputStream in =
+            new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+      connection.setTcpNoDelay(true);
+      PeerProtocol.Request request;
+      while ((request = PeerProtocol.readRequest(in)) != null) {
+        String shortUrl = request.getShortUrl();
+        if (request.isInvalidate()) {
+          invalidate.accept(shortUrl);
+          PeerProtocol.writeInvalidated(out);
+          out.flush();
+          continue;
+        }
+        Optional<TinyUrl> tinyUrl;
+        try {
+          tinyUrl = lookup.apply(shortUrl);
+        } catch (RuntimeException e) {
+          log.warn("Failed to look up {} for a peer", shortUrl, e);
+          PeerProtocol.writeError(out);
+          out.flush();
+          continue;
+        }
+        PeerProtocol.writeResponse(out, tinyUrl);
+        out.flush();
+      }
+    } catch (IOException e) {
+      log.debug("Peer connection closed", e);
+    } finally {
+      connections.remove(socket);
+      connectionPermits.release();
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package com.azimbabu.tinyurlservice.peer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connections to one peer. At most {@code maxConnections} requests are in flight at once,
+ * connections are reused and a failed connection is closed rather than returned.
+ */
+class PeerClient implements Closeable {
+
+  private final String host;
+  private final int port;
+  private final int timeoutInMs;
+  private final Semaphore permits;
+  private final BlockingQueue<Connection> idle;
+
+  PeerClient(String host, int port, int timeoutInMs, int maxConnections) {
+    this.host = host;
+    this.port = port;
+    this.timeoutInMs = timeoutInMs;
+    this.permits = new Semaphore(maxConnections);
+    this.idle = new ArrayBlockingQueue<>(maxConnections);
+  }
+
+  /**
+   * Asks the peer for the tiny url.
+   *
+   * @return the peer's answer, or an unavailable @{@link PeerLookup} if the peer failed to look it
+   *     up.
+   * @throws IOException if the peer can't be reached, all connections stayed busy for the timeout
+   *     or the exchange failed.
+   */
+  PeerLookup get(String shortUrl) throws IOException {
+    return exchange(
+        connection -> {
+          PeerProtocol.writeRequest(connection.out, shortUrl);
+          connection.out.flush();
+          return PeerProtocol.readResponse(connection.in, shortUrl);
+        });
+  }
+
+  /**
+   * Asks the peer to drop the short url from its cache.
+   *
+   * @throws IOException if the peer can't be reached, all connections stayed busy for the timeout
+   *     or the exchange failed.
+   */
+  void invalidate(String shortUrl) throws IOException {
+    exchange(
+        connection -> {
+          PeerProtocol.writeInvalidateRequest(connection.out, shortUrl);
+          connection.out.flush();
+          PeerProtocol.readInvalidated(connection.in);
+          return null;
+        });
+  }
+
+  @Override
+  public void close() {
+    Connection connection;
+    while ((connection = idle.poll()) != null) {
+      connection.close();
+    }
+  }
+
+  /**
+   * Runs one request and response pair on an idle or new connection. A peer that keeps every
+   * connection busy for the timeout is as slow as one that doesn't answer, so both fail.
+   */
+  private <T> T exchange(Exchange<T> exchange) throws IOException {
+    try {
+      if (!permits.tryAcquire(timeoutInMs, TimeUnit.MILLISECONDS)) {
+        throw new IOException("All connections to " + host + ":" + port + " stayed busy");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for a connection");
+    }
+    try {
+      Connection connection = idle.poll();
+      if (connection == null) {
+        connection = connect();
+      }
+      try {
+        T result = exchange.apply(connection);
+        if (!idle.offer(connection)) {
+          connection.close();
+        }
+        return result;
+      } catch (IOException | RuntimeException e) {
+        connection.close();
+        throw e;
+      }
+    } finally {
+      permits.release();
+    }
+  }
+
+  private Connection connect() throws IOException {
+    Socket socket = new Socket();
+    try {
+      socket.setTcpNoDelay(true);
+      socket.setSoTimeout(timeoutInMs);
+      socket.connect(new InetSocketAddress(host, port), timeoutInMs);
+      return new Connection(socket);
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  private interface Exchange<T> {
+    T apply(Connection connection) throws IOException;
+  }
+
+  private static class Connection {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private Connection(Socket socket) throws IOException {
+      this.socket = socket;
+      this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    private void close() {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // nothing left to release
+      }
+    }
+  }
+}
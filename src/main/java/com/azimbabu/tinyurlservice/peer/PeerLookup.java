@@ -0,0 +1,42 @@
+package com.azimbabu.tinyurlservice.peer;
+
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+
+import java.util.Optional;
+
+/**
+ * Result of a @{@link PeerCache} lookup: either the owner's answer, which may be that the tiny url
+ * doesn't exist, or no answer at all, in which case the caller looks the short url up itself.
+ */
+public final class PeerLookup {
+
+  private static final PeerLookup UNAVAILABLE = new PeerLookup(false, Optional.empty());
+
+  private final boolean answered;
+
+  private final Optional<TinyUrl> tinyUrl;
+
+  private PeerLookup(boolean answered, Optional<TinyUrl> tinyUrl) {
+    this.answered = answered;
+    this.tinyUrl = tinyUrl;
+  }
+
+  /** The owner's answer, empty if it has no such tiny url. */
+  public static PeerLookup answered(Optional<TinyUrl> tinyUrl) {
+    return new PeerLookup(true, tinyUrl);
+  }
+
+  /** The owner couldn't be asked or failed to look the short url up. */
+  public static PeerLookup unavailable() {
+    return UNAVAILABLE;
+  }
+
+  public boolean isAnswered() {
+    return answered;
+  }
+
+  /** The answered tiny url, always empty if the lookup wasn't answered. */
+  public Optional<TinyUrl> getTinyUrl() {
+    return tinyUrl;
+  }
+}
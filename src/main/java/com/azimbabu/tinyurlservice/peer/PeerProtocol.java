@@ -0,0 +1,182 @@
+package com.azimbabu.tinyurlservice.peer;
+
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import com.azimbabu.tinyurlservice.model.UserUDT;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Binary protocol between peer caches. A connection carries any number of request and response
+ * pairs, one at a time.
+ *
+ * <pre>
+ * request  : [magic : byte][GET | INVALIDATE : byte][short url : string]
+ * response : [NOT_FOUND : byte]
+ *          | [ERROR : byte]
+ *          | [FOUND : byte][original url : string][custom alias : string][username : string]
+ *            [created at : long][expired at : long]
+ *          | [INVALIDATED : byte]
+ * string   : [length : int, -1 for null][UTF-8 bytes]
+ * </pre>
+ *
+ * A {@code GET} is answered with the lookup result, an {@code INVALIDATE} with {@code
+ * INVALIDATED} once the owner dropped the short url from its cache. Dates are epoch millis,
+ * {@link Long#MIN_VALUE} for null.
+ */
+final class PeerProtocol {
+
+  private static final byte MAGIC = 0x54;
+  private static final byte GET = 1;
+  private static final byte INVALIDATE = 2;
+  private static final byte NOT_FOUND = 0;
+  private static final byte FOUND = 1;
+  private static final byte ERROR = 2;
+  private static final byte INVALIDATED = 3;
+  private static final int MAX_STRING_BYTES = 1 << 20;
+
+  private PeerProtocol() {}
+
+  static void writeRequest(DataOutputStream out, String shortUrl) throws IOException {
+    out.writeByte(MAGIC);
+    out.writeByte(GET);
+    writeString(out, shortUrl);
+  }
+
+  static void writeInvalidateRequest(DataOutputStream out, String shortUrl) throws IOException {
+    out.writeByte(MAGIC);
+    out.writeByte(INVALIDATE);
+    writeString(out, shortUrl);
+  }
+
+  /** Reads the next request, or null if the peer closed the connection. */
+  static Request readRequest(DataInputStream in) throws IOException {
+    int magic = in.read();
+    if (magic < 0) {
+      return null;
+    }
+    byte type = magic == MAGIC ? in.readByte() : 0;
+    if (type != GET && type != INVALIDATE) {
+      throw new IOException("Malformed peer request");
+    }
+    return new Request(type == INVALIDATE, readString(in));
+  }
+
+  static void writeResponse(DataOutputStream out, Optional<TinyUrl> tinyUrl) throws IOException {
+    if (!tinyUrl.isPresent()) {
+      out.writeByte(NOT_FOUND);
+      return;
+    }
+    TinyUrl value = tinyUrl.get();
+    out.writeByte(FOUND);
+    writeString(out, value.getOriginalUrl());
+    writeString(out, value.getCustomAlias());
+    writeString(out, value.getUser() != null ? value.getUser().getUsername() : null);
+    writeDate(out, value.getCreatedAt());
+    writeDate(out, value.getExpiredAt());
+  }
+
+  static void writeError(DataOutputStream out) throws IOException {
+    out.writeByte(ERROR);
+  }
+
+  static void writeInvalidated(DataOutputStream out) throws IOException {
+    out.writeByte(INVALIDATED);
+  }
+
+  /**
+   * Reads the response to a request for the short url.
+   *
+   * @return the owner's answer, or an unavailable @{@link PeerLookup} if the owner failed to look
+   *     it up.
+   */
+  static PeerLookup readResponse(DataInputStream in, String shortUrl) throws IOException {
+    byte status = in.readByte();
+    switch (status) {
+      case NOT_FOUND:
+        return PeerLookup.answered(Optional.empty());
+      case ERROR:
+        return PeerLookup.unavailable();
+      case FOUND:
+        String originalUrl = readString(in);
+        String customAlias = readString(in);
+        String username = readString(in);
+        return PeerLookup.answered(
+            Optional.of(
+                TinyUrl.builder()
+                    .shortUrl(shortUrl)
+                    .originalUrl(originalUrl)
+                    .customAlias(customAlias)
+                    .user(username != null ? UserUDT.builder().username(username).build() : null)
+                    .createdAt(readDate(in))
+                    .expiredAt(readDate(in))
+                    .build()));
+      default:
+        throw new IOException("Malformed peer response status " + status);
+    }
+  }
+
+  /** Reads the response to an invalidate request. */
+  static void readInvalidated(DataInputStream in) throws IOException {
+    byte status = in.readByte();
+    if (status != INVALIDATED) {
+      throw new IOException("Malformed peer response status " + status);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length == -1) {
+      return null;
+    }
+    if (length < 0 || length > MAX_STRING_BYTES) {
+      throw new IOException("Malformed peer string length " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeDate(DataOutputStream out, Date date) throws IOException {
+    out.writeLong(date != null ? date.getTime() : Long.MIN_VALUE);
+  }
+
+  private static Date readDate(DataInputStream in) throws IOException {
+    long millis = in.readLong();
+    return millis != Long.MIN_VALUE ? new Date(millis) : null;
+  }
+
+  static final class Request {
+
+    private final boolean invalidate;
+    private final String shortUrl;
+
+    private Request(boolean invalidate, String shortUrl) {
+      this.invalidate = invalidate;
+      this.shortUrl = shortUrl;
+    }
+
+    /** Whether the peer asks to drop the short url from the cache rather than to look it up. */
+    boolean isInvalidate() {
+      return invalidate;
+    }
+
+    String getShortUrl() {
+      return shortUrl;
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package com.azimbabu.tinyurlservice.peer;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Highest random weight (rendezvous) hashing of keys onto nodes. Every node scores every key and
+ * the highest score owns it, so adding or removing a node only moves the keys that node wins or
+ * owned, and all nodes agree on the owner without coordination as long as they list the same
+ * nodes.
+ */
+public class RendezvousHash {
+
+  private final String[] nodes;
+  private final long[] nodeHashes;
+
+  public RendezvousHash(List<String> nodes) {
+    checkArgument(!nodes.isEmpty(), "At least one node is required");
+    this.nodes = nodes.toArray(new String[0]);
+    this.nodeHashes = new long[this.nodes.length];
+    for (int i = 0; i < this.nodes.length; i++) {
+      nodeHashes[i] = hash(this.nodes[i]);
+    }
+  }
+
+  /** Node owning the key. */
+  public String ownerOf(String key) {
+    long keyHash = hash(key);
+    int owner = 0;
+    long ownerScore = Long.MIN_VALUE;
+    for (int i = 0; i < nodes.length; i++) {
+      long score = mix64(nodeHashes[i] ^ keyHash);
+      if (score > ownerScore) {
+        ownerScore = score;
+        owner = i;
+      }
+    }
+    return nodes[owner];
+  }
+
+  private static long hash(String value) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+    }
+    return mix64(hash);
+  }
+
+  private static long mix64(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+}
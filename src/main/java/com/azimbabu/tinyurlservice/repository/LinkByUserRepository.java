@@ -0,0 +1,15 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.LinkByUser;
+import org.springframework.data.cassandra.core.mapping.MapId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface LinkByUserRepository
+    extends CrudRepository<LinkByUser, MapId>, LinkByUserRepositoryCustom {
+
+  Slice<LinkByUser> findByUsernameAndBucket(String username, Integer bucket, Pageable pageable);
+}
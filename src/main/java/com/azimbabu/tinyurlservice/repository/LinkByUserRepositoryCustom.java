@@ -0,0 +1,13 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.LinkByUser;
+
+public interface LinkByUserRepositoryCustom {
+
+  /**
+   * Inserts the link, expiring it together with its tiny url.
+   *
+   * @param ttlInSeconds Optional ttl of the row, no ttl if null.
+   */
+  void insert(LinkByUser linkByUser, Integer ttlInSeconds);
+}
@@ -0,0 +1,25 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.LinkByUser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.InsertOptions;
+
+public class LinkByUserRepositoryCustomImpl implements LinkByUserRepositoryCustom {
+
+  private CassandraOperations cassandraOperations;
+
+  @Autowired
+  public LinkByUserRepositoryCustomImpl(CassandraOperations cassandraOperations) {
+    this.cassandraOperations = cassandraOperations;
+  }
+
+  @Override
+  public void insert(LinkByUser linkByUser, Integer ttlInSeconds) {
+    InsertOptions.InsertOptionsBuilder options = InsertOptions.builder();
+    if (ttlInSeconds != null) {
+      options.ttl(ttlInSeconds);
+    }
+    cassandraOperations.insert(linkByUser, options.build());
+  }
+}
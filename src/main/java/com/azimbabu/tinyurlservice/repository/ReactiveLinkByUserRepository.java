@@ -0,0 +1,10 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.LinkByUser;
+import org.springframework.data.cassandra.core.mapping.MapId;
+import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReactiveLinkByUserRepository
+    extends ReactiveCassandraRepository<LinkByUser, MapId>, ReactiveLinkByUserRepositoryCustom {}
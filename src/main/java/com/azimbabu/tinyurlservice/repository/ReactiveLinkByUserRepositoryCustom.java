@@ -0,0 +1,10 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.LinkByUser;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveLinkByUserRepositoryCustom {
+
+  /** Non-blocking variant of @{@link LinkByUserRepositoryCustom#insert(LinkByUser, Integer)}. */
+  Mono<Void> insert(LinkByUser linkByUser, Integer ttlInSeconds);
+}
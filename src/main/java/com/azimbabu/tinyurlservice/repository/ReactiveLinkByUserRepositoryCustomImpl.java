@@ -0,0 +1,27 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.LinkByUser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.cassandra.core.InsertOptions;
+import org.springframework.data.cassandra.core.ReactiveCassandraOperations;
+import reactor.core.publisher.Mono;
+
+public class ReactiveLinkByUserRepositoryCustomImpl implements ReactiveLinkByUserRepositoryCustom {
+
+  private ReactiveCassandraOperations reactiveCassandraOperations;
+
+  @Autowired
+  public ReactiveLinkByUserRepositoryCustomImpl(
+      ReactiveCassandraOperations reactiveCassandraOperations) {
+    this.reactiveCassandraOperations = reactiveCassandraOperations;
+  }
+
+  @Override
+  public Mono<Void> insert(LinkByUser linkByUser, Integer ttlInSeconds) {
+    InsertOptions.InsertOptionsBuilder options = InsertOptions.builder();
+    if (ttlInSeconds != null) {
+      options.ttl(ttlInSeconds);
+    }
+    return reactiveCassandraOperations.insert(linkByUser, options.build()).then();
+  }
+}
@@ -0,0 +1,9 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReactiveTinyUrlRepository
+    extends ReactiveCassandraRepository<TinyUrl, String>, ReactiveTinyUrlRepositoryCustom {}
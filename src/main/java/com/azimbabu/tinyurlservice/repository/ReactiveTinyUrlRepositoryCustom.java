@@ -0,0 +1,37 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.Redirect;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+
+public interface ReactiveTinyUrlRepositoryCustom {
+
+  /** Non-blocking variant of @{@link TinyUrlRepositoryCustom#findByShortUrl(String)}. */
+  Mono<TinyUrl> findByShortUrl(String shortUrl);
+
+  /** Non-blocking variant of @{@link TinyUrlRepositoryCustom#findRedirectByShortUrl(String)}. */
+  Mono<Redirect> findRedirectByShortUrl(String shortUrl);
+
+  /**
+   * Non-blocking variant of @{@link TinyUrlRepositoryCustom#insertIfNotExists(TinyUrl, Integer)}.
+   *
+   * @param tinyUrl tiny url to save.
+   * @param ttlInSeconds Optional time to live of the row in seconds.
+   * @return @{@link Mono} of true if the row was inserted, false if the short url is already
+   *     taken.
+   */
+  Mono<Boolean> insertIfNotExists(TinyUrl tinyUrl, Integer ttlInSeconds);
+
+  /**
+   * Non-blocking variant of @{@link TinyUrlRepositoryCustom#replaceIfExpiredAt(TinyUrl, Date,
+   * Integer)}.
+   *
+   * @param tinyUrl tiny url to save.
+   * @param expiredAt expiration of the row to replace.
+   * @param ttlInSeconds Optional time to live of the row in seconds.
+   * @return @{@link Mono} of true if the row was replaced, false if it changed since it was read.
+   */
+  Mono<Boolean> replaceIfExpiredAt(TinyUrl tinyUrl, Date expiredAt, Integer ttlInSeconds);
+}
@@ -0,0 +1,38 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.Redirect;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import org.springframework.beans.factory.annotation.Autowired;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+
+public class ReactiveTinyUrlRepositoryCustomImpl implements ReactiveTinyUrlRepositoryCustom {
+
+  private TinyUrlDao tinyUrlDao;
+
+  @Autowired
+  public ReactiveTinyUrlRepositoryCustomImpl(TinyUrlDao tinyUrlDao) {
+    this.tinyUrlDao = tinyUrlDao;
+  }
+
+  @Override
+  public Mono<TinyUrl> findByShortUrl(String shortUrl) {
+    return tinyUrlDao.findByShortUrlAsync(shortUrl);
+  }
+
+  @Override
+  public Mono<Redirect> findRedirectByShortUrl(String shortUrl) {
+    return tinyUrlDao.findRedirectAsync(shortUrl);
+  }
+
+  @Override
+  public Mono<Boolean> insertIfNotExists(TinyUrl tinyUrl, Integer ttlInSeconds) {
+    return tinyUrlDao.insertIfNotExistsAsync(tinyUrl, ttlInSeconds);
+  }
+
+  @Override
+  public Mono<Boolean> replaceIfExpiredAt(TinyUrl tinyUrl, Date expiredAt, Integer ttlInSeconds) {
+    return tinyUrlDao.replaceIfExpiredAtAsync(tinyUrl, expiredAt, ttlInSeconds);
+  }
+}
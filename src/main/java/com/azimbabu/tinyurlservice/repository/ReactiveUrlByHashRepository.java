@@ -0,0 +1,9 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.UrlByHash;
+import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReactiveUrlByHashRepository
+    extends ReactiveCassandraRepository<UrlByHash, String>, ReactiveUrlByHashRepositoryCustom {}
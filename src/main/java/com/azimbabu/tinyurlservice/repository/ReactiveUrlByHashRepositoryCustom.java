@@ -0,0 +1,10 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.UrlByHash;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveUrlByHashRepositoryCustom {
+
+  /** Non-blocking variant of @{@link UrlByHashRepositoryCustom#insert(UrlByHash, Integer)}. */
+  Mono<Void> insert(UrlByHash urlByHash, Integer ttlInSeconds);
+}
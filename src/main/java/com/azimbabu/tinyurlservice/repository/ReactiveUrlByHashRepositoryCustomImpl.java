@@ -0,0 +1,27 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.UrlByHash;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.cassandra.core.InsertOptions;
+import org.springframework.data.cassandra.core.ReactiveCassandraOperations;
+import reactor.core.publisher.Mono;
+
+public class ReactiveUrlByHashRepositoryCustomImpl implements ReactiveUrlByHashRepositoryCustom {
+
+  private ReactiveCassandraOperations reactiveCassandraOperations;
+
+  @Autowired
+  public ReactiveUrlByHashRepositoryCustomImpl(
+      ReactiveCassandraOperations reactiveCassandraOperations) {
+    this.reactiveCassandraOperations = reactiveCassandraOperations;
+  }
+
+  @Override
+  public Mono<Void> insert(UrlByHash urlByHash, Integer ttlInSeconds) {
+    InsertOptions.InsertOptionsBuilder options = InsertOptions.builder();
+    if (ttlInSeconds != null) {
+      options.ttl(ttlInSeconds);
+    }
+    return reactiveCassandraOperations.insert(urlByHash, options.build()).then();
+  }
+}
@@ -0,0 +1,222 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.Redirect;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import com.azimbabu.tinyurlservice.model.UserUDT;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.UDTValue;
+import com.datastax.driver.core.UserType;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Hand written data access for the {@code tiny_url} hot paths, used by the repository fragments in
+ * place of derived queries and the entity converter.
+ *
+ * <p>Statements are prepared once at startup. Bound prepared statements carry their routing key,
+ * so the driver's token aware policy sends them straight to a replica of the short url. Lookups
+ * read a single row and are marked idempotent so the driver may retry or speculatively execute
+ * them. Redirect lookups read only the original url and expiration, the metadata lookup reads the
+ * whole row. Each statement uses the consistency level configured for its path.
+ */
+@Component
+public class TinyUrlDao {
+
+  private static final String SELECT_TINY_URL =
+      "SELECT shorturl, originalurl, customalias, createdat, expiredat, \"user\" "
+          + "FROM tiny_url WHERE shorturl = ? LIMIT 1";
+  private static final String SELECT_REDIRECT =
+      "SELECT originalurl, expiredat FROM tiny_url WHERE shorturl = ? LIMIT 1";
+  private static final String INSERT_TINY_URL =
+      "INSERT INTO tiny_url (shorturl, originalurl, customalias, createdat, expiredat, \"user\") "
+          + "VALUES (:shorturl, :originalurl, :customalias, :createdat, :expiredat, :user) "
+          + "IF NOT EXISTS USING TTL :ttl";
+  private static final String REPLACE_TINY_URL =
+      "UPDATE tiny_url USING TTL :ttl SET originalurl = :originalurl, customalias = :customalias, "
+          + "createdat = :createdat, expiredat = :expiredat, \"user\" = :user "
+          + "WHERE shorturl = :shorturl IF expiredat = :previousexpiredat";
+
+  private final Session session;
+
+  private final PreparedStatement selectTinyUrl;
+
+  private final PreparedStatement selectRedirect;
+
+  private final PreparedStatement insertTinyUrl;
+
+  private final PreparedStatement replaceTinyUrl;
+
+  private final UserType userType;
+
+  @Autowired
+  public TinyUrlDao(Session session, TinyUrlProperties tinyUrlProperties) {
+    this.session = session;
+    ConsistencyLevel lookupConsistencyLevel =
+        ConsistencyLevel.valueOf(tinyUrlProperties.getLookupConsistencyLevel());
+
+    this.selectTinyUrl =
+        session
+            .prepare(SELECT_TINY_URL)
+            .setConsistencyLevel(lookupConsistencyLevel)
+            .setIdempotent(true);
+    this.selectRedirect =
+        session
+            .prepare(SELECT_REDIRECT)
+            .setConsistencyLevel(lookupConsistencyLevel)
+            .setIdempotent(true);
+    this.insertTinyUrl = prepareClaim(session, INSERT_TINY_URL, tinyUrlProperties);
+    this.replaceTinyUrl = prepareClaim(session, REPLACE_TINY_URL, tinyUrlProperties);
+    this.userType =
+        session
+            .getCluster()
+            .getMetadata()
+            .getKeyspace(session.getLoggedKeyspace())
+            .getUserType("user_udt");
+  }
+
+  public Optional<TinyUrl> findByShortUrl(String shortUrl) {
+    return Optional.ofNullable(toTinyUrl(session.execute(selectTinyUrl.bind(shortUrl)).one()));
+  }
+
+  public Mono<TinyUrl> findByShortUrlAsync(String shortUrl) {
+    return executeAsync(selectTinyUrl.bind(shortUrl), resultSet -> toTinyUrl(resultSet.one()));
+  }
+
+  public Optional<Redirect> findRedirect(String shortUrl) {
+    return Optional.ofNullable(toRedirect(session.execute(selectRedirect.bind(shortUrl)).one()));
+  }
+
+  public Mono<Redirect> findRedirectAsync(String shortUrl) {
+    return executeAsync(selectRedirect.bind(shortUrl), resultSet -> toRedirect(resultSet.one()));
+  }
+
+  public boolean insertIfNotExists(TinyUrl tinyUrl, Integer ttlInSeconds) {
+    return session.execute(bindInsert(tinyUrl, ttlInSeconds)).wasApplied();
+  }
+
+  public Mono<Boolean> insertIfNotExistsAsync(TinyUrl tinyUrl, Integer ttlInSeconds) {
+    return executeAsync(bindInsert(tinyUrl, ttlInSeconds), ResultSet::wasApplied);
+  }
+
+  public boolean replaceIfExpiredAt(TinyUrl tinyUrl, Date expiredAt, Integer ttlInSeconds) {
+    return session.execute(bindReplace(tinyUrl, expiredAt, ttlInSeconds)).wasApplied();
+  }
+
+  public Mono<Boolean> replaceIfExpiredAtAsync(
+      TinyUrl tinyUrl, Date expiredAt, Integer ttlInSeconds) {
+    return executeAsync(bindReplace(tinyUrl, expiredAt, ttlInSeconds), ResultSet::wasApplied);
+  }
+
+  private static PreparedStatement prepareClaim(
+      Session session, String query, TinyUrlProperties tinyUrlProperties) {
+    return session
+        .prepare(query)
+        .setConsistencyLevel(ConsistencyLevel.valueOf(tinyUrlProperties.getClaimConsistencyLevel()))
+        .setSerialConsistencyLevel(
+            ConsistencyLevel.valueOf(tinyUrlProperties.getClaimSerialConsistencyLevel()));
+  }
+
+  /**
+   * Unlike the insert, every column is bound, null values included, so that nothing of the expired
+   * tiny url is left in the row.
+   */
+  private BoundStatement bindReplace(TinyUrl tinyUrl, Date expiredAt, Integer ttlInSeconds) {
+    return replaceTinyUrl
+        .bind()
+        .setString("shorturl", tinyUrl.getShortUrl())
+        .setString("originalurl", tinyUrl.getOriginalUrl())
+        .setString("customalias", tinyUrl.getCustomAlias())
+        .setTimestamp("createdat", tinyUrl.getCreatedAt())
+        .setTimestamp("expiredat", tinyUrl.getExpiredAt())
+        .setUDTValue(
+            "user",
+            tinyUrl.getUser() != null
+                ? userType.newValue().setString("username", tinyUrl.getUser().getUsername())
+                : null)
+        .setTimestamp("previousexpiredat", expiredAt)
+        .setInt("ttl", ttlInSeconds != null ? ttlInSeconds : 0);
+  }
+
+  /** Null values are left unset so that the insert writes no tombstones for them. */
+  private BoundStatement bindInsert(TinyUrl tinyUrl, Integer ttlInSeconds) {
+    BoundStatement statement =
+        insertTinyUrl
+            .bind()
+            .setString("shorturl", tinyUrl.getShortUrl())
+            .setString("originalurl", tinyUrl.getOriginalUrl())
+            .setInt("ttl", ttlInSeconds != null ? ttlInSeconds : 0);
+    if (tinyUrl.getCustomAlias() != null) {
+      statement.setString("customalias", tinyUrl.getCustomAlias());
+    }
+    if (tinyUrl.getCreatedAt() != null) {
+      statement.setTimestamp("createdat", tinyUrl.getCreatedAt());
+    }
+    if (tinyUrl.getExpiredAt() != null) {
+      statement.setTimestamp("expiredat", tinyUrl.getExpiredAt());
+    }
+    if (tinyUrl.getUser() != null) {
+      statement.setUDTValue(
+          "user", userType.newValue().setString("username", tinyUrl.getUser().getUsername()));
+    }
+    return statement;
+  }
+
+  private TinyUrl toTinyUrl(Row row) {
+    if (row == null) {
+      return null;
+    }
+    UDTValue user = row.getUDTValue("user");
+    return TinyUrl.builder()
+        .shortUrl(row.getString("shorturl"))
+        .originalUrl(row.getString("originalurl"))
+        .customAlias(row.getString("customalias"))
+        .createdAt(row.getTimestamp("createdat"))
+        .expiredAt(row.getTimestamp("expiredat"))
+        .user(user != null ? UserUDT.builder().username(user.getString("username")).build() : null)
+        .build();
+  }
+
+  private Redirect toRedirect(Row row) {
+    if (row == null) {
+      return null;
+    }
+    return new Redirect(row.getString("originalurl"), row.getTimestamp("expiredat"));
+  }
+
+  private <T> Mono<T> executeAsync(BoundStatement statement, Function<ResultSet, T> mapper) {
+    return Mono.create(
+        sink -> {
+          ResultSetFuture future = session.executeAsync(statement);
+          sink.onCancel(() -> future.cancel(false));
+          Futures.addCallback(
+              future,
+              new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(ResultSet resultSet) {
+                  sink.success(mapper.apply(resultSet));
+                }
+
+                @Override
+                public void onFailure(Throwable throwable) {
+                  sink.error(throwable);
+                }
+              },
+              MoreExecutors.directExecutor());
+        });
+  }
+}
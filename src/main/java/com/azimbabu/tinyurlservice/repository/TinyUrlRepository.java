@@ -4,12 +4,10 @@ import com.azimbabu.tinyurlservice.model.TinyUrl;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
-
+/**
+ * Tiny url repository. The lookups and the claim are implemented by @{@link TinyUrlDao} through
+ * @{@link TinyUrlRepositoryCustom} rather than derived from the method names.
+ */
 @Repository
-public interface TinyUrlRepository extends CrudRepository<TinyUrl, String> {
-
-  Optional<TinyUrl> findByShortUrl(String shortUrl);
-
-  boolean existsByShortUrl(String shortUrl);
-}
+public interface TinyUrlRepository
+    extends CrudRepository<TinyUrl, String>, TinyUrlRepositoryCustom {}
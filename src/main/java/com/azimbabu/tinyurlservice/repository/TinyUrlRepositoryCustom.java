@@ -0,0 +1,37 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.Redirect;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+
+import java.util.Date;
+import java.util.Optional;
+
+public interface TinyUrlRepositoryCustom {
+
+  /** Finds the tiny url of the short url with a single row, prepared lookup. */
+  Optional<TinyUrl> findByShortUrl(String shortUrl);
+
+  /** Finds the redirect of the short url, reading only the original url and expiration. */
+  Optional<Redirect> findRedirectByShortUrl(String shortUrl);
+
+  /**
+   * Claims the short url of the tiny url with {@code INSERT ... IF NOT EXISTS}.
+   *
+   * @param tinyUrl tiny url to save.
+   * @param ttlInSeconds Optional time to live of the row in seconds, Cassandra drops the row once
+   *     it expires.
+   * @return true if the row was inserted, false if the short url is already taken.
+   */
+  boolean insertIfNotExists(TinyUrl tinyUrl, Integer ttlInSeconds);
+
+  /**
+   * Replaces the row of the short url of the tiny url with {@code UPDATE ... IF expiredat = ?}, so
+   * an expired tiny url that Cassandra hasn't dropped can be claimed again by one request only.
+   *
+   * @param tinyUrl tiny url to save.
+   * @param expiredAt expiration of the row to replace.
+   * @param ttlInSeconds Optional time to live of the row in seconds.
+   * @return true if the row was replaced, false if it changed since it was read.
+   */
+  boolean replaceIfExpiredAt(TinyUrl tinyUrl, Date expiredAt, Integer ttlInSeconds);
+}
@@ -0,0 +1,38 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.Redirect;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Date;
+import java.util.Optional;
+
+public class TinyUrlRepositoryCustomImpl implements TinyUrlRepositoryCustom {
+
+  private TinyUrlDao tinyUrlDao;
+
+  @Autowired
+  public TinyUrlRepositoryCustomImpl(TinyUrlDao tinyUrlDao) {
+    this.tinyUrlDao = tinyUrlDao;
+  }
+
+  @Override
+  public Optional<TinyUrl> findByShortUrl(String shortUrl) {
+    return tinyUrlDao.findByShortUrl(shortUrl);
+  }
+
+  @Override
+  public Optional<Redirect> findRedirectByShortUrl(String shortUrl) {
+    return tinyUrlDao.findRedirect(shortUrl);
+  }
+
+  @Override
+  public boolean insertIfNotExists(TinyUrl tinyUrl, Integer ttlInSeconds) {
+    return tinyUrlDao.insertIfNotExists(tinyUrl, ttlInSeconds);
+  }
+
+  @Override
+  public boolean replaceIfExpiredAt(TinyUrl tinyUrl, Date expiredAt, Integer ttlInSeconds) {
+    return tinyUrlDao.replaceIfExpiredAt(tinyUrl, expiredAt, ttlInSeconds);
+  }
+}
@@ -0,0 +1,15 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.TopLinksSnapshot;
+import org.springframework.data.cassandra.core.mapping.MapId;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface TopLinksSnapshotRepository extends CrudRepository<TopLinksSnapshot, MapId> {
+
+  List<TopLinksSnapshot> findByDay(LocalDate day);
+}
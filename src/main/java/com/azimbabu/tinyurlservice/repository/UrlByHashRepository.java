@@ -0,0 +1,9 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.UrlByHash;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UrlByHashRepository
+    extends CrudRepository<UrlByHash, String>, UrlByHashRepositoryCustom {}
@@ -0,0 +1,13 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.UrlByHash;
+
+public interface UrlByHashRepositoryCustom {
+
+  /**
+   * Inserts the index entry, expiring it together with its tiny url.
+   *
+   * @param ttlInSeconds Optional ttl of the row, no ttl if null.
+   */
+  void insert(UrlByHash urlByHash, Integer ttlInSeconds);
+}
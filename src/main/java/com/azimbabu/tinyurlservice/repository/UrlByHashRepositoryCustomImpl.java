@@ -0,0 +1,25 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.model.UrlByHash;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.InsertOptions;
+
+public class UrlByHashRepositoryCustomImpl implements UrlByHashRepositoryCustom {
+
+  private CassandraOperations cassandraOperations;
+
+  @Autowired
+  public UrlByHashRepositoryCustomImpl(CassandraOperations cassandraOperations) {
+    this.cassandraOperations = cassandraOperations;
+  }
+
+  @Override
+  public void insert(UrlByHash urlByHash, Integer ttlInSeconds) {
+    InsertOptions.InsertOptionsBuilder options = InsertOptions.builder();
+    if (ttlInSeconds != null) {
+      options.ttl(ttlInSeconds);
+    }
+    cassandraOperations.insert(urlByHash, options.build());
+  }
+}
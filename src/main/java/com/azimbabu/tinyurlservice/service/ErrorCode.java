@@ -2,5 +2,10 @@ package com.azimbabu.tinyurlservice.service;
 
 public enum ErrorCode {
   CUSTOM_ALIAS_EXISTS,
-  SHORT_URL_RETRY_EXHAUSTED
+  SHORT_URL_RETRY_EXHAUSTED,
+  KEY_RANGE_EXHAUSTED,
+  KEY_RANGE_UNAVAILABLE,
+  INVALID_REQUEST,
+  RATE_LIMITED,
+  OVERLOADED
 }
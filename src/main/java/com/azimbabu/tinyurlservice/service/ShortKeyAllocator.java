@@ -0,0 +1,202 @@
+package com.azimbabu.tinyurlservice.service;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.datastax.driver.core.Row;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.cql.CqlOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out collision free short url key ids from blocks leased out of the {@code key_range}
+ * table. A block is claimed with a lightweight transaction, so no two nodes ever receive the same
+ * id, and ids are then served from memory without any per request round trip. The next block is
+ * leased in the background once the current one drops below the refill threshold.
+ *
+ * <p>Blocks are only ever leased on the refill thread. Creates that find both blocks used up wait
+ * for the refill without holding the allocator's monitor, so no caller sits on a Cassandra round
+ * trip while others queue behind it.
+ */
+@Slf4j
+@Component
+public class ShortKeyAllocator {
+
+  private static final int MAX_LEASE_ATTEMPTS = 10;
+  private static final long MAX_LEASE_BACKOFF_IN_MS = 50;
+  private static final String EPOCH_NAME = "epoch";
+
+  private static final String SELECT_NEXT_VALUE =
+      "SELECT nextvalue FROM key_range WHERE name = ?";
+  private static final String INSERT_NEXT_VALUE =
+      "INSERT INTO key_range (name, nextvalue) VALUES (?, ?) IF NOT EXISTS";
+  private static final String UPDATE_NEXT_VALUE =
+      "UPDATE key_range SET nextvalue = ? WHERE name = ? IF nextvalue = ?";
+
+  private final CqlOperations cqlOperations;
+
+  private final TinyUrlProperties tinyUrlProperties;
+
+  private final ShortKeyCodec shortKeyCodec;
+
+  private final ExecutorService refillExecutor =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "key-range-refill");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private long next;
+  private long end;
+  private long[] prefetched;
+  private boolean refillInFlight;
+  private RuntimeException refillFailure;
+
+  @Autowired
+  public ShortKeyAllocator(
+      CassandraOperations cassandraOperations, TinyUrlProperties tinyUrlProperties) {
+    this.cqlOperations = cassandraOperations.getCqlOperations();
+    this.tinyUrlProperties = tinyUrlProperties;
+    this.shortKeyCodec = ShortKeyCodec.of(tinyUrlProperties);
+  }
+
+  /**
+   * Returns the next unused key id. Only waits for Cassandra when both the current and the
+   * prefetched block are used up, which normally happens only for the very first call.
+   *
+   * @return key id, unique across all nodes sharing the {@code key_range} table.
+   * @throws @{@link ServiceException} with @{@link ErrorCode#KEY_RANGE_EXHAUSTED} if the key
+   *     space for the configured short url length is used up, or with @{@link
+   *     ErrorCode#KEY_RANGE_UNAVAILABLE} if no block could be leased within the lease timeout.
+   */
+  public synchronized long nextId() {
+    long deadline =
+        System.nanoTime()
+            + TimeUnit.MILLISECONDS.toNanos(tinyUrlProperties.getKeyRangeLeaseTimeoutInMs());
+    while (next >= end) {
+      if (prefetched != null) {
+        next = prefetched[0];
+        end = prefetched[1];
+        prefetched = null;
+        break;
+      }
+      if (refillFailure != null) {
+        RuntimeException e = refillFailure;
+        refillFailure = null;
+        throw e;
+      }
+      startRefill();
+      long remainingNanos = deadline - System.nanoTime();
+      if (remainingNanos <= 0) {
+        throw new ServiceException(
+            "Timed out waiting for a short url key range", ErrorCode.KEY_RANGE_UNAVAILABLE);
+      }
+      try {
+        TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ServiceException(
+            "Interrupted waiting for a short url key range", e, ErrorCode.KEY_RANGE_UNAVAILABLE);
+      }
+    }
+
+    long id = next++;
+    if (end - next <= tinyUrlProperties.getKeyRangeRefillThreshold() && prefetched == null) {
+      startRefill();
+    }
+    return id;
+  }
+
+  /**
+   * Random id of the current {@code key_range} table, set by the first node that asks for it.
+   * Recreating the keyspace or the table starts a new epoch and hands out key ids again, so node
+   * local state that outlives a restart, such as the redirect table file, compares epochs before
+   * trusting its short urls.
+   */
+  public long getEpoch() {
+    long candidate = ThreadLocalRandom.current().nextLong();
+    Row row = cqlOperations.queryForResultSet(INSERT_NEXT_VALUE, EPOCH_NAME, candidate).one();
+    return row.getBool("[applied]") ? candidate : row.getLong("nextvalue");
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    refillExecutor.shutdownNow();
+  }
+
+  private void startRefill() {
+    if (!refillInFlight) {
+      refillInFlight = true;
+      refillExecutor.execute(this::refill);
+    }
+  }
+
+  private void refill() {
+    long[] block = null;
+    RuntimeException failure = null;
+    try {
+      block = leaseBlock();
+    } catch (RuntimeException e) {
+      log.warn("Failed to prefetch short url key range", e);
+      failure = e;
+    }
+    synchronized (this) {
+      prefetched = block;
+      refillFailure = failure;
+      refillInFlight = false;
+      notifyAll();
+    }
+  }
+
+  private long[] leaseBlock() {
+    // keys with check digits have a smaller id space and lease from a range of their own
+    String name = "short-url-" + shortKeyCodec.getLength();
+    if (shortKeyCodec.getCheckDigits() > 0) {
+      name += "-check-" + shortKeyCodec.getCheckDigits();
+    }
+    long size = tinyUrlProperties.getKeyRangeSize();
+    long keySpace = shortKeyCodec.getKeySpace();
+
+    for (int i = 0; i < MAX_LEASE_ATTEMPTS; i++) {
+      Row row = cqlOperations.queryForResultSet(SELECT_NEXT_VALUE, name).one();
+      if (row == null) {
+        if (cqlOperations.execute(INSERT_NEXT_VALUE, name, size)) {
+          return new long[] {0, size};
+        }
+        continue;
+      }
+
+      long start = row.getLong("nextvalue");
+      if (start >= keySpace) {
+        throw new ServiceException(ErrorCode.KEY_RANGE_EXHAUSTED);
+      }
+      long blockEnd = Math.min(start + size, keySpace);
+      if (cqlOperations.execute(UPDATE_NEXT_VALUE, blockEnd, name, start)) {
+        return new long[] {start, blockEnd};
+      }
+      // another node leased the block first, back off so that the nodes don't retry in lockstep
+      backOff(i);
+    }
+    throw new ServiceException(
+        "Could not lease a short url key range after " + MAX_LEASE_ATTEMPTS + " attempts",
+        ErrorCode.KEY_RANGE_UNAVAILABLE);
+  }
+
+  private static void backOff(int attempt) {
+    long maxBackoff = Math.min(MAX_LEASE_BACKOFF_IN_MS, 1L << attempt);
+    try {
+      Thread.sleep(ThreadLocalRandom.current().nextLong(maxBackoff + 1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ServiceException(
+          "Interrupted leasing a short url key range", e, ErrorCode.KEY_RANGE_UNAVAILABLE);
+    }
+  }
+}
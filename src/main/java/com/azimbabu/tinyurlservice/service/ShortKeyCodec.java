@@ -0,0 +1,313 @@
+package com.azimbabu.tinyurlservice.service;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Fixed length base62 codec for short url keys. Values are written most significant digit first
+ * straight into a reusable per thread {@code char[]}, so the only allocation per key is the
+ * resulting {@link String}.
+ *
+ * <p>Two sources of key values are supported:
+ *
+ * <ul>
+ *   <li>{@link #encodeId(long)} maps a unique key id through a keyed Feistel permutation of the
+ *       key space. Distinct ids always give distinct keys, yet consecutive ids give unrelated keys.
+ *   <li>{@link #randomKey()} draws all of its bits from a per thread {@link SecureRandom}, so every
+ *       digit carries entropy instead of the clock-seq/node bits of a time based UUID that hardly
+ *       change on one node, and no key can be predicted from the keys handed out before it.
+ * </ul>
+ *
+ * <p>Optionally the last {@code checkDigits} digits of every key are a SipHash-2-4 MAC of the
+ * value, keyed by the secret. The value then only has {@code length - checkDigits} digits, and
+ * {@link #decode(CharSequence)} rejects any key whose check digits don't match, so all but about
+ * one in {@code 62 ^ checkDigits} forged or mistyped keys are turned away without any lookup.
+ */
+public class ShortKeyCodec {
+
+  /** Longest key whose key space still fits in the 60 bit Feistel domain. */
+  public static final int MAX_LENGTH = 10;
+
+  private static final char[] ALPHABET =
+      "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+  private static final int BASE = ALPHABET.length;
+  private static final byte[] DIGITS = new byte[128];
+  private static final int FEISTEL_ROUNDS = 4;
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+  private static final ThreadLocal<SecureRandom> RANDOM =
+      ThreadLocal.withInitial(SecureRandom::new);
+
+  static {
+    Arrays.fill(DIGITS, (byte) -1);
+    for (int i = 0; i < BASE; i++) {
+      DIGITS[ALPHABET[i]] = (byte) i;
+    }
+  }
+
+  private final int length;
+  private final int valueLength;
+  private final int checkDigits;
+  private final long checkSpace;
+  private final long macKey0;
+  private final long macKey1;
+  private final long keySpace;
+  private final int halfBits;
+  private final long halfMask;
+  private final long[] roundKeys = new long[FEISTEL_ROUNDS];
+  private final ThreadLocal<char[]> buffer;
+
+  public ShortKeyCodec(int length, String secret) {
+    this(length, 0, secret);
+  }
+
+  /**
+   * @param length total key length including the check digits.
+   * @param checkDigits number of trailing MAC check digits, 0 for none.
+   * @param secret key of the permutation and the MAC.
+   */
+  public ShortKeyCodec(int length, int checkDigits, String secret) {
+    checkArgument(length > 0 && length <= MAX_LENGTH, "Short url length should be 1 to 10");
+    checkArgument(
+        checkDigits >= 0 && checkDigits < length, "Check digits should be 0 to length - 1");
+    this.length = length;
+    this.checkDigits = checkDigits;
+    this.valueLength = length - checkDigits;
+    this.keySpace = keySpace(valueLength);
+    this.checkSpace = keySpace(checkDigits);
+
+    ByteBuffer macKey = ByteBuffer.wrap(sha256("key-check:" + (secret != null ? secret : "")));
+    this.macKey0 = macKey.getLong();
+    this.macKey1 = macKey.getLong();
+
+    int bits = 64 - Long.numberOfLeadingZeros(keySpace - 1);
+    this.halfBits = (bits + 1) / 2;
+    this.halfMask = (1L << halfBits) - 1;
+
+    long seed = hash(secret);
+    for (int i = 0; i < FEISTEL_ROUNDS; i++) {
+      seed += GOLDEN_GAMMA;
+      roundKeys[i] = mix64(seed);
+    }
+    this.buffer = ThreadLocal.withInitial(() -> new char[length]);
+  }
+
+  /** Codec of the configured short url length, check digits and key secret. */
+  public static ShortKeyCodec of(TinyUrlProperties tinyUrlProperties) {
+    return new ShortKeyCodec(
+        tinyUrlProperties.getShortUrlLength(),
+        Boolean.TRUE.equals(tinyUrlProperties.getKeyCheckEnabled())
+            ? tinyUrlProperties.getKeyCheckDigits()
+            : 0,
+        tinyUrlProperties.getKeySecret());
+  }
+
+  /** Number of distinct keys of the given length, i.e. 62 ^ length. */
+  public static long keySpace(int length) {
+    long keySpace = 1;
+    for (int i = 0; i < length; i++) {
+      keySpace *= BASE;
+    }
+    return keySpace;
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  public int getCheckDigits() {
+    return checkDigits;
+  }
+
+  /** Number of distinct values, and so of distinct valid keys, i.e. 62 ^ (length - checkDigits). */
+  public long getKeySpace() {
+    return keySpace;
+  }
+
+  /** Whether the key has the length of a key of this codec and only base62 digits. */
+  public boolean hasKeyFormat(CharSequence key) {
+    return key != null && key.length() == length && readDigits(key, 0, length) >= 0;
+  }
+
+  /** Whether the key could have been produced by this codec, checked without any I/O. */
+  public boolean isValid(CharSequence key) {
+    return decode(key) >= 0;
+  }
+
+  /** Encodes a unique key id in {@code [0, keySpace)} into a key no other id maps to. */
+  public String encodeId(long id) {
+    return encode(permute(id));
+  }
+
+  /** Reverse of {@link #encodeId(long)}, or -1 if the key isn't a valid encoded key. */
+  public long decodeId(CharSequence key) {
+    long value = decode(key);
+    return value < 0 ? -1 : unpermute(value);
+  }
+
+  /** Encodes a fresh unpredictable key. Random keys can collide and need an existence check. */
+  public String randomKey() {
+    long value = RANDOM.get().nextLong();
+    return encode(Long.remainderUnsigned(value, keySpace));
+  }
+
+  /** Encodes a value in {@code [0, keySpace)} as exactly {@code length} base62 digits. */
+  public String encode(long value) {
+    char[] chars = buffer.get();
+    encode(value, chars, 0);
+    return new String(chars, 0, length);
+  }
+
+  /** Writes {@code length} base62 digits of the value and its check into dest at offset. */
+  public void encode(long value, char[] dest, int offset) {
+    checkArgument(value >= 0 && value < keySpace, "Value out of key space");
+    writeDigits(value, dest, offset, valueLength);
+    if (checkDigits > 0) {
+      writeDigits(check(value), dest, offset + valueLength, checkDigits);
+    }
+  }
+
+  /**
+   * Decodes a key into its value, or -1 if it has the wrong length, a non base62 char or check
+   * digits that don't match the value.
+   */
+  public long decode(CharSequence key) {
+    if (key == null || key.length() != length) {
+      return -1;
+    }
+    long value = readDigits(key, 0, valueLength);
+    if (value < 0 || checkDigits == 0) {
+      return value;
+    }
+    long check = readDigits(key, valueLength, checkDigits);
+    return check == check(value) ? value : -1;
+  }
+
+  /** Keyed bijection of {@code [0, keySpace)} using cycle walking over a balanced Feistel. */
+  public long permute(long value) {
+    checkArgument(value >= 0 && value < keySpace, "Value out of key space");
+    do {
+      value = feistel(value);
+    } while (value >= keySpace);
+    return value;
+  }
+
+  /** Inverse of {@link #permute(long)}. */
+  public long unpermute(long value) {
+    checkArgument(value >= 0 && value < keySpace, "Value out of key space");
+    do {
+      value = inverseFeistel(value);
+    } while (value >= keySpace);
+    return value;
+  }
+
+  private static void writeDigits(long value, char[] dest, int offset, int digits) {
+    for (int i = offset + digits - 1; i >= offset; i--) {
+      dest[i] = ALPHABET[(int) (value % BASE)];
+      value /= BASE;
+    }
+  }
+
+  private static long readDigits(CharSequence key, int offset, int digits) {
+    long value = 0;
+    for (int i = offset; i < offset + digits; i++) {
+      char c = key.charAt(i);
+      int digit = c < DIGITS.length ? DIGITS[c] : -1;
+      if (digit < 0) {
+        return -1;
+      }
+      value = value * BASE + digit;
+    }
+    return value;
+  }
+
+  private long check(long value) {
+    return Long.remainderUnsigned(sipHash24(value), checkSpace);
+  }
+
+  /** SipHash-2-4 of the 8 byte little endian encoding of the value. */
+  private long sipHash24(long value) {
+    long v0 = macKey0 ^ 0x736f6d6570736575L;
+    long v1 = macKey1 ^ 0x646f72616e646f6dL;
+    long v2 = macKey0 ^ 0x6c7967656e657261L;
+    long v3 = macKey1 ^ 0x7465646279746573L;
+
+    long last = 8L << 56;
+    v3 ^= value;
+    for (int round = 0; round < 8; round++) {
+      if (round == 2) {
+        // 2 compression rounds of the value, then of the final length block
+        v0 ^= value;
+        v3 ^= last;
+      } else if (round == 4) {
+        // followed by 4 finalization rounds
+        v0 ^= last;
+        v2 ^= 0xff;
+      }
+      v0 += v1;
+      v1 = Long.rotateLeft(v1, 13) ^ v0;
+      v0 = Long.rotateLeft(v0, 32);
+      v2 += v3;
+      v3 = Long.rotateLeft(v3, 16) ^ v2;
+      v0 += v3;
+      v3 = Long.rotateLeft(v3, 21) ^ v0;
+      v2 += v1;
+      v1 = Long.rotateLeft(v1, 17) ^ v2;
+      v2 = Long.rotateLeft(v2, 32);
+    }
+    return v0 ^ v1 ^ v2 ^ v3;
+  }
+
+  private static byte[] sha256(String secret) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  private long feistel(long value) {
+    long left = value >>> halfBits;
+    long right = value & halfMask;
+    for (int i = 0; i < FEISTEL_ROUNDS; i++) {
+      long next = left ^ (mix64(right ^ roundKeys[i]) & halfMask);
+      left = right;
+      right = next;
+    }
+    return (left << halfBits) | right;
+  }
+
+  private long inverseFeistel(long value) {
+    long left = value >>> halfBits;
+    long right = value & halfMask;
+    for (int i = FEISTEL_ROUNDS - 1; i >= 0; i--) {
+      long previous = right ^ (mix64(left ^ roundKeys[i]) & halfMask);
+      right = left;
+      left = previous;
+    }
+    return (left << halfBits) | right;
+  }
+
+  private static long hash(String secret) {
+    long hash = 0xcbf29ce484222325L;
+    if (secret != null) {
+      for (byte b : secret.getBytes(StandardCharsets.UTF_8)) {
+        hash = (hash ^ b) * 0x100000001b3L;
+      }
+    }
+    return mix64(hash);
+  }
+
+  private static long mix64(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+}
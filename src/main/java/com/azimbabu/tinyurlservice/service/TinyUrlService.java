@@ -1,57 +1,169 @@
 package com.azimbabu.tinyurlservice.service;
 
+import com.azimbabu.tinyurlservice.cache.RedirectTable;
+import com.azimbabu.tinyurlservice.cache.ShortUrlBloomFilter;
+import com.azimbabu.tinyurlservice.cache.TinyUrlCache;
+import com.azimbabu.tinyurlservice.cache.UserCache;
 import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.dto.TinyUrlRequest;
+import com.azimbabu.tinyurlservice.dto.TinyUrlResponse;
+import com.azimbabu.tinyurlservice.dto.UserLink;
+import com.azimbabu.tinyurlservice.dto.UserLinksResponse;
+import com.azimbabu.tinyurlservice.model.LinkByUser;
+import com.azimbabu.tinyurlservice.model.Redirect;
 import com.azimbabu.tinyurlservice.model.TinyUrl;
 import com.azimbabu.tinyurlservice.model.User;
 import com.azimbabu.tinyurlservice.model.UserUDT;
+import com.azimbabu.tinyurlservice.peer.PeerCache;
+import com.azimbabu.tinyurlservice.peer.PeerLookup;
+import com.azimbabu.tinyurlservice.repository.LinkByUserRepository;
+import com.azimbabu.tinyurlservice.repository.ReactiveLinkByUserRepository;
+import com.azimbabu.tinyurlservice.repository.ReactiveTinyUrlRepository;
 import com.azimbabu.tinyurlservice.repository.TinyUrlRepository;
-import com.azimbabu.tinyurlservice.repository.UserRepository;
-import com.datastax.driver.core.utils.UUIDs;
+import com.datastax.driver.core.PagingState;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.math.BigInteger;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static java.time.ZoneOffset.UTC;
 
+@Slf4j
 @Service
 public class TinyUrlService {
 
-  private static final BigInteger BASE_62 = BigInteger.valueOf(62);
-  private static final int HEX_BASE = 16;
+  private static final int MAX_RANDOM_KEY_DRAWS = 8;
+  private static final int MAX_PAGE_SIZE = 100;
 
   private TinyUrlRepository tinyUrlRepository;
 
-  private UserRepository userRepository;
+  private ReactiveTinyUrlRepository reactiveTinyUrlRepository;
+
+  private LinkByUserRepository linkByUserRepository;
+
+  private ReactiveLinkByUserRepository reactiveLinkByUserRepository;
+
+  private UserCache userCache;
 
   private TinyUrlProperties tinyUrlProperties;
 
+  private ShortKeyAllocator shortKeyAllocator;
+
+  private ShortKeyCodec shortKeyCodec;
+
+  private TinyUrlCache tinyUrlCache;
+
+  private Optional<RedirectTable> redirectTable;
+
+  private Optional<ShortUrlBloomFilter> shortUrlBloomFilter;
+
+  private Optional<UrlDeduplicator> urlDeduplicator;
+
+  private Optional<PeerCache> peerCache;
+
+  private final Timer ownerTimer;
+
+  private final Timer shortKeyTimer;
+
+  private final Counter collisionCounter;
+
+  private final Counter retryExhaustedCounter;
+
+  private final Counter forgedKeyCounter;
+
   @Autowired
   public TinyUrlService(
       TinyUrlRepository tinyUrlRepository,
-      UserRepository userRepository,
-      TinyUrlProperties tinyUrlProperties) {
+      ReactiveTinyUrlRepository reactiveTinyUrlRepository,
+      LinkByUserRepository linkByUserRepository,
+      ReactiveLinkByUserRepository reactiveLinkByUserRepository,
+      UserCache userCache,
+      TinyUrlProperties tinyUrlProperties,
+      ShortKeyAllocator shortKeyAllocator,
+      TinyUrlCache tinyUrlCache,
+      Optional<RedirectTable> redirectTable,
+      Optional<ShortUrlBloomFilter> shortUrlBloomFilter,
+      Optional<UrlDeduplicator> urlDeduplicator,
+      Optional<PeerCache> peerCache,
+      MeterRegistry meterRegistry) {
     this.tinyUrlRepository = tinyUrlRepository;
-    this.userRepository = userRepository;
+    this.reactiveTinyUrlRepository = reactiveTinyUrlRepository;
+    this.linkByUserRepository = linkByUserRepository;
+    this.reactiveLinkByUserRepository = reactiveLinkByUserRepository;
+    this.userCache = userCache;
     this.tinyUrlProperties = tinyUrlProperties;
+    this.shortKeyAllocator = shortKeyAllocator;
+    this.tinyUrlCache = tinyUrlCache;
+    this.redirectTable = redirectTable;
+    this.shortUrlBloomFilter = shortUrlBloomFilter;
+    this.urlDeduplicator = urlDeduplicator;
+    this.peerCache = peerCache;
+    this.shortKeyCodec = ShortKeyCodec.of(tinyUrlProperties);
+
+    this.ownerTimer =
+        Timer.builder("tinyurl.create.owner")
+            .description("Time to resolve the owner of a new tiny url")
+            .register(meterRegistry);
+    this.shortKeyTimer =
+        Timer.builder("tinyurl.create.short.key")
+            .description("Time to build a generated short url key")
+            .register(meterRegistry);
+    this.collisionCounter =
+        Counter.builder("tinyurl.create.collisions")
+            .description("Generated short url keys that were already taken")
+            .register(meterRegistry);
+    this.retryExhaustedCounter =
+        Counter.builder("tinyurl.create.retry.exhausted")
+            .description("Creates that failed with " + ErrorCode.SHORT_URL_RETRY_EXHAUSTED)
+            .register(meterRegistry);
+    this.forgedKeyCounter =
+        Counter.builder("tinyurl.lookup.forged")
+            .description("Lookups of generated looking keys with wrong check digits")
+            .register(meterRegistry);
   }
 
   /**
    * Creates tinyUrl from the originalUrl. If customAlias is provided, it will be used as the short
    * url key.
    *
+   * <p>The short url key is claimed with a single {@code INSERT ... IF NOT EXISTS}, so concurrent
+   * requests for the same key can never overwrite each other. A generated key that loses the claim
+   * is replaced by a fresh one, up to the retry limit. A custom alias whose tiny url has expired
+   * but is still stored, e.g. with storage TTL disabled, is claimed again by replacing its row on
+   * the condition that it still holds the expired tiny url. Tiny urls with an owner are also added
+   * to the owner's {@code links_by_user} listing.
+   *
+   * <p>When @{@link UrlDeduplicator} is enabled, a request without a custom alias returns the live
+   * tiny url created before for the same original url and owner instead of creating a new one.
+   *
    * @param originalUrl Url to shorten.
    * @param customAlias Optional custom alias to be used as short url key. Should be unique else
    * @param username Optional username of the owner of the tiny url.
    * @param expirationInSeconds Optional Expiration in seconds.
    * @return @{@link TinyUrl} object on success.
    * @throws @{@link IllegalArgumentException} if input validation fails such as originalUrl is
-   *     empty.
+   *     empty or expirationInSeconds is not positive.
    * @throws @{@link ServiceException}. Possible error codes : @{@link
    *     ErrorCode#CUSTOM_ALIAS_EXISTS} if customAlias is not unique , @{@link
    *     ErrorCode#SHORT_URL_RETRY_EXHAUSTED} if retry limit is exhausted for unique short url key
@@ -60,21 +172,438 @@ public class TinyUrlService {
   public TinyUrl createTinyUrl(
       String originalUrl, String customAlias, String username, Long expirationInSeconds) {
 
+    validateCreateRequest(originalUrl, customAlias, expirationInSeconds);
+    TinyUrl tinyUrl =
+        buildTinyUrl(originalUrl, customAlias, buildUserUDT(username), expirationInSeconds);
+    Integer ttlInSeconds = ttlInSeconds(tinyUrl);
+
+    if (StringUtils.isNotEmpty(customAlias)) {
+      tinyUrl.setShortUrl(customAlias);
+      if (!tinyUrlRepository.insertIfNotExists(tinyUrl, ttlInSeconds)
+          && !reclaimExpiredAlias(tinyUrl, ttlInSeconds)) {
+        throw new ServiceException(ErrorCode.CUSTOM_ALIAS_EXISTS);
+      }
+      addToOwnerLinks(tinyUrl, ttlInSeconds);
+      remember(tinyUrl);
+      return tinyUrl;
+    }
+
+    if (urlDeduplicator.isPresent()) {
+      Optional<TinyUrl> existing = urlDeduplicator.get().find(tinyUrl);
+      if (existing.isPresent()) {
+        return existing.get();
+      }
+    }
+
+    for (int i = 0; i < tinyUrlProperties.getMaxShortUrlRetry(); i++) {
+      tinyUrl.setShortUrl(buildShortUrl());
+      if (tinyUrlRepository.insertIfNotExists(tinyUrl, ttlInSeconds)) {
+        addToOwnerLinks(tinyUrl, ttlInSeconds);
+        urlDeduplicator.ifPresent(deduplicator -> deduplicator.index(tinyUrl, ttlInSeconds));
+        remember(tinyUrl);
+        return tinyUrl;
+      }
+      collisionCounter.increment();
+    }
+    retryExhaustedCounter.increment();
+    throw new ServiceException(ErrorCode.SHORT_URL_RETRY_EXHAUSTED);
+  }
+
+  /**
+   * Creates a batch of tinyUrls with the same semantics as @{@link #createTinyUrl(String, String,
+   * String, Long)}. The owner is resolved once for the whole batch and the short url claims are
+   * written asynchronously, at most {@code bulk-in-flight-window} at a time. Generated keys are
+   * built on the bounded elastic scheduler, as leasing a key range may block.
+   *
+   * @param requests tiny url requests, the username of each request is ignored.
+   * @param username Optional username of the owner of all the tiny urls.
+   * @param rowPermit asked once per request before it is created. Once it denies a request, that
+   *     request and all later ones are answered with @{@link ErrorCode#RATE_LIMITED}.
+   * @return one @{@link TinyUrlResponse} per request, in request order. Failed items carry the
+   *     @{@link ErrorCode} instead of failing the batch.
+   */
+  public Flux<TinyUrlResponse> createTinyUrls(
+      Flux<TinyUrlRequest> requests, String username, BooleanSupplier rowPermit) {
+    UserUDT userUDT = buildUserUDT(username);
+    AtomicBoolean limited = new AtomicBoolean();
+    return requests.flatMapSequential(
+        request -> {
+          if (limited.get() || !rowPermit.getAsBoolean()) {
+            limited.set(true);
+            return Mono.just(failedResponse(ErrorCode.RATE_LIMITED));
+          }
+          return createTinyUrlReactive(request, userUDT)
+              .map(tinyUrl -> TinyUrlResponse.builder().data(tinyUrl).success(true).build())
+              .onErrorResume(
+                  ServiceException.class, e -> Mono.just(failedResponse(e.getErrorCode())))
+              .onErrorResume(
+                  IllegalArgumentException.class,
+                  e -> Mono.just(failedResponse(ErrorCode.INVALID_REQUEST)));
+        },
+        tinyUrlProperties.getBulkInFlightWindow());
+  }
+
+  /**
+   * Find tinyUrl by short url key. Lookups are served from @{@link TinyUrlCache} and only go to
+   * Cassandra on a cache miss. Keys the @{@link ShortUrlBloomFilter} knows to be absent, and keys
+   * with wrong check digits when key checks are enabled, don't reach the cache or Cassandra at
+   * all. With @{@link PeerCache} enabled, keys owned by another node are fetched from that node,
+   * and only looked up locally while it is unavailable.
+   *
+   * @param shortUrl unique short url key
+   * @return @{@link TinyUrl} object wrapped in @{@link Optional} or empty if the short url key is
+   *     not found or expired.
+   */
+  public Optional<TinyUrl> getTinyUrlByShortUrl(String shortUrl) {
+    checkArgument(StringUtils.isNotEmpty(shortUrl), "Short url should not be empty");
+    if (isDefinitelyAbsent(shortUrl)) {
+      return Optional.empty();
+    }
+    if (peerCache.isPresent() && !peerCache.get().isOwner(shortUrl)) {
+      PeerLookup lookup = peerCache.get().fetch(shortUrl);
+      if (lookup.isAnswered()) {
+        return lookup.getTinyUrl().filter(this::isLive);
+      }
+    }
+    return getLocalTinyUrlByShortUrl(shortUrl);
+  }
+
+  /**
+   * Find tinyUrl by short url key in this node's @{@link TinyUrlCache} and Cassandra only,
+   * regardless of which node owns it. Serves the lookups of other nodes' @{@link PeerCache}.
+   *
+   * @param shortUrl unique short url key
+   * @return @{@link TinyUrl} object wrapped in @{@link Optional} or empty if the short url key is
+   *     not found or expired.
+   */
+  public Optional<TinyUrl> getLocalTinyUrlByShortUrl(String shortUrl) {
+    return tinyUrlCache
+        .get(shortUrl, key -> tinyUrlRepository.findByShortUrl(key).filter(this::isLive))
+        .filter(this::isLive);
+  }
+
+  /**
+   * Drops a short url from this node's @{@link TinyUrlCache}, so that a miss cached before another
+   * node created it isn't served until it expires.
+   *
+   * @param shortUrl unique short url key
+   */
+  public void invalidateLocalTinyUrl(String shortUrl) {
+    tinyUrlCache.invalidate(shortUrl);
+  }
+
+  /**
+   * Find the redirect target of a short url key. Served from the off-heap @{@link RedirectTable}
+   * when enabled, falling back to @{@link #getTinyUrlByShortUrl(String)} on a miss. With the table
+   * enabled, a miss on a key this node owns reads only the redirect columns from Cassandra, as the
+   * table rather than the @{@link TinyUrlCache} keeps the result.
+   *
+   * @param shortUrl unique short url key
+   * @return @{@link Redirect} wrapped in @{@link Optional} or empty if the short url key is not
+   *     found.
+   */
+  public Optional<Redirect> findRedirect(String shortUrl) {
+    checkArgument(StringUtils.isNotEmpty(shortUrl), "Short url should not be empty");
+    if (isForgedKey(shortUrl)) {
+      return Optional.empty();
+    }
+    if (redirectTable.isPresent()) {
+      Redirect redirect = redirectTable.get().get(shortUrl);
+      if (redirect != null) {
+        return Optional.of(redirect);
+      }
+      if (!isPeerOwned(shortUrl)) {
+        return loadRedirect(shortUrl);
+      }
+    }
+
+    Optional<Redirect> redirect = getTinyUrlByShortUrl(shortUrl).map(Redirect::of);
+    redirect.ifPresent(value -> redirectTable.ifPresent(table -> table.put(shortUrl, value)));
+    return redirect;
+  }
+
+  /**
+   * Non-blocking variant of @{@link #getTinyUrlByShortUrl(String)}. Cache hits complete
+   * immediately, misses are read with the reactive Cassandra driver so no thread waits on
+   * Cassandra. Fetches from another node's @{@link PeerCache} block and run on the bounded
+   * elastic scheduler.
+   *
+   * @param shortUrl unique short url key
+   * @return @{@link Mono} of the @{@link TinyUrl}, empty if the short url key is not found or
+   *     expired.
+   */
+  public Mono<TinyUrl> getTinyUrlByShortUrlReactive(String shortUrl) {
+    checkArgument(StringUtils.isNotEmpty(shortUrl), "Short url should not be empty");
+    if (isDefinitelyAbsent(shortUrl)) {
+      return Mono.empty();
+    }
+    Mono<Optional<TinyUrl>> lookup =
+        tinyUrlCache.getReactive(
+            shortUrl,
+            key ->
+                reactiveTinyUrlRepository
+                    .findByShortUrl(key)
+                    .filter(this::isLive)
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty()));
+    if (peerCache.isPresent() && !peerCache.get().isOwner(shortUrl)) {
+      PeerCache peers = peerCache.get();
+      Mono<Optional<TinyUrl>> localLookup = lookup;
+      // an unavailable owner falls back to the local lookup
+      lookup =
+          Mono.fromCallable(() -> peers.fetch(shortUrl))
+              .subscribeOn(Schedulers.boundedElastic())
+              .flatMap(
+                  peerLookup ->
+                      peerLookup.isAnswered() ? Mono.just(peerLookup.getTinyUrl()) : localLookup);
+    }
+    return lookup.flatMap(tinyUrl -> Mono.justOrEmpty(tinyUrl.filter(this::isLive)));
+  }
+
+  /**
+   * Non-blocking variant of @{@link #findRedirect(String)}.
+   *
+   * @param shortUrl unique short url key
+   * @return @{@link Mono} of the @{@link Redirect}, empty if the short url key is not found or
+   *     expired.
+   */
+  public Mono<Redirect> findRedirectReactive(String shortUrl) {
+    checkArgument(StringUtils.isNotEmpty(shortUrl), "Short url should not be empty");
+    if (isForgedKey(shortUrl)) {
+      return Mono.empty();
+    }
+    if (redirectTable.isPresent()) {
+      Redirect redirect = redirectTable.get().get(shortUrl);
+      if (redirect != null) {
+        return Mono.just(redirect);
+      }
+      if (!isPeerOwned(shortUrl)) {
+        return loadRedirectReactive(shortUrl);
+      }
+    }
+
+    return getTinyUrlByShortUrlReactive(shortUrl)
+        .map(Redirect::of)
+        .doOnNext(value -> redirectTable.ifPresent(table -> table.put(shortUrl, value)));
+  }
+
+  /**
+   * Lists the tiny urls of a user, newest first. Each page reads at most one slice per month of
+   * the listing window, whatever the number of links the user owns. The window starts at the
+   * later of the month the user was created in and the oldest month that can hold a live link.
+   *
+   * @param username owner of the tiny urls.
+   * @param pageToken Optional token of the page to read, the first page if empty.
+   * @param pageSize maximum number of links of the page, 1 to 100.
+   * @return @{@link UserLinksResponse} with the links and the token of the next page, which is
+   *     null after the last page.
+   * @throws @{@link IllegalArgumentException} if the username is empty, the page size is out of
+   *     range or the page token is malformed.
+   */
+  public UserLinksResponse getLinksByUser(String username, String pageToken, int pageSize) {
+    checkArgument(StringUtils.isNotEmpty(username), "Username should not be empty");
+    checkArgument(pageSize > 0 && pageSize <= MAX_PAGE_SIZE, "Page size should be 1 to 100");
+
+    YearMonth month = YearMonth.now(UTC);
+    PagingState pagingState = null;
+    if (StringUtils.isNotEmpty(pageToken)) {
+      try {
+        int separator = pageToken.indexOf(':');
+        month = LinkByUser.monthOf(Integer.parseInt(pageToken.substring(0, separator)));
+        String state = pageToken.substring(separator + 1);
+        pagingState = state.isEmpty() ? null : PagingState.fromString(state);
+      } catch (RuntimeException e) {
+        throw new IllegalArgumentException("Malformed page token", e);
+      }
+    }
+
+    // links are only created for known owners
+    Optional<User> user = userCache.get(username);
+    if (!user.isPresent()) {
+      return UserLinksResponse.builder().data(Collections.emptyList()).build();
+    }
+    YearMonth oldestMonth = oldestLinkMonth(user.get());
+
+    List<UserLink> links = new ArrayList<>();
+    String nextPageToken = null;
+    while (!month.isBefore(oldestMonth)) {
+      PageRequest page = PageRequest.of(0, pageSize - links.size());
+      Slice<LinkByUser> slice =
+          linkByUserRepository.findByUsernameAndBucket(
+              username,
+              LinkByUser.bucketOf(month),
+              pagingState == null
+                  ? CassandraPageRequest.first(page.getPageSize())
+                  : CassandraPageRequest.of(page, pagingState));
+      slice.getContent().forEach(link -> links.add(toUserLink(link)));
+
+      if (slice.hasNext()) {
+        nextPageToken =
+            LinkByUser.bucketOf(month)
+                + ":"
+                + ((CassandraPageRequest) slice.nextPageable()).getPagingState();
+        break;
+      }
+      month = month.minusMonths(1);
+      pagingState = null;
+      if (links.size() >= pageSize) {
+        nextPageToken = month.isBefore(oldestMonth) ? null : LinkByUser.bucketOf(month) + ":";
+        break;
+      }
+    }
+    return UserLinksResponse.builder().data(links).nextPageToken(nextPageToken).build();
+  }
+
+  /**
+   * Links live at most the maximum expiration, older months can't hold live links. Months before
+   * the user was created hold none either.
+   */
+  private YearMonth oldestLinkMonth(User user) {
+    YearMonth oldestMonth =
+        YearMonth.from(
+            Instant.now()
+                .minus(Duration.ofDays(tinyUrlProperties.getMaxUrlExpirationInDays()))
+                .atOffset(UTC));
+    if (user.getCreatedAt() == null) {
+      return oldestMonth;
+    }
+    YearMonth createdMonth = YearMonth.from(user.getCreatedAt().toInstant().atOffset(UTC));
+    return createdMonth.isAfter(oldestMonth) ? createdMonth : oldestMonth;
+  }
+
+  private static UserLink toUserLink(LinkByUser link) {
+    return UserLink.builder()
+        .shortUrl(link.getShortUrl())
+        .originalUrl(link.getOriginalUrl())
+        .createdAt(link.getCreatedAt())
+        .expiredAt(link.getExpiredAt())
+        .build();
+  }
+
+  private static TinyUrlResponse failedResponse(ErrorCode errorCode) {
+    return TinyUrlResponse.builder().success(false).errorCode(errorCode).build();
+  }
+
+  private Mono<TinyUrl> createTinyUrlReactive(TinyUrlRequest request, UserUDT userUDT) {
+    return Mono.defer(
+        () -> {
+          validateCreateRequest(
+              request.getOriginalUrl(),
+              request.getCustomAlias(),
+              request.getExpirationInSeconds());
+          TinyUrl tinyUrl =
+              buildTinyUrl(
+                  request.getOriginalUrl(),
+                  request.getCustomAlias(),
+                  userUDT,
+                  request.getExpirationInSeconds());
+          Integer ttlInSeconds = ttlInSeconds(tinyUrl);
+
+          if (StringUtils.isNotEmpty(request.getCustomAlias())) {
+            tinyUrl.setShortUrl(request.getCustomAlias());
+            return reactiveTinyUrlRepository
+                .insertIfNotExists(tinyUrl, ttlInSeconds)
+                .flatMap(
+                    applied ->
+                        applied
+                            ? Mono.just(true)
+                            : reclaimExpiredAliasReactive(tinyUrl, ttlInSeconds))
+                .flatMap(
+                    claimed ->
+                        claimed
+                            ? Mono.just(tinyUrl)
+                            : Mono.error(new ServiceException(ErrorCode.CUSTOM_ALIAS_EXISTS)))
+                .flatMap(claimed -> addToOwnerLinksReactive(claimed, ttlInSeconds))
+                .doOnNext(this::remember);
+          }
+          Mono<TinyUrl> created =
+              claimGeneratedShortUrl(tinyUrl, ttlInSeconds, 0)
+                  .flatMap(claimed -> addToOwnerLinksReactive(claimed, ttlInSeconds))
+                  .flatMap(
+                      claimed ->
+                          urlDeduplicator.isPresent()
+                              ? urlDeduplicator.get().indexReactive(claimed, ttlInSeconds)
+                              : Mono.just(claimed))
+                  .doOnNext(this::remember);
+          return urlDeduplicator
+              .map(deduplicator -> deduplicator.findReactive(tinyUrl).switchIfEmpty(created))
+              .orElse(created);
+        });
+  }
+
+  private Mono<TinyUrl> claimGeneratedShortUrl(TinyUrl tinyUrl, Integer ttlInSeconds, int attempt) {
+    if (attempt >= tinyUrlProperties.getMaxShortUrlRetry()) {
+      retryExhaustedCounter.increment();
+      return Mono.error(new ServiceException(ErrorCode.SHORT_URL_RETRY_EXHAUSTED));
+    }
+    // leasing a key range may block, retries would otherwise run on the driver's I/O threads
+    return Mono.fromCallable(() -> tinyUrl.toBuilder().shortUrl(buildShortUrl()).build())
+        .subscribeOn(Schedulers.boundedElastic())
+        .flatMap(
+            candidate ->
+                reactiveTinyUrlRepository
+                    .insertIfNotExists(candidate, ttlInSeconds)
+                    .flatMap(
+                        applied -> {
+                          if (applied) {
+                            return Mono.just(candidate);
+                          }
+                          collisionCounter.increment();
+                          return claimGeneratedShortUrl(tinyUrl, ttlInSeconds, attempt + 1);
+                        }));
+  }
+
+  /**
+   * Claims the alias of the tiny url from an expired tiny url that is still stored. The condition
+   * on the expiration read here lets only one of concurrent reclaims replace the row.
+   */
+  private boolean reclaimExpiredAlias(TinyUrl tinyUrl, Integer ttlInSeconds) {
+    return tinyUrlRepository
+        .findByShortUrl(tinyUrl.getShortUrl())
+        .filter(existing -> !isLive(existing))
+        .map(
+            existing ->
+                tinyUrlRepository.replaceIfExpiredAt(
+                    tinyUrl, existing.getExpiredAt(), ttlInSeconds))
+        .orElse(false);
+  }
+
+  private Mono<Boolean> reclaimExpiredAliasReactive(TinyUrl tinyUrl, Integer ttlInSeconds) {
+    return reactiveTinyUrlRepository
+        .findByShortUrl(tinyUrl.getShortUrl())
+        .filter(existing -> !isLive(existing))
+        .flatMap(
+            existing ->
+                reactiveTinyUrlRepository.replaceIfExpiredAt(
+                    tinyUrl, existing.getExpiredAt(), ttlInSeconds))
+        .defaultIfEmpty(false);
+  }
+
+  private void validateCreateRequest(
+      String originalUrl, String customAlias, Long expirationInSeconds) {
     checkArgument(StringUtils.isNotEmpty(originalUrl), "Original url should not be empty");
 
+    // a ttl of 0 never expires in Cassandra and a negative one is rejected by it
+    checkArgument(
+        expirationInSeconds == null || expirationInSeconds > 0,
+        "Expiration should be positive");
+
     checkArgument(
         StringUtils.isEmpty(customAlias)
             || customAlias.length() <= tinyUrlProperties.getShortUrlLength(),
         "Custom alias maximum length exceeded");
 
-    if (StringUtils.isNotEmpty(customAlias)
-        && tinyUrlRepository.findByShortUrl(customAlias).isPresent()) {
-      throw new ServiceException(ErrorCode.CUSTOM_ALIAS_EXISTS);
-    }
-
-    String shortUrl = StringUtils.isNotEmpty(customAlias) ? customAlias : buildShortUrl();
-    UserUDT userUDT = buildUserUDT(username);
+    // with key checks, aliases live outside the generated key format so they need no check digits
+    checkArgument(
+        StringUtils.isEmpty(customAlias)
+            || shortKeyCodec.getCheckDigits() == 0
+            || !shortKeyCodec.hasKeyFormat(customAlias),
+        "Custom alias should be shorter than the short url length or contain a character other"
+            + " than letters and digits");
+  }
 
+  private TinyUrl buildTinyUrl(
+      String originalUrl, String customAlias, UserUDT userUDT, Long expirationInSeconds) {
     Duration expiration =
         expirationInSeconds != null
             ? Duration.ofSeconds(expirationInSeconds)
@@ -83,75 +612,180 @@ public class TinyUrlService {
       expiration = Duration.ofDays(tinyUrlProperties.getMaxUrlExpirationInDays());
     }
 
-    Date expirationDate = Date.from(Instant.now().plus(expiration));
-    TinyUrl tinyUrl =
-        TinyUrl.builder()
-            .originalUrl(originalUrl)
-            .shortUrl(shortUrl)
-            .customAlias(customAlias)
-            .user(userUDT)
-            .expiredAt(expirationDate)
-            .createdAt(new Date())
-            .build();
-    return tinyUrlRepository.save(tinyUrl);
+    Instant now = Instant.now();
+    return TinyUrl.builder()
+        .originalUrl(originalUrl)
+        .customAlias(customAlias)
+        .user(userUDT)
+        .expiredAt(Date.from(now.plus(expiration)))
+        .createdAt(Date.from(now))
+        .build();
+  }
+
+  private Integer ttlInSeconds(TinyUrl tinyUrl) {
+    if (!Boolean.TRUE.equals(tinyUrlProperties.getStorageTtlEnabled())) {
+      return null;
+    }
+    return (int)
+        Duration.between(tinyUrl.getCreatedAt().toInstant(), tinyUrl.getExpiredAt().toInstant())
+            .getSeconds();
   }
 
   /**
-   * Find tinyUrl by short url key.
-   *
-   * @param shortUrl unique short url key
-   * @return @{@link TinyUrl} object wrapped in @{@link Optional} or empty if the short url key is
-   *     not found.
+   * The listing is written after the short url is claimed, a claim can't share a batch with
+   * another table. A failed listing write is logged rather than failing a tiny url that exists.
    */
-  public Optional<TinyUrl> getTinyUrlByShortUrl(String shortUrl) {
-    checkArgument(StringUtils.isNotEmpty(shortUrl), "Short url should not be empty");
-    return tinyUrlRepository.findByShortUrl(shortUrl);
+  private void addToOwnerLinks(TinyUrl tinyUrl, Integer ttlInSeconds) {
+    if (tinyUrl.getUser() == null) {
+      return;
+    }
+    try {
+      linkByUserRepository.insert(LinkByUser.of(tinyUrl), ttlInSeconds);
+    } catch (RuntimeException e) {
+      log.warn("Failed to add {} to the links of its owner", tinyUrl.getShortUrl(), e);
+    }
   }
 
-  private String buildShortUrl() {
-    for (int i = 0; i < tinyUrlProperties.getMaxShortUrlRetry(); i++) {
-      String id = UUIDs.timeBased().toString().replaceAll("-", "");
-      String shortUrl = base62Encode(id);
-      if (!tinyUrlRepository.existsByShortUrl(shortUrl)) {
-        return shortUrl;
-      }
+  private Mono<TinyUrl> addToOwnerLinksReactive(TinyUrl tinyUrl, Integer ttlInSeconds) {
+    if (tinyUrl.getUser() == null) {
+      return Mono.just(tinyUrl);
     }
-    throw new ServiceException(ErrorCode.SHORT_URL_RETRY_EXHAUSTED);
+    return reactiveLinkByUserRepository
+        .insert(LinkByUser.of(tinyUrl), ttlInSeconds)
+        .doOnError(
+            e -> log.warn("Failed to add {} to the links of its owner", tinyUrl.getShortUrl(), e))
+        .onErrorResume(e -> Mono.empty())
+        .thenReturn(tinyUrl);
   }
 
-  private String base62Encode(String id) {
-    BigInteger uuidValue = new BigInteger(id, HEX_BASE);
-    StringBuilder shortUrlBuilder = new StringBuilder();
+  private void remember(TinyUrl tinyUrl) {
+    String shortUrl = tinyUrl.getShortUrl();
+    // keys owned by another node are cached there on their first lookup, after dropping a miss
+    // the owner, or this node while the owner was down, may have cached before
+    if (!peerCache.isPresent() || peerCache.get().isOwner(shortUrl)) {
+      tinyUrlCache.put(tinyUrl);
+    } else {
+      tinyUrlCache.invalidate(shortUrl);
+      peerCache.get().invalidate(shortUrl);
+    }
+    shortUrlBloomFilter.ifPresent(filter -> filter.put(shortUrl));
+    // a reclaimed key may still have the previous tiny url's redirect, put skips urls it can't hold
+    redirectTable.ifPresent(
+        table -> {
+          table.invalidate(shortUrl);
+          table.put(shortUrl, Redirect.of(tinyUrl));
+        });
+  }
 
-    while (uuidValue.compareTo(BigInteger.ZERO) > 0) {
-      int offset = uuidValue.mod(BASE_62).intValue();
-      uuidValue = uuidValue.divide(BASE_62);
-      if (offset < 26) {
-        shortUrlBuilder.append((char) ('a' + offset));
-      } else if (offset < 52) {
-        shortUrlBuilder.append((char) ('A' + offset - 26));
-      } else {
-        shortUrlBuilder.append((char) ('0' + offset));
-      }
+  /**
+   * Reads the redirect of a key missing from the @{@link RedirectTable}. A tiny url cached whole is
+   * served from the @{@link TinyUrlCache}, otherwise only the redirect columns are read. Found
+   * redirects are kept in the table and misses in the @{@link TinyUrlCache}, since a miss is the
+   * same answer for every lookup.
+   */
+  private Optional<Redirect> loadRedirect(String shortUrl) {
+    if (isDefinitelyAbsent(shortUrl)) {
+      return Optional.empty();
+    }
+    Optional<TinyUrl> cached = tinyUrlCache.getIfPresent(shortUrl);
+    Optional<Redirect> redirect =
+        cached != null
+            ? cached.filter(this::isLive).map(Redirect::of)
+            : tinyUrlRepository.findRedirectByShortUrl(shortUrl).filter(this::isLive);
+    keepRedirect(shortUrl, redirect, cached != null);
+    return redirect;
+  }
+
+  /** Non-blocking variant of @{@link #loadRedirect(String)}. */
+  private Mono<Redirect> loadRedirectReactive(String shortUrl) {
+    if (isDefinitelyAbsent(shortUrl)) {
+      return Mono.empty();
+    }
+    Optional<TinyUrl> cached = tinyUrlCache.getIfPresent(shortUrl);
+    if (cached != null) {
+      Optional<Redirect> redirect = cached.filter(this::isLive).map(Redirect::of);
+      keepRedirect(shortUrl, redirect, true);
+      return Mono.justOrEmpty(redirect);
+    }
+    return reactiveTinyUrlRepository
+        .findRedirectByShortUrl(shortUrl)
+        .filter(this::isLive)
+        .map(Optional::of)
+        .defaultIfEmpty(Optional.empty())
+        .doOnNext(redirect -> keepRedirect(shortUrl, redirect, false))
+        .flatMap(Mono::justOrEmpty);
+  }
+
+  private void keepRedirect(String shortUrl, Optional<Redirect> redirect, boolean cached) {
+    if (redirect.isPresent()) {
+      redirectTable.ifPresent(table -> table.put(shortUrl, redirect.get()));
+    } else if (!cached) {
+      tinyUrlCache.put(shortUrl, Optional.empty());
+    }
+  }
+
+  private boolean isPeerOwned(String shortUrl) {
+    return peerCache.isPresent() && !peerCache.get().isOwner(shortUrl);
+  }
+
+  private boolean isDefinitelyAbsent(String shortUrl) {
+    return isForgedKey(shortUrl)
+        || (shortUrlBloomFilter.isPresent() && !shortUrlBloomFilter.get().mightContain(shortUrl));
+  }
+
+  /**
+   * A key in the generated key format whose check digits don't match was never generated, custom
+   * aliases are shorter or contain other characters and are never rejected here.
+   */
+  private boolean isForgedKey(String shortUrl) {
+    if (shortKeyCodec.getCheckDigits() == 0
+        || !shortKeyCodec.hasKeyFormat(shortUrl)
+        || shortKeyCodec.isValid(shortUrl)) {
+      return false;
     }
+    forgedKeyCounter.increment();
+    return true;
+  }
+
+  private boolean isLive(TinyUrl tinyUrl) {
+    return tinyUrl.getExpiredAt() == null || tinyUrl.getExpiredAt().after(new Date());
+  }
+
+  private boolean isLive(Redirect redirect) {
+    return redirect.getExpiredAt() == null || redirect.getExpiredAt().after(new Date());
+  }
+
+  private String buildShortUrl() {
+    return shortKeyTimer.record(this::nextShortUrl);
+  }
 
-    return shortUrlBuilder.substring(0, tinyUrlProperties.getShortUrlLength());
+  /**
+   * Leased key ids never collide. Random keys that the @{@link ShortUrlBloomFilter} may already
+   * contain are redrawn before spending a claim on them; keys it reports absent still need the
+   * claim, since other nodes may have taken them since the last rebuild.
+   */
+  private String nextShortUrl() {
+    if (Boolean.TRUE.equals(tinyUrlProperties.getKeyRangeEnabled())) {
+      return shortKeyCodec.encodeId(shortKeyAllocator.nextId());
+    }
+    String shortUrl = shortKeyCodec.randomKey();
+    if (shortUrlBloomFilter.isPresent()) {
+      for (int i = 1; i < MAX_RANDOM_KEY_DRAWS && !isDefinitelyAbsent(shortUrl); i++) {
+        shortUrl = shortKeyCodec.randomKey();
+      }
+    }
+    return shortUrl;
   }
 
   private UserUDT buildUserUDT(String username) {
-    Optional<User> userOptional =
-        StringUtils.isNotEmpty(username)
-            ? userRepository.findByUsername(username)
-            : Optional.empty();
-    if (userOptional.isPresent()) {
-      User user = userOptional.get();
-      return UserUDT.builder()
-          .username(user.getUsername())
-          .email(user.getEmail())
-          .lastLoginDate(user.getLastLoginDate())
-          .build();
-    } else {
+    if (StringUtils.isEmpty(username)) {
       return null;
     }
+    return ownerTimer.record(
+        () ->
+            userCache
+                .get(username)
+                .map(user -> UserUDT.builder().username(user.getUsername()).build())
+                .orElse(null));
   }
 }
@@ -0,0 +1,212 @@
+package com.azimbabu.tinyurlservice.service;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import com.azimbabu.tinyurlservice.model.UrlByHash;
+import com.azimbabu.tinyurlservice.model.UserUDT;
+import com.azimbabu.tinyurlservice.repository.ReactiveUrlByHashRepository;
+import com.azimbabu.tinyurlservice.repository.UrlByHashRepository;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Answers repeat shortens of the same original url by the same owner with the tiny url created
+ * before, instead of claiming a new key and writing a new {@code tiny_url} row.
+ *
+ * <p>Generated tiny urls are indexed in {@code url_by_hash} under a murmur3 128-bit hash of the
+ * owner and the normalized original url, with the same ttl as the tiny url. An indexed tiny url is
+ * reused while it is live and expires within the dedupe window of the newly requested expiration,
+ * before or after it. A tiny url that never expires is only reused for another that never expires.
+ * Custom aliases are neither looked up nor indexed. Two concurrent first shortens of
+ * the same url may still create two tiny urls, the index then points to the later one.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "tinyurl", name = "dedupe-enabled", havingValue = "true")
+public class UrlDeduplicator {
+
+  private UrlByHashRepository urlByHashRepository;
+
+  private ReactiveUrlByHashRepository reactiveUrlByHashRepository;
+
+  private TinyUrlProperties tinyUrlProperties;
+
+  private final Counter reusedCounter;
+
+  @Autowired
+  public UrlDeduplicator(
+      UrlByHashRepository urlByHashRepository,
+      ReactiveUrlByHashRepository reactiveUrlByHashRepository,
+      TinyUrlProperties tinyUrlProperties,
+      MeterRegistry meterRegistry) {
+    this.urlByHashRepository = urlByHashRepository;
+    this.reactiveUrlByHashRepository = reactiveUrlByHashRepository;
+    this.tinyUrlProperties = tinyUrlProperties;
+    this.reusedCounter =
+        Counter.builder("tinyurl.create.deduplicated")
+            .description("Creates answered with an existing tiny url of the same original url")
+            .register(meterRegistry);
+  }
+
+  /**
+   * Finds a reusable tiny url for the requested one. A failed lookup is logged and treated as a
+   * miss, so it never fails the create.
+   *
+   * @param requested tiny url about to be created, without a short url yet.
+   * @return existing @{@link TinyUrl} wrapped in @{@link Optional} or empty if there is none.
+   */
+  public Optional<TinyUrl> find(TinyUrl requested) {
+    String hash = hash(requested);
+    try {
+      return urlByHashRepository
+          .findById(hash)
+          .filter(urlByHash -> isReusable(urlByHash, requested))
+          .map(this::reuse);
+    } catch (RuntimeException e) {
+      log.warn("Failed to look up url hash {}", hash, e);
+      return Optional.empty();
+    }
+  }
+
+  /** Non-blocking variant of @{@link #find(TinyUrl)}. */
+  public Mono<TinyUrl> findReactive(TinyUrl requested) {
+    String hash = hash(requested);
+    return reactiveUrlByHashRepository
+        .findById(hash)
+        .filter(urlByHash -> isReusable(urlByHash, requested))
+        .map(this::reuse)
+        .doOnError(e -> log.warn("Failed to look up url hash {}", hash, e))
+        .onErrorResume(e -> Mono.empty());
+  }
+
+  /** Indexes a newly created tiny url. A failed write is logged, the tiny url exists anyway. */
+  public void index(TinyUrl tinyUrl, Integer ttlInSeconds) {
+    try {
+      urlByHashRepository.insert(toUrlByHash(tinyUrl), ttlInSeconds);
+    } catch (RuntimeException e) {
+      log.warn("Failed to index {} by url hash", tinyUrl.getShortUrl(), e);
+    }
+  }
+
+  /** Non-blocking variant of @{@link #index(TinyUrl, Integer)}. */
+  public Mono<TinyUrl> indexReactive(TinyUrl tinyUrl, Integer ttlInSeconds) {
+    return reactiveUrlByHashRepository
+        .insert(toUrlByHash(tinyUrl), ttlInSeconds)
+        .doOnError(e -> log.warn("Failed to index {} by url hash", tinyUrl.getShortUrl(), e))
+        .onErrorResume(e -> Mono.empty())
+        .thenReturn(tinyUrl);
+  }
+
+  /**
+   * Normalizes the parts of an absolute url that don't change the resource it points to: the case
+   * of the scheme and host, default ports and an empty path. Anything that doesn't parse as an
+   * absolute hierarchical url is only trimmed.
+   */
+  static String normalize(String originalUrl) {
+    String url = originalUrl.trim();
+    URI uri;
+    try {
+      uri = new URI(url);
+    } catch (URISyntaxException e) {
+      return url;
+    }
+    if (uri.getScheme() == null || uri.getHost() == null) {
+      return url;
+    }
+
+    String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+    int port = uri.getPort();
+    if (("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443)) {
+      port = -1;
+    }
+    StringBuilder normalized = new StringBuilder(url.length()).append(scheme).append("://");
+    if (uri.getRawUserInfo() != null) {
+      normalized.append(uri.getRawUserInfo()).append('@');
+    }
+    normalized.append(uri.getHost().toLowerCase(Locale.ROOT));
+    if (port != -1) {
+      normalized.append(':').append(port);
+    }
+    normalized.append(StringUtils.isEmpty(uri.getRawPath()) ? "/" : uri.getRawPath());
+    if (uri.getRawQuery() != null) {
+      normalized.append('?').append(uri.getRawQuery());
+    }
+    if (uri.getRawFragment() != null) {
+      normalized.append('#').append(uri.getRawFragment());
+    }
+    return normalized.toString();
+  }
+
+  static String hash(String username, String originalUrl) {
+    return Hashing.murmur3_128()
+        .newHasher()
+        .putString(StringUtils.defaultString(username), StandardCharsets.UTF_8)
+        .putByte((byte) 0)
+        .putString(normalize(originalUrl), StandardCharsets.UTF_8)
+        .hash()
+        .toString();
+  }
+
+  private static String hash(TinyUrl tinyUrl) {
+    return hash(username(tinyUrl), tinyUrl.getOriginalUrl());
+  }
+
+  private boolean isReusable(UrlByHash urlByHash, TinyUrl requested) {
+    if (!Objects.equals(urlByHash.getUsername(), username(requested))
+        || !normalize(urlByHash.getOriginalUrl()).equals(normalize(requested.getOriginalUrl()))) {
+      return false;
+    }
+    Date expiredAt = urlByHash.getExpiredAt();
+    Date requestedExpiredAt = requested.getExpiredAt();
+    if (expiredAt == null || requestedExpiredAt == null) {
+      return expiredAt == null && requestedExpiredAt == null;
+    }
+    long window = tinyUrlProperties.getDedupeWindowInSeconds() * 1000;
+    return expiredAt.after(new Date())
+        && Math.abs(expiredAt.getTime() - requestedExpiredAt.getTime()) <= window;
+  }
+
+  private TinyUrl reuse(UrlByHash urlByHash) {
+    reusedCounter.increment();
+    return TinyUrl.builder()
+        .shortUrl(urlByHash.getShortUrl())
+        .originalUrl(urlByHash.getOriginalUrl())
+        .user(
+            urlByHash.getUsername() != null
+                ? UserUDT.builder().username(urlByHash.getUsername()).build()
+                : null)
+        .createdAt(urlByHash.getCreatedAt())
+        .expiredAt(urlByHash.getExpiredAt())
+        .build();
+  }
+
+  private static UrlByHash toUrlByHash(TinyUrl tinyUrl) {
+    return UrlByHash.builder()
+        .hash(hash(tinyUrl))
+        .shortUrl(tinyUrl.getShortUrl())
+        .originalUrl(tinyUrl.getOriginalUrl())
+        .username(username(tinyUrl))
+        .createdAt(tinyUrl.getCreatedAt())
+        .expiredAt(tinyUrl.getExpiredAt())
+        .build();
+  }
+
+  private static String username(TinyUrl tinyUrl) {
+    return tinyUrl.getUser() != null ? tinyUrl.getUser().getUsername() : null;
+  }
+}
@@ -0,0 +1,173 @@
+package com.azimbabu.tinyurlservice.stats;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.LocalDate;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts redirects per short url in memory and periodically adds the counts to the {@code
+ * click_count} counter table, bucketed by the UTC day of the click. Recording a click is a
+ * striped @{@link LongAdder} increment, so the redirect path never waits on a Cassandra write.
+ *
+ * <p>A flush writes one statement per short url partition, batching only the days of the same
+ * short url, with at most {@code click-flush-max-in-flight} writes outstanding.
+ *
+ * <p>Counters that saw no click during a flush interval are dropped from memory. A click racing
+ * with that removal can be lost, which only affects keys that were idle for a whole interval.
+ */
+@Slf4j
+@Component
+public class ClickCounter {
+
+  private static final long MILLIS_PER_DAY = 86_400_000L;
+
+  private static final String INCREMENT_CLICKS =
+      "UPDATE click_count SET clicks = clicks + ? WHERE shorturl = ? AND day = ?";
+
+  private final Map<Long, DayCounters> countersByDay = new ConcurrentHashMap<>();
+
+  private volatile DayCounters currentDay = new DayCounters(-1);
+
+  private Session session;
+
+  private TinyUrlProperties tinyUrlProperties;
+
+  private final PreparedStatement incrementClicks;
+
+  @Autowired
+  public ClickCounter(Session session, TinyUrlProperties tinyUrlProperties) {
+    this.session = session;
+    this.tinyUrlProperties = tinyUrlProperties;
+    this.incrementClicks = session.prepare(INCREMENT_CLICKS);
+  }
+
+  /** Records one redirect of the short url. */
+  public void record(String shortUrl) {
+    record(shortUrl, System.currentTimeMillis());
+  }
+
+  /** Records one redirect of the short url at the given time, counted in the day of that time. */
+  void record(String shortUrl, long clickedAt) {
+    long epochDay = Math.floorDiv(clickedAt, MILLIS_PER_DAY);
+    DayCounters dayCounters = currentDay;
+    if (dayCounters.epochDay != epochDay) {
+      dayCounters = countersByDay.computeIfAbsent(epochDay, DayCounters::new);
+      currentDay = dayCounters;
+    }
+    LongAdder counter = dayCounters.counters.get(shortUrl);
+    if (counter == null) {
+      counter = dayCounters.counters.computeIfAbsent(shortUrl, key -> new LongAdder());
+    }
+    counter.increment();
+  }
+
+  /**
+   * Writes the clicks counted since the previous flush as counter increments. Flushes run one at a
+   * time, so the shutdown flush waits for a running scheduled one instead of draining alongside it.
+   */
+  @Scheduled(fixedDelayString = "${tinyurl.click-flush-interval-in-ms}")
+  @PreDestroy
+  public synchronized void flush() {
+    Map<String, Map<LocalDate, Long>> clicks = drain();
+    if (clicks.isEmpty()) {
+      return;
+    }
+
+    int maxInFlight = tinyUrlProperties.getClickFlushMaxInFlight();
+    Semaphore inFlight = new Semaphore(maxInFlight);
+    for (Map.Entry<String, Map<LocalDate, Long>> partition : clicks.entrySet()) {
+      inFlight.acquireUninterruptibly();
+      executeAsync(toStatement(partition.getKey(), partition.getValue()), inFlight);
+    }
+    // wait for the last writes, so that a shutdown flush completes before the session closes
+    inFlight.acquireUninterruptibly(maxInFlight);
+  }
+
+  /** Takes the clicks counted so far, by short url and day, and resets the counters. */
+  Map<String, Map<LocalDate, Long>> drain() {
+    Map<String, Map<LocalDate, Long>> clicks = new HashMap<>();
+    countersByDay.forEach(
+        (epochDay, dayCounters) -> {
+          LocalDate day = LocalDate.fromDaysSinceEpoch(Math.toIntExact(epochDay));
+          dayCounters.counters.forEach(
+              (shortUrl, counter) -> {
+                long count = counter.sumThenReset();
+                if (count > 0) {
+                  clicks.computeIfAbsent(shortUrl, key -> new HashMap<>()).put(day, count);
+                } else {
+                  dayCounters.counters.remove(shortUrl, counter);
+                }
+              });
+          if (dayCounters.counters.isEmpty() && dayCounters != currentDay) {
+            countersByDay.remove(epochDay, dayCounters);
+          }
+        });
+    return clicks;
+  }
+
+  /**
+   * The days of a short url share its partition, so they can be batched. A counter batch spanning
+   * partitions would be coordinated by one node for all of their replicas.
+   */
+  private Statement toStatement(String shortUrl, Map<LocalDate, Long> clicksByDay) {
+    if (clicksByDay.size() == 1) {
+      Map.Entry<LocalDate, Long> clicks = clicksByDay.entrySet().iterator().next();
+      return incrementClicks.bind(clicks.getValue(), shortUrl, clicks.getKey());
+    }
+    BatchStatement batch = new BatchStatement(BatchStatement.Type.COUNTER);
+    clicksByDay.forEach((day, clicks) -> batch.add(incrementClicks.bind(clicks, shortUrl, day)));
+    return batch;
+  }
+
+  private void executeAsync(Statement statement, Semaphore inFlight) {
+    try {
+      Futures.addCallback(
+          session.executeAsync(statement),
+          new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet resultSet) {
+              inFlight.release();
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+              inFlight.release();
+              log.warn("Failed to flush click counters", throwable);
+            }
+          },
+          MoreExecutors.directExecutor());
+    } catch (RuntimeException e) {
+      inFlight.release();
+      log.warn("Failed to flush click counters", e);
+    }
+  }
+
+  private static final class DayCounters {
+
+    private final long epochDay;
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private DayCounters(long epochDay) {
+      this.epochDay = epochDay;
+    }
+  }
+}
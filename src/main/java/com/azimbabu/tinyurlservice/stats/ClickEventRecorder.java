@@ -0,0 +1,209 @@
+package com.azimbabu.tinyurlservice.stats;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.ClickEvent;
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.LocalDate;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Records one @{@link ClickEvent} per redirect for analytics without a Cassandra write on the
+ * redirect path. Events are put into a lock-free @{@link RingBuffer} and a scheduled writer drains
+ * it into {@code click_event}, grouping the events of a partition into unlogged batches so that
+ * each batch goes to a single replica set. At most {@code click-event-max-in-flight} batches are
+ * written at a time, so a large backlog doesn't flood the driver's request queue.
+ *
+ * <p>The buffer never blocks a redirect: when it is full the new event is dropped and counted in
+ * {@code tinyurl.click.events.dropped}. {@code tinyurl.click.events.lag} reports how many events
+ * are waiting to be written.
+ */
+@Slf4j
+@Component
+public class ClickEventRecorder {
+
+  private static final int MAX_USER_AGENT_LENGTH = 512;
+  private static final int MAX_REFERRER_LENGTH = 2048;
+
+  private static final String INSERT_CLICK_EVENT =
+      "INSERT INTO click_event (shorturl, day, clickedat, eventid, referrer, useragent) "
+          + "VALUES (?, ?, ?, ?, ?, ?)";
+
+  private final RingBuffer<ClickEvent> buffer;
+
+  private Session session;
+
+  private TinyUrlProperties tinyUrlProperties;
+
+  private PreparedStatement insertClickEvent;
+
+  private final Counter droppedEvents;
+
+  private final Counter writtenEvents;
+
+  private final Counter failedEvents;
+
+  @Autowired
+  public ClickEventRecorder(
+      Session session, TinyUrlProperties tinyUrlProperties, MeterRegistry meterRegistry) {
+    this.session = session;
+    this.tinyUrlProperties = tinyUrlProperties;
+    this.buffer = new RingBuffer<>(tinyUrlProperties.getClickEventBufferSize());
+
+    Gauge.builder("tinyurl.click.events.lag", buffer, RingBuffer::size)
+        .description("Click events waiting to be written")
+        .register(meterRegistry);
+    this.droppedEvents =
+        Counter.builder("tinyurl.click.events.dropped")
+            .description("Click events dropped because the buffer was full")
+            .register(meterRegistry);
+    this.writtenEvents =
+        Counter.builder("tinyurl.click.events.written")
+            .description("Click events written to Cassandra")
+            .register(meterRegistry);
+    this.failedEvents =
+        Counter.builder("tinyurl.click.events.failed")
+            .description("Click events lost because their batch failed to be written")
+            .register(meterRegistry);
+  }
+
+  /**
+   * Buffers a click event of the short url.
+   *
+   * @return false if the buffer was full and the event was dropped.
+   */
+  public boolean record(String shortUrl, String referrer, String userAgent) {
+    long now = System.currentTimeMillis();
+    ClickEvent clickEvent =
+        ClickEvent.builder()
+            .shortUrl(shortUrl)
+            .clickedAt(new Date(now))
+            .referrer(truncate(referrer, MAX_REFERRER_LENGTH))
+            .userAgent(truncate(userAgent, MAX_USER_AGENT_LENGTH))
+            .build();
+    if (buffer.offer(clickEvent)) {
+      return true;
+    }
+    droppedEvents.increment();
+    return false;
+  }
+
+  /**
+   * Writes the buffered events, at most one buffer capacity worth per call. Flushes run one at a
+   * time, since the buffer has a single consumer and the shutdown flush may overlap a scheduled
+   * one.
+   */
+  @Scheduled(fixedDelayString = "${tinyurl.click-event-flush-interval-in-ms}")
+  @PreDestroy
+  public synchronized void flush() {
+    List<ClickEvent> clickEvents = new ArrayList<>();
+    buffer.drainTo(clickEvents, buffer.capacity());
+    if (clickEvents.isEmpty()) {
+      return;
+    }
+
+    if (insertClickEvent == null) {
+      insertClickEvent = session.prepare(INSERT_CLICK_EVENT);
+    }
+
+    int maxInFlight = tinyUrlProperties.getClickEventMaxInFlight();
+    Semaphore inFlight = new Semaphore(maxInFlight);
+    for (List<ClickEvent> partition : groupByPartition(clickEvents).values()) {
+      BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+      for (ClickEvent clickEvent : partition) {
+        batch.add(bind(clickEvent));
+        if (batch.size() >= tinyUrlProperties.getClickEventBatchSize()) {
+          executeAsync(batch, inFlight);
+          batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+        }
+      }
+      if (batch.size() > 0) {
+        executeAsync(batch, inFlight);
+      }
+    }
+    // wait for the last batches, so that a shutdown flush completes before the session closes
+    inFlight.acquireUninterruptibly(maxInFlight);
+  }
+
+  /** Writes the batch once fewer than {@code click-event-max-in-flight} batches are outstanding. */
+  private void executeAsync(BatchStatement batch, Semaphore inFlight) {
+    int size = batch.size();
+    inFlight.acquireUninterruptibly();
+    try {
+      Futures.addCallback(
+          session.executeAsync(batch),
+          new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet resultSet) {
+              inFlight.release();
+              writtenEvents.increment(size);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+              inFlight.release();
+              failedEvents.increment(size);
+              log.warn("Failed to write {} click events", size, throwable);
+            }
+          },
+          MoreExecutors.directExecutor());
+    } catch (RuntimeException e) {
+      inFlight.release();
+      failedEvents.increment(size);
+      log.warn("Failed to write {} click events", size, e);
+    }
+  }
+
+  /** Events grouped by {@code (shortUrl, day)} partition, in arrival order. */
+  static Map<String, List<ClickEvent>> groupByPartition(List<ClickEvent> clickEvents) {
+    Map<String, List<ClickEvent>> partitions = new LinkedHashMap<>();
+    for (ClickEvent clickEvent : clickEvents) {
+      String partition = epochDay(clickEvent.getClickedAt()) + "/" + clickEvent.getShortUrl();
+      partitions.computeIfAbsent(partition, key -> new ArrayList<>()).add(clickEvent);
+    }
+    return partitions;
+  }
+
+  int pending() {
+    return buffer.size();
+  }
+
+  private BoundStatement bind(ClickEvent clickEvent) {
+    return insertClickEvent.bind(
+        clickEvent.getShortUrl(),
+        LocalDate.fromDaysSinceEpoch(epochDay(clickEvent.getClickedAt())),
+        clickEvent.getClickedAt(),
+        UUIDs.timeBased(),
+        clickEvent.getReferrer(),
+        clickEvent.getUserAgent());
+  }
+
+  private static int epochDay(Date date) {
+    return (int) Math.floorDiv(date.getTime(), 86_400_000L);
+  }
+
+  private static String truncate(String value, int maxLength) {
+    return value == null || value.length() <= maxLength ? value : value.substring(0, maxLength);
+  }
+}
@@ -0,0 +1,130 @@
+package com.azimbabu.tinyurlservice.stats;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Approximate top-k counter with memory bounded regardless of key cardinality. Every key is
+ * counted in a count-min sketch, and only keys whose estimate beats the smallest of the {@code
+ * capacity} tracked candidates are remembered, so memory is the sketch plus the candidate set.
+ *
+ * <p>Counting is lock-free and constant time: a key beating the threshold is only added to the
+ * candidate set, which may grow to twice the capacity. @{@link #snapshot()} ranks the candidates,
+ * drops all but the top {@code capacity} and raises the threshold to the weakest one kept. A key
+ * arriving while the set is full keeps being counted in the sketch and becomes a candidate on a
+ * later hit after the next snapshot.
+ *
+ * <p>Each key is hashed once with murmur3; the two halves of the 128 bit hash give the column of
+ * every row as {@code h1 + row * h2}, so rows stay independent for keys whose {@code hashCode()}
+ * collides.
+ */
+public class HeavyHitters {
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  private final int depth;
+  private final int widthMask;
+  private final AtomicLongArray sketch;
+  private final int capacity;
+  private final int maxCandidates;
+  private final Set<String> candidates = ConcurrentHashMap.newKeySet();
+  private volatile long threshold;
+
+  /**
+   * @param capacity number of candidate keys tracked.
+   * @param width sketch width, rounded down to a power of two.
+   * @param depth number of sketch rows.
+   */
+  public HeavyHitters(int capacity, int width, int depth) {
+    checkArgument(capacity > 0 && width > 0 && depth > 0, "Sketch dimensions should be positive");
+    this.capacity = capacity;
+    this.maxCandidates = 2 * capacity;
+    this.depth = depth;
+    this.widthMask = Integer.highestOneBit(width) - 1;
+    this.sketch = new AtomicLongArray(depth * (widthMask + 1));
+  }
+
+  /** Counts one occurrence of the key. */
+  public void add(String key) {
+    add(key, 1);
+  }
+
+  /** Counts the given number of occurrences of the key. */
+  public void add(String key, long count) {
+    ByteBuffer hash = hash(key);
+    long hash1 = hash.getLong(0);
+    long hash2 = hash.getLong(Long.BYTES);
+    long estimate = Long.MAX_VALUE;
+    for (int i = 0; i < depth; i++) {
+      estimate = Math.min(estimate, sketch.addAndGet(index(hash1, hash2, i), count));
+    }
+
+    if (estimate > threshold
+        && candidates.size() < maxCandidates
+        && !candidates.contains(key)) {
+      candidates.add(key);
+    }
+  }
+
+  /** Estimated count of the key, never lower than the true count. */
+  public long estimate(String key) {
+    ByteBuffer hash = hash(key);
+    long hash1 = hash.getLong(0);
+    long hash2 = hash.getLong(Long.BYTES);
+    long estimate = Long.MAX_VALUE;
+    for (int i = 0; i < depth; i++) {
+      estimate = Math.min(estimate, sketch.get(index(hash1, hash2, i)));
+    }
+    return estimate;
+  }
+
+  /**
+   * The top {@code capacity} candidates with their estimated counts. Candidates outside them are
+   * dropped, making room for keys that overtook them.
+   */
+  public synchronized Map<String, Long> snapshot() {
+    List<Map.Entry<String, Long>> ranked = new ArrayList<>(candidates.size());
+    for (String key : candidates) {
+      ranked.add(new AbstractMap.SimpleImmutableEntry<>(key, estimate(key)));
+    }
+    ranked.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+    Map<String, Long> counts = new HashMap<>();
+    for (int i = 0; i < ranked.size(); i++) {
+      Map.Entry<String, Long> entry = ranked.get(i);
+      if (i < capacity) {
+        counts.put(entry.getKey(), entry.getValue());
+      } else {
+        candidates.remove(entry.getKey());
+      }
+    }
+    if (ranked.size() >= capacity) {
+      threshold = ranked.get(capacity - 1).getValue();
+    }
+    return counts;
+  }
+
+  /** Index of the key's counter in the row; an odd step reaches every column of the row. */
+  private int index(long hash1, long hash2, int row) {
+    return row * (widthMask + 1) + (int) ((hash1 + row * (hash2 | 1)) & widthMask);
+  }
+
+  private static ByteBuffer hash(String key) {
+    byte[] bytes = HASH_FUNCTION.hashString(key, StandardCharsets.UTF_8).asBytes();
+    return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+  }
+}
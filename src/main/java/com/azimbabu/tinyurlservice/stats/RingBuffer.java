@@ -0,0 +1,80 @@
+package com.azimbabu.tinyurlservice.stats;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer. Producers claim a slot with a
+ * CAS on the tail and publish the element into it; the consumer treats an unpublished slot as the
+ * end of the queue. Nothing ever blocks: {@link #offer(Object)} on a full buffer returns false and
+ * the caller decides what to do with the element.
+ */
+public class RingBuffer<E> {
+
+  private final int mask;
+  private final AtomicReferenceArray<E> slots;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+
+  /** @param capacity maximum number of buffered elements, rounded up to a power of two. */
+  public RingBuffer(int capacity) {
+    checkArgument(capacity > 0 && capacity <= 1 << 30, "Capacity should be 1 to 2^30");
+    int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.mask = size - 1;
+    this.slots = new AtomicReferenceArray<>(size);
+  }
+
+  /**
+   * Appends the element unless the buffer is full. Safe to call from any number of threads.
+   *
+   * @return false if the buffer is full and the element was not added.
+   */
+  public boolean offer(E element) {
+    while (true) {
+      long currentTail = tail.get();
+      if (currentTail - head.get() > mask) {
+        return false;
+      }
+      if (tail.compareAndSet(currentTail, currentTail + 1)) {
+        slots.lazySet((int) currentTail & mask, element);
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Moves up to max published elements into the list, oldest first. Must only be called by one
+   * thread at a time.
+   *
+   * @return number of elements moved.
+   */
+  public int drainTo(List<? super E> elements, int max) {
+    long currentHead = head.get();
+    int count = 0;
+    while (count < max) {
+      int index = (int) currentHead & mask;
+      E element = slots.get(index);
+      if (element == null) {
+        break;
+      }
+      slots.lazySet(index, null);
+      elements.add(element);
+      currentHead++;
+      count++;
+    }
+    head.lazySet(currentHead);
+    return count;
+  }
+
+  /** Number of claimed slots not consumed yet, including ones still being published. */
+  public int size() {
+    return (int) Math.max(0, tail.get() - head.get());
+  }
+
+  public int capacity() {
+    return mask + 1;
+  }
+}
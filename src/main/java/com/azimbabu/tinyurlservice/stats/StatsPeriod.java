@@ -0,0 +1,17 @@
+package com.azimbabu.tinyurlservice.stats;
+
+public enum StatsPeriod {
+  DAILY(1),
+  WEEKLY(7),
+  MONTHLY(30);
+
+  private final int days;
+
+  StatsPeriod(int days) {
+    this.days = days;
+  }
+
+  public int getDays() {
+    return days;
+  }
+}
@@ -0,0 +1,190 @@
+package com.azimbabu.tinyurlservice.stats;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.dto.TopLink;
+import com.azimbabu.tinyurlservice.model.TopLinksSnapshot;
+import com.azimbabu.tinyurlservice.repository.TopLinksSnapshotRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.InsertOptions;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks the most redirected short urls for the daily, weekly and monthly statistics.
+ *
+ * <p>Each node counts today's redirects in a @{@link HeavyHitters} sketch and periodically writes
+ * its candidates to {@code top_links_snapshot}, one row per node and UTC day. The same job merges
+ * the rows of all nodes for the last 30 days and precomputes the top links of every @{@link
+ * StatsPeriod}, so serving them is a map lookup. Merged days older than yesterday no longer change
+ * and are kept in memory instead of being read again.
+ *
+ * <p>The first snapshot after a start adds the counts of this node's row of the day to the
+ * sketch before overwriting it, so a node restarted with the same {@code node-id} keeps the counts
+ * of the links it had tracked. Counts of links outside its candidates were never written and
+ * start again from zero.
+ */
+@Slf4j
+@Component
+public class TopLinksTracker {
+
+  private static final int TOP_LINKS_SIZE = 10;
+  private static final int SNAPSHOT_TTL_IN_DAYS = 35;
+
+  private TopLinksSnapshotRepository topLinksSnapshotRepository;
+
+  private CassandraOperations cassandraOperations;
+
+  private TinyUrlProperties tinyUrlProperties;
+
+  private volatile LocalDate currentDay;
+
+  private volatile HeavyHitters heavyHitters;
+
+  private final Map<LocalDate, Map<String, Long>> mergedDays = new ConcurrentHashMap<>();
+
+  private volatile Map<StatsPeriod, List<TopLink>> topLinks = new EnumMap<>(StatsPeriod.class);
+
+  private boolean restored;
+
+  @Autowired
+  public TopLinksTracker(
+      TopLinksSnapshotRepository topLinksSnapshotRepository,
+      CassandraOperations cassandraOperations,
+      TinyUrlProperties tinyUrlProperties) {
+    this.topLinksSnapshotRepository = topLinksSnapshotRepository;
+    this.cassandraOperations = cassandraOperations;
+    this.tinyUrlProperties = tinyUrlProperties;
+    this.currentDay = today();
+    this.heavyHitters = newHeavyHitters();
+  }
+
+  /** Records one redirect of the short url. */
+  public void record(String shortUrl) {
+    heavyHitters.add(shortUrl);
+  }
+
+  /** Most redirected short urls of the period as of the last merge, most clicks first. */
+  public List<TopLink> getTopLinks(StatsPeriod period) {
+    return topLinks.getOrDefault(period, Collections.emptyList());
+  }
+
+  /** Writes this node's snapshot, rolls over to a new day and recomputes the merged top links. */
+  @Scheduled(fixedDelayString = "${tinyurl.top-links-snapshot-interval-in-ms}")
+  public void snapshot() {
+    try {
+      if (!restored) {
+        restore(currentDay, heavyHitters);
+        restored = true;
+      }
+      writeSnapshot(currentDay, heavyHitters);
+      LocalDate today = today();
+      if (!today.equals(currentDay)) {
+        currentDay = today;
+        heavyHitters = newHeavyHitters();
+      }
+      merge(today);
+    } catch (RuntimeException e) {
+      log.warn("Failed to snapshot top links", e);
+    }
+  }
+
+  private void restore(LocalDate day, HeavyHitters dayHeavyHitters) {
+    for (TopLinksSnapshot snapshot : topLinksSnapshotRepository.findByDay(day)) {
+      if (tinyUrlProperties.getNodeId().equals(snapshot.getNodeId())
+          && snapshot.getClicks() != null) {
+        snapshot.getClicks().forEach(dayHeavyHitters::add);
+      }
+    }
+  }
+
+  private void writeSnapshot(LocalDate day, HeavyHitters dayHeavyHitters) {
+    TopLinksSnapshot snapshot =
+        TopLinksSnapshot.builder()
+            .day(day)
+            .nodeId(tinyUrlProperties.getNodeId())
+            .clicks(dayHeavyHitters.snapshot())
+            .updatedAt(new Date())
+            .build();
+    cassandraOperations.insert(
+        snapshot,
+        InsertOptions.builder()
+            .ttl((int) Duration.ofDays(SNAPSHOT_TTL_IN_DAYS).getSeconds())
+            .build());
+  }
+
+  private void merge(LocalDate today) {
+    LocalDate firstDay = today.minusDays(StatsPeriod.MONTHLY.getDays() - 1);
+    mergedDays.keySet().removeIf(day -> day.isBefore(firstDay));
+
+    Map<StatsPeriod, Map<String, Long>> periodClicks = new EnumMap<>(StatsPeriod.class);
+    for (StatsPeriod period : StatsPeriod.values()) {
+      periodClicks.put(period, new HashMap<>());
+    }
+
+    for (int daysAgo = 0; daysAgo < StatsPeriod.MONTHLY.getDays(); daysAgo++) {
+      LocalDate day = today.minusDays(daysAgo);
+      Map<String, Long> dayClicks = daysAgo <= 1 ? readDay(day) : mergedDays.get(day);
+      if (dayClicks == null) {
+        dayClicks = readDay(day);
+        mergedDays.put(day, dayClicks);
+      }
+
+      for (StatsPeriod period : StatsPeriod.values()) {
+        if (daysAgo < period.getDays()) {
+          Map<String, Long> clicks = periodClicks.get(period);
+          dayClicks.forEach((shortUrl, count) -> clicks.merge(shortUrl, count, Long::sum));
+        }
+      }
+    }
+
+    Map<StatsPeriod, List<TopLink>> newTopLinks = new EnumMap<>(StatsPeriod.class);
+    periodClicks.forEach((period, clicks) -> newTopLinks.put(period, top(clicks)));
+    topLinks = newTopLinks;
+  }
+
+  private Map<String, Long> readDay(LocalDate day) {
+    Map<String, Long> dayClicks = new HashMap<>();
+    for (TopLinksSnapshot snapshot : topLinksSnapshotRepository.findByDay(day)) {
+      if (snapshot.getClicks() != null) {
+        snapshot
+            .getClicks()
+            .forEach((shortUrl, count) -> dayClicks.merge(shortUrl, count, Long::sum));
+      }
+    }
+    return dayClicks;
+  }
+
+  private static List<TopLink> top(Map<String, Long> clicks) {
+    return clicks.entrySet().stream()
+        .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+        .limit(TOP_LINKS_SIZE)
+        .map(entry -> new TopLink(entry.getKey(), entry.getValue()))
+        .collect(Collectors.toList());
+  }
+
+  private HeavyHitters newHeavyHitters() {
+    return new HeavyHitters(
+        tinyUrlProperties.getTopLinksCapacity(),
+        tinyUrlProperties.getTopLinksSketchWidth(),
+        tinyUrlProperties.getTopLinksSketchDepth());
+  }
+
+  private static LocalDate today() {
+    return LocalDate.now(ZoneOffset.UTC);
+  }
+}
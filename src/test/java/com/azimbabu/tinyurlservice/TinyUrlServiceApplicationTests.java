@@ -5,10 +5,12 @@ import info.archinnov.achilles.junit.AchillesTestResource;
 import org.junit.Rule;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
 
 import static com.azimbabu.tinyurlservice.config.CassandraTestUtils.embeddedCassandra;
 
 @SpringBootTest
+@ActiveProfiles("dev")
 class TinyUrlServiceApplicationTests {
 
   @Rule
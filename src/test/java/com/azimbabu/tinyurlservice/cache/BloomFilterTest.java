@@ -0,0 +1,58 @@
+package com.azimbabu.tinyurlservice.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+
+  @Test
+  void noFalseNegatives() {
+    BloomFilter bloomFilter = BloomFilter.create(10_000, 0.01);
+    for (int i = 0; i < 10_000; i++) {
+      bloomFilter.put("key" + i);
+    }
+    for (int i = 0; i < 10_000; i++) {
+      assertTrue(bloomFilter.mightContain("key" + i));
+    }
+  }
+
+  @Test
+  void falsePositiveProbability() {
+    BloomFilter bloomFilter = BloomFilter.create(10_000, 0.01);
+    for (int i = 0; i < 10_000; i++) {
+      bloomFilter.put("key" + i);
+    }
+
+    int falsePositives = 0;
+    for (int i = 0; i < 100_000; i++) {
+      if (bloomFilter.mightContain("other" + i)) {
+        falsePositives++;
+      }
+    }
+    // 1% expected, allow some slack
+    assertTrue(falsePositives < 2_000, falsePositives + " false positives");
+  }
+
+  @Test
+  void snapshotRoundTrip() throws IOException {
+    BloomFilter bloomFilter = BloomFilter.create(1_000, 0.01);
+    bloomFilter.put("abc1234");
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    bloomFilter.writeTo(new DataOutputStream(bytes));
+    BloomFilter restored =
+        BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertEquals(bloomFilter.getBitSize(), restored.getBitSize());
+    assertEquals(bloomFilter.getHashCount(), restored.getHashCount());
+    assertTrue(restored.mightContain("abc1234"));
+    assertFalse(restored.mightContain("xyz7890"));
+  }
+}
@@ -0,0 +1,153 @@
+package com.azimbabu.tinyurlservice.cache;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.Redirect;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RedirectTableTest {
+
+  private static final long EPOCH = 42;
+
+  @TempDir Path tempDir;
+
+  @Test
+  void putAndGet() throws IOException {
+    RedirectTable redirectTable = new RedirectTable(buildTinyUrlProperties(16), EPOCH);
+    redirectTable.put("abc1234", buildRedirect("http://www.test.com/ünïcode", Duration.ofDays(1)));
+    redirectTable.put("alias", buildRedirect("http://www.alias.com", Duration.ofDays(1)));
+
+    assertEquals("http://www.test.com/ünïcode", redirectTable.get("abc1234").getOriginalUrl());
+    assertEquals("http://www.alias.com", redirectTable.get("alias").getOriginalUrl());
+    assertNull(redirectTable.get("abc1235"));
+    assertNull(redirectTable.get("abc12345"));
+    assertEquals(2, redirectTable.size());
+  }
+
+  @Test
+  void overwrite() throws IOException {
+    RedirectTable redirectTable = new RedirectTable(buildTinyUrlProperties(16), EPOCH);
+    redirectTable.put("abc1234", buildRedirect("http://www.test.com", Duration.ofDays(1)));
+    redirectTable.put("abc1234", buildRedirect("http://www.other.com", Duration.ofDays(1)));
+
+    assertEquals("http://www.other.com", redirectTable.get("abc1234").getOriginalUrl());
+    assertEquals(1, redirectTable.size());
+  }
+
+  @Test
+  void expiredAndInvalidated() throws IOException {
+    RedirectTable redirectTable = new RedirectTable(buildTinyUrlProperties(16), EPOCH);
+    redirectTable.put("expired", buildRedirect("http://www.test.com", Duration.ofDays(-1)));
+    redirectTable.put("abc1234", buildRedirect("http://www.test.com", Duration.ofDays(1)));
+    redirectTable.invalidate("abc1234");
+
+    assertNull(redirectTable.get("expired"));
+    assertNull(redirectTable.get("abc1234"));
+  }
+
+  @Test
+  void evictOldestWhenFull() throws IOException {
+    RedirectTable redirectTable = new RedirectTable(buildTinyUrlProperties(4), EPOCH);
+    for (int i = 0; i < 4; i++) {
+      redirectTable.put("key" + i, buildRedirect("http://www.test.com/" + i, Duration.ofDays(1)));
+    }
+
+    assertEquals(3, redirectTable.size());
+    assertNull(redirectTable.get("key0"));
+    for (int i = 1; i < 4; i++) {
+      assertEquals("http://www.test.com/" + i, redirectTable.get("key" + i).getOriginalUrl());
+    }
+  }
+
+  @Test
+  void evictKeepsProbeChainsIntact() throws IOException {
+    RedirectTable redirectTable = new RedirectTable(buildTinyUrlProperties(16), EPOCH);
+    for (int i = 0; i < 1000; i++) {
+      redirectTable.put("key" + i, buildRedirect("http://www.test.com/" + i, Duration.ofDays(1)));
+    }
+
+    // verify that the 12 newest keys are all still reachable after many evictions
+    assertEquals(12, redirectTable.size());
+    for (int i = 988; i < 1000; i++) {
+      assertEquals("http://www.test.com/" + i, redirectTable.get("key" + i).getOriginalUrl());
+    }
+    assertNull(redirectTable.get("key987"));
+  }
+
+  @Test
+  void evictOldestWhenDataAreaFull() throws IOException {
+    RedirectTable redirectTable = new RedirectTable(buildTinyUrlProperties(64), EPOCH);
+    String path = "http://www.test.com/" + StringUtils.repeat('x', 60000);
+    for (int i = 0; i < 40; i++) {
+      redirectTable.put(
+          String.format("key%02d", i), buildRedirect(path + i, Duration.ofDays(1)));
+    }
+
+    // a 1MB data area holds 17 such urls, the log wrapped around twice
+    assertEquals(17, redirectTable.size());
+    assertNull(redirectTable.get("key22"));
+    for (int i = 23; i < 40; i++) {
+      assertEquals(path + i, redirectTable.get(String.format("key%02d", i)).getOriginalUrl());
+    }
+  }
+
+  @Test
+  void persistedAcrossRestart() throws IOException {
+    TinyUrlProperties tinyUrlProperties = buildTinyUrlProperties(16);
+    RedirectTable redirectTable = new RedirectTable(tinyUrlProperties, EPOCH);
+    redirectTable.put("abc1234", buildRedirect("http://www.test.com", Duration.ofDays(1)));
+    redirectTable.flush();
+
+    RedirectTable reopened = new RedirectTable(tinyUrlProperties, EPOCH);
+    assertEquals("http://www.test.com", reopened.get("abc1234").getOriginalUrl());
+  }
+
+  @Test
+  void resetWhenNotFlushed() throws IOException {
+    TinyUrlProperties tinyUrlProperties = buildTinyUrlProperties(16);
+    RedirectTable redirectTable = new RedirectTable(tinyUrlProperties, EPOCH);
+    redirectTable.put("abc1234", buildRedirect("http://www.test.com", Duration.ofDays(1)));
+    redirectTable.flush();
+    redirectTable.put("def5678", buildRedirect("http://www.test.com", Duration.ofDays(1)));
+
+    // the node died before flushing the second put, the file may be torn
+    RedirectTable reopened = new RedirectTable(tinyUrlProperties, EPOCH);
+    assertNull(reopened.get("abc1234"));
+    assertEquals(0, reopened.size());
+  }
+
+  @Test
+  void resetOnEpochChange() throws IOException {
+    TinyUrlProperties tinyUrlProperties = buildTinyUrlProperties(16);
+    RedirectTable redirectTable = new RedirectTable(tinyUrlProperties, EPOCH);
+    redirectTable.put("abc1234", buildRedirect("http://www.test.com", Duration.ofDays(1)));
+    redirectTable.flush();
+
+    // the keyspace was recreated meanwhile and abc1234 may belong to another url now
+    RedirectTable reopened = new RedirectTable(tinyUrlProperties, EPOCH + 1);
+    assertNull(reopened.get("abc1234"));
+    assertEquals(0, reopened.size());
+  }
+
+  private Redirect buildRedirect(String originalUrl, Duration expiration) {
+    return new Redirect(originalUrl, Date.from(Instant.now().plus(expiration)));
+  }
+
+  private TinyUrlProperties buildTinyUrlProperties(int capacity) {
+    return TinyUrlProperties.builder()
+        .shortUrlLength(7)
+        .redirectTablePath(tempDir.resolve("redirect-table.dat").toString())
+        .redirectTableCapacity(capacity)
+        .redirectTableDataSizeInMb(1)
+        .build();
+  }
+}
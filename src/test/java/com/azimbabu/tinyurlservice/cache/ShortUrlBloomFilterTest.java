@@ -0,0 +1,126 @@
+package com.azimbabu.tinyurlservice.cache;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ShortUrlBloomFilterTest {
+
+  private static final long HOUR_IN_MS = Duration.ofHours(1).toMillis();
+
+  @TempDir Path tempDir;
+
+  @Mock private Session session;
+
+  private final List<ShortUrlBloomFilter> filters = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() {
+    initMocks(this);
+    Row row = mock(Row.class);
+    doReturn("abc1234").when(row).getString("shorturl");
+    ResultSet resultSet = mock(ResultSet.class);
+    doAnswer(invocation -> List.of(row).iterator()).when(resultSet).iterator();
+    doReturn(resultSet).when(session).execute(any(Statement.class));
+  }
+
+  @AfterEach
+  void tearDown() {
+    filters.forEach(ShortUrlBloomFilter::shutdown);
+  }
+
+  @Test
+  void putAfterCreate() {
+    ShortUrlBloomFilter bloomFilter = awaitBuilt(createFilter(HOUR_IN_MS));
+    assertTrue(bloomFilter.mightContain("abc1234"));
+    assertFalse(bloomFilter.mightContain("xyz7890"));
+
+    bloomFilter.put("xyz7890");
+
+    assertTrue(bloomFilter.mightContain("xyz7890"));
+  }
+
+  @Test
+  void loadSnapshotAfterCleanShutdown() {
+    ShortUrlBloomFilter bloomFilter = awaitBuilt(createFilter(HOUR_IN_MS));
+    bloomFilter.put("xyz7890");
+    bloomFilter.shutdown();
+
+    ShortUrlBloomFilter restarted = createFilter(HOUR_IN_MS);
+
+    // the snapshot is used right away, with the key created after the last rebuild
+    assertTrue(restarted.mightContain("abc1234"));
+    assertTrue(restarted.mightContain("xyz7890"));
+    assertFalse(restarted.mightContain("missing"));
+    verify(session, after(100).times(1)).execute(any(Statement.class));
+  }
+
+  @Test
+  void rejectSnapshotAfterCrash() throws Exception {
+    ShortUrlBloomFilter bloomFilter = awaitBuilt(createFilter(HOUR_IN_MS));
+    bloomFilter.put("xyz7890");
+    bloomFilter.shutdown();
+    // a crash leaves the snapshot of the last rebuild without the marker
+    Files.delete(tempDir.resolve("bloom-filter.dat.clean"));
+
+    createFilter(HOUR_IN_MS);
+
+    // the table is scanned again right away instead of trusting the snapshot
+    verify(session, timeout(1000).times(2)).execute(any(Statement.class));
+  }
+
+  @Test
+  void rejectSnapshotOlderThanRebuildInterval() throws Exception {
+    ShortUrlBloomFilter bloomFilter = awaitBuilt(createFilter(HOUR_IN_MS));
+    bloomFilter.shutdown();
+    Thread.sleep(50);
+
+    createFilter(10);
+
+    verify(session, timeout(1000).atLeast(2)).execute(any(Statement.class));
+  }
+
+  private ShortUrlBloomFilter createFilter(long rebuildIntervalInMs) {
+    ShortUrlBloomFilter bloomFilter =
+        new ShortUrlBloomFilter(
+            session,
+            TinyUrlProperties.builder()
+                .bloomFilterPath(tempDir.resolve("bloom-filter.dat").toString())
+                .bloomFilterExpectedInsertions(1000L)
+                .bloomFilterFalsePositiveProbability(0.001)
+                .bloomFilterRebuildIntervalInMs(rebuildIntervalInMs)
+                .build());
+    filters.add(bloomFilter);
+    return bloomFilter;
+  }
+
+  /** Until the first rebuild completes every key might be present. */
+  private ShortUrlBloomFilter awaitBuilt(ShortUrlBloomFilter bloomFilter) {
+    assertTimeoutPreemptively(
+        Duration.ofSeconds(5),
+        () -> {
+          while (bloomFilter.mightContain("never-created")) {
+            Thread.sleep(10);
+          }
+        });
+    return bloomFilter;
+  }
+}
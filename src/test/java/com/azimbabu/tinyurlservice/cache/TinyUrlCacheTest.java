@@ -0,0 +1,116 @@
+package com.azimbabu.tinyurlservice.cache;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.test.StepVerifier;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TinyUrlCacheTest {
+
+  private final AtomicLong nanos = new AtomicLong();
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final TinyUrlCache tinyUrlCache =
+      new TinyUrlCache(
+          TinyUrlProperties.builder()
+              .cacheMaximumSize(100L)
+              .cacheTtlInSeconds(10L)
+              .cacheNegativeTtlInSeconds(1L)
+              .cacheRefreshAheadEnabled(true)
+              .cacheRefreshAheadRatio(0.8)
+              .cacheRefreshAheadMinHitsPerSecond(1.0)
+              .build(),
+          meterRegistry,
+          nanos::get);
+
+  @Test
+  void coalescesConcurrentReactiveMisses() {
+    AtomicInteger loads = new AtomicInteger();
+    MonoProcessor<Optional<TinyUrl>> result = MonoProcessor.create();
+    TinyUrl tinyUrl = TinyUrl.builder().shortUrl("abc1234").originalUrl("http://a.com").build();
+
+    Function<String, Mono<Optional<TinyUrl>>> loader =
+        key -> result.doOnSubscribe(subscription -> loads.incrementAndGet());
+    Mono<Optional<TinyUrl>> first = tinyUrlCache.getReactive("abc1234", loader);
+    Mono<Optional<TinyUrl>> second = tinyUrlCache.getReactive("abc1234", loader);
+
+    StepVerifier.create(first.zipWith(second))
+        .then(() -> result.onNext(Optional.of(tinyUrl)))
+        .assertNext(
+            pair -> {
+              assertEquals(tinyUrl, pair.getT1().get());
+              assertEquals(tinyUrl, pair.getT2().get());
+            })
+        .verifyComplete();
+    assertEquals(1, loads.get());
+    assertEquals(tinyUrl, tinyUrlCache.getIfPresent("abc1234").get());
+  }
+
+  @Test
+  void refreshesHotEntriesAheadOfExpiry() {
+    TinyUrl tinyUrl = TinyUrl.builder().shortUrl("abc1234").originalUrl("http://a.com").build();
+    TinyUrl updated = tinyUrl.toBuilder().originalUrl("http://b.com").build();
+    tinyUrlCache.put(tinyUrl);
+
+    for (int i = 0; i < 20; i++) {
+      tinyUrlCache.getReactive("abc1234", key -> Mono.just(Optional.of(updated))).block();
+    }
+    // not yet close to expiry
+    assertEquals(tinyUrl, tinyUrlCache.getIfPresent("abc1234").get());
+
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(9));
+    // the stale value is served while the refresh replaces it
+    assertEquals(
+        tinyUrl,
+        tinyUrlCache.getReactive("abc1234", key -> Mono.just(Optional.of(updated))).block().get());
+    assertEquals(updated, tinyUrlCache.getIfPresent("abc1234").get());
+
+    // the refreshed entry lives a full ttl from the refresh
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(5));
+    assertEquals(updated, tinyUrlCache.getIfPresent("abc1234").get());
+  }
+
+  @Test
+  void doesNotRefreshColdEntries() {
+    TinyUrl tinyUrl = TinyUrl.builder().shortUrl("abc1234").originalUrl("http://a.com").build();
+    tinyUrlCache.put(tinyUrl);
+
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(9));
+    AtomicInteger loads = new AtomicInteger();
+    tinyUrlCache.get(
+        "abc1234",
+        key -> {
+          loads.incrementAndGet();
+          return Optional.of(tinyUrl);
+        });
+
+    assertEquals(0, loads.get());
+  }
+
+  @Test
+  void countsEachLookupOnce() {
+    TinyUrl tinyUrl = TinyUrl.builder().shortUrl("abc1234").originalUrl("http://a.com").build();
+
+    tinyUrlCache.get("abc1234", key -> Optional.of(tinyUrl));
+    tinyUrlCache.get("abc1234", key -> Optional.of(tinyUrl));
+
+    assertEquals(1.0, cacheGets("miss"));
+    assertEquals(1.0, cacheGets("hit"));
+  }
+
+  private double cacheGets(String result) {
+    return meterRegistry.get("cache.gets").tag("result", result).functionCounter().count();
+  }
+}
@@ -0,0 +1,37 @@
+package com.azimbabu.tinyurlservice.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeySecretValidatorTest {
+
+  @Test
+  void rejectsMissingSecret() {
+    assertThrows(IllegalStateException.class, () -> validate(null, new MockEnvironment()));
+    assertThrows(IllegalStateException.class, () -> validate(" ", new MockEnvironment()));
+  }
+
+  @Test
+  void rejectsPlaceholderSecret() {
+    assertThrows(IllegalStateException.class, () -> validate("change-me", new MockEnvironment()));
+  }
+
+  @Test
+  void acceptsSecret() {
+    assertDoesNotThrow(() -> validate("s3cr3t", new MockEnvironment()));
+  }
+
+  @Test
+  void acceptsPlaceholderInDevProfile() {
+    MockEnvironment environment = new MockEnvironment();
+    environment.setActiveProfiles("dev");
+    assertDoesNotThrow(() -> validate("change-me", environment));
+  }
+
+  private static void validate(String keySecret, MockEnvironment environment) {
+    new KeySecretValidator(TinyUrlProperties.builder().keySecret(keySecret).build(), environment)
+        .afterPropertiesSet();
+  }
+}
@@ -0,0 +1,91 @@
+package com.azimbabu.tinyurlservice.config;
+
+import com.azimbabu.tinyurlservice.limit.LoadShedder;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import com.azimbabu.tinyurlservice.model.User;
+import com.azimbabu.tinyurlservice.repository.ReactiveTinyUrlRepository;
+import com.azimbabu.tinyurlservice.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class RepositoryMetricsPostProcessorTest {
+
+  private SimpleMeterRegistry meterRegistry;
+
+  private RepositoryMetricsPostProcessor postProcessor;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+    beanFactory.addBean("meterRegistry", meterRegistry);
+    postProcessor =
+        new RepositoryMetricsPostProcessor(
+            beanFactory.getBeanProvider(MeterRegistry.class),
+            beanFactory.getBeanProvider(LoadShedder.class));
+  }
+
+  @Test
+  void timesCallsByOutcome() {
+    UserRepository target = mock(UserRepository.class);
+    doReturn(Optional.of(User.builder().username("testuser").build()))
+        .when(target)
+        .findByUsername(eq("testuser"));
+    doThrow(new IllegalStateException("unavailable")).when(target).findByUsername(eq("broken"));
+    UserRepository userRepository =
+        (UserRepository) postProcessor.postProcessAfterInitialization(target, "userRepository");
+
+    userRepository.findByUsername("testuser");
+    userRepository.findByUsername("testuser");
+    assertThrows(IllegalStateException.class, () -> userRepository.findByUsername("broken"));
+
+    assertEquals(2, timer("UserRepository", "findByUsername", "success").count());
+    assertEquals(1, timer("UserRepository", "findByUsername", "error").count());
+    // one meter per outcome, reused across calls
+    assertEquals(2, meterRegistry.find("tinyurl.repository").timers().size());
+  }
+
+  @Test
+  void timesReactiveCallsOnTermination() {
+    ReactiveTinyUrlRepository target = mock(ReactiveTinyUrlRepository.class);
+    doReturn(Mono.just(TinyUrl.builder().shortUrl("abc1234").build()))
+        .when(target)
+        .findByShortUrl(eq("abc1234"));
+    ReactiveTinyUrlRepository reactiveTinyUrlRepository =
+        (ReactiveTinyUrlRepository)
+            postProcessor.postProcessAfterInitialization(target, "reactiveTinyUrlRepository");
+
+    Mono<TinyUrl> result = reactiveTinyUrlRepository.findByShortUrl("abc1234");
+
+    // assembling the mono isn't a call yet
+    assertTrue(meterRegistry.find("tinyurl.repository").timers().isEmpty());
+    result.block();
+    assertEquals(1, timer("ReactiveTinyUrlRepository", "findByShortUrl", "success").count());
+  }
+
+  @Test
+  void leavesOtherBeansAlone() {
+    Object bean = new Object();
+    assertSame(bean, postProcessor.postProcessAfterInitialization(bean, "bean"));
+  }
+
+  private Timer timer(String repository, String method, String outcome) {
+    return meterRegistry
+        .get("tinyurl.repository")
+        .tag("repository", repository)
+        .tag("method", method)
+        .tag("outcome", outcome)
+        .timer();
+  }
+}
@@ -0,0 +1,140 @@
+package com.azimbabu.tinyurlservice.controller;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.Redirect;
+import com.azimbabu.tinyurlservice.service.TinyUrlService;
+import com.azimbabu.tinyurlservice.stats.ClickCounter;
+import com.azimbabu.tinyurlservice.stats.ClickEventRecorder;
+import com.azimbabu.tinyurlservice.stats.TopLinksTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class RedirectControllerTest {
+
+  private TinyUrlService tinyUrlService;
+
+  private ClickCounter clickCounter;
+
+  private TopLinksTracker topLinksTracker;
+
+  private ClickEventRecorder clickEventRecorder;
+
+  private TinyUrlProperties tinyUrlProperties;
+
+  private MockMvc mockMvc;
+
+  @BeforeEach
+  void setUp() {
+    tinyUrlService = mock(TinyUrlService.class);
+    clickCounter = mock(ClickCounter.class);
+    topLinksTracker = mock(TopLinksTracker.class);
+    clickEventRecorder = mock(ClickEventRecorder.class);
+    tinyUrlProperties =
+        TinyUrlProperties.builder()
+            .permanentRedirectEnabled(false)
+            .redirectMaxAgeInSeconds(300L)
+            .build();
+    mockMvc =
+        MockMvcBuilders.standaloneSetup(
+                new RedirectController(
+                    tinyUrlService,
+                    tinyUrlProperties,
+                    clickCounter,
+                    topLinksTracker,
+                    clickEventRecorder))
+            .build();
+  }
+
+  @Test
+  void redirect() throws Exception {
+    doReturn(Mono.just(buildRedirect(Duration.ofDays(1))))
+        .when(tinyUrlService)
+        .findRedirectReactive(eq("abc1234"));
+
+    MvcResult result =
+        mockMvc
+            .perform(
+                get("/abc1234")
+                    .header(HttpHeaders.REFERER, "http://www.referrer.com")
+                    .header(HttpHeaders.USER_AGENT, "test-agent"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    mockMvc
+        .perform(asyncDispatch(result))
+        .andExpect(status().isFound())
+        .andExpect(header().string(HttpHeaders.LOCATION, "http://www.test.com"))
+        .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=300, private"))
+        .andExpect(content().string(""));
+
+    verify(clickCounter).record(eq("abc1234"));
+    verify(topLinksTracker).record(eq("abc1234"));
+    verify(clickEventRecorder)
+        .record(eq("abc1234"), eq("http://www.referrer.com"), eq("test-agent"));
+  }
+
+  @Test
+  void redirectCappedByExpiration() throws Exception {
+    doReturn(Mono.just(buildRedirect(Duration.ofSeconds(60))))
+        .when(tinyUrlService)
+        .findRedirectReactive(eq("abc1234"));
+
+    MvcResult result = mockMvc.perform(get("/abc1234")).andReturn();
+    mockMvc
+        .perform(asyncDispatch(result))
+        .andExpect(status().isFound())
+        .andExpect(
+            header()
+                .string(HttpHeaders.CACHE_CONTROL, matchesPattern("max-age=[0-5]?\\d, private")));
+  }
+
+  @Test
+  void permanentRedirect() throws Exception {
+    tinyUrlProperties.setPermanentRedirectEnabled(true);
+    doReturn(Mono.just(buildRedirect(Duration.ofDays(1))))
+        .when(tinyUrlService)
+        .findRedirectReactive(eq("abc1234"));
+
+    MvcResult result = mockMvc.perform(get("/abc1234")).andReturn();
+    mockMvc
+        .perform(asyncDispatch(result))
+        .andExpect(status().isMovedPermanently())
+        .andExpect(header().string(HttpHeaders.LOCATION, "http://www.test.com"))
+        .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("public")));
+  }
+
+  @Test
+  void redirectNotFound() throws Exception {
+    doReturn(Mono.empty()).when(tinyUrlService).findRedirectReactive(anyString());
+
+    MvcResult result = mockMvc.perform(get("/missing")).andReturn();
+    mockMvc
+        .perform(asyncDispatch(result))
+        .andExpect(status().isNotFound())
+        .andExpect(header().doesNotExist(HttpHeaders.LOCATION));
+
+    // verify that misses aren't counted as clicks
+    verifyNoInteractions(clickCounter, topLinksTracker, clickEventRecorder);
+  }
+
+  private Redirect buildRedirect(Duration expiration) {
+    return new Redirect("http://www.test.com", Date.from(Instant.now().plus(expiration)));
+  }
+}
@@ -0,0 +1,66 @@
+package com.azimbabu.tinyurlservice.controller;
+
+import com.azimbabu.tinyurlservice.dto.TopLink;
+import com.azimbabu.tinyurlservice.stats.StatsPeriod;
+import com.azimbabu.tinyurlservice.stats.TopLinksTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class StatsControllerTest {
+
+  private TopLinksTracker topLinksTracker;
+
+  private MockMvc mockMvc;
+
+  @BeforeEach
+  void setUp() {
+    topLinksTracker = mock(TopLinksTracker.class);
+    mockMvc = MockMvcBuilders.standaloneSetup(new StatsController(topLinksTracker)).build();
+  }
+
+  @Test
+  void topDaily() throws Exception {
+    doReturn(List.of(new TopLink("abc1234", 15), new TopLink("xyz7890", 2)))
+        .when(topLinksTracker)
+        .getTopLinks(eq(StatsPeriod.DAILY));
+
+    mockMvc
+        .perform(get("/tiny-url/stats/top"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.period").value("DAILY"))
+        .andExpect(jsonPath("$.data[0].shortUrl").value("abc1234"))
+        .andExpect(jsonPath("$.data[0].clicks").value(15))
+        .andExpect(jsonPath("$.data[1].shortUrl").value("xyz7890"));
+  }
+
+  @Test
+  void topWeekly() throws Exception {
+    doReturn(List.of(new TopLink("abc1234", 15)))
+        .when(topLinksTracker)
+        .getTopLinks(eq(StatsPeriod.WEEKLY));
+
+    mockMvc
+        .perform(get("/tiny-url/stats/top").param("period", "WEEKLY"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.period").value("WEEKLY"))
+        .andExpect(jsonPath("$.data.length()").value(1));
+  }
+
+  @Test
+  void topUnknownPeriod() throws Exception {
+    mockMvc
+        .perform(get("/tiny-url/stats/top").param("period", "YEARLY"))
+        .andExpect(status().isBadRequest());
+
+    verifyNoInteractions(topLinksTracker);
+  }
+}
@@ -0,0 +1,185 @@
+package com.azimbabu.tinyurlservice.controller;
+
+import com.azimbabu.tinyurlservice.dto.TinyUrlRequest;
+import com.azimbabu.tinyurlservice.dto.TinyUrlResponse;
+import com.azimbabu.tinyurlservice.dto.UserLink;
+import com.azimbabu.tinyurlservice.dto.UserLinksResponse;
+import com.azimbabu.tinyurlservice.limit.RateLimitFilter;
+import com.azimbabu.tinyurlservice.limit.RateLimiter;
+import com.azimbabu.tinyurlservice.limit.Route;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import com.azimbabu.tinyurlservice.service.ErrorCode;
+import com.azimbabu.tinyurlservice.service.TinyUrlService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class TinyUrlControllerTest {
+
+  private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+  private TinyUrlService tinyUrlService;
+
+  private RateLimiter rateLimiter;
+
+  private ObjectMapper objectMapper;
+
+  private MockMvc mockMvc;
+
+  @BeforeEach
+  void setUp() {
+    tinyUrlService = mock(TinyUrlService.class);
+    rateLimiter = mock(RateLimiter.class);
+    objectMapper = new ObjectMapper();
+    mockMvc =
+        MockMvcBuilders.standaloneSetup(
+                new TinyUrlController(tinyUrlService, objectMapper, Optional.of(rateLimiter)))
+            .build();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void createBulkWithMalformedLine() throws Exception {
+    // the service fails requests without an original url with INVALID_REQUEST
+    doAnswer(
+            invocation ->
+                ((Flux<TinyUrlRequest>) invocation.getArgument(0))
+                    .map(
+                        request ->
+                            request.getOriginalUrl() == null
+                                ? TinyUrlResponse.builder()
+                                    .success(false)
+                                    .errorCode(ErrorCode.INVALID_REQUEST)
+                                    .build()
+                                : TinyUrlResponse.builder()
+                                    .success(true)
+                                    .data(
+                                        TinyUrl.builder()
+                                            .originalUrl(request.getOriginalUrl())
+                                            .build())
+                                    .build()))
+        .when(tinyUrlService)
+        .createTinyUrls(any(), eq("testuser"), any());
+
+    MvcResult result =
+        mockMvc
+            .perform(
+                post("/tiny-url/bulk")
+                    .param("username", "testuser")
+                    .contentType(APPLICATION_NDJSON_VALUE)
+                    .content(
+                        "{\"originalUrl\":\"http://www.test.com/1\"}\n"
+                            + "{\"originalUrl\":\n"
+                            + "\n"
+                            + "{\"originalUrl\":\"http://www.test.com/3\"}\n"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    String[] lines =
+        mockMvc
+            .perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString()
+            .split("\n");
+
+    // the malformed line gets its own error line and the lines after it are still created
+    assertEquals(3, lines.length);
+    TinyUrlResponse first = objectMapper.readValue(lines[0], TinyUrlResponse.class);
+    TinyUrlResponse second = objectMapper.readValue(lines[1], TinyUrlResponse.class);
+    TinyUrlResponse third = objectMapper.readValue(lines[2], TinyUrlResponse.class);
+    assertEquals("http://www.test.com/1", first.getData().getOriginalUrl());
+    assertFalse(second.isSuccess());
+    assertEquals(ErrorCode.INVALID_REQUEST, second.getErrorCode());
+    assertEquals("http://www.test.com/3", third.getData().getOriginalUrl());
+  }
+
+  @Test
+  void createBulkChargesEveryRow() throws Exception {
+    doReturn(Flux.empty()).when(tinyUrlService).createTinyUrls(any(), eq("testuser"), any());
+    doReturn(0L, TimeUnit.SECONDS.toNanos(1))
+        .when(rateLimiter)
+        .tryAcquire(eq(Route.CREATE), eq("client-1"));
+
+    MvcResult result =
+        mockMvc
+            .perform(
+                post("/tiny-url/bulk")
+                    .param("username", "testuser")
+                    .requestAttr(RateLimitFilter.CLIENT_ATTRIBUTE, "client-1")
+                    .contentType(APPLICATION_NDJSON_VALUE)
+                    .content("{\"originalUrl\":\"http://www.test.com/1\"}\n"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    ArgumentCaptor<BooleanSupplier> rowPermit = ArgumentCaptor.forClass(BooleanSupplier.class);
+    verify(tinyUrlService).createTinyUrls(any(), eq("testuser"), rowPermit.capture());
+
+    // the filter took the token of the first row, every later row takes its own
+    assertTrue(rowPermit.getValue().getAsBoolean());
+    verifyNoInteractions(rateLimiter);
+    assertTrue(rowPermit.getValue().getAsBoolean());
+    assertFalse(rowPermit.getValue().getAsBoolean());
+    verify(rateLimiter, times(2)).tryAcquire(eq(Route.CREATE), eq("client-1"));
+  }
+
+  @Test
+  void getLinksByUser() throws Exception {
+    doReturn(
+            UserLinksResponse.builder()
+                .data(
+                    List.of(
+                        UserLink.builder()
+                            .shortUrl("abc1234")
+                            .originalUrl("http://www.test.com")
+                            .createdAt(new Date())
+                            .build()))
+                .nextPageToken("202001:")
+                .build())
+        .when(tinyUrlService)
+        .getLinksByUser(eq("testuser"), eq(null), eq(20));
+
+    mockMvc
+        .perform(get("/tiny-url/users/testuser/links"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.data[0].shortUrl").value("abc1234"))
+        .andExpect(jsonPath("$.data[0].originalUrl").value("http://www.test.com"))
+        .andExpect(jsonPath("$.data[0].username").doesNotExist())
+        .andExpect(jsonPath("$.data[0].bucket").doesNotExist())
+        .andExpect(jsonPath("$.nextPageToken").value("202001:"));
+  }
+
+  @Test
+  void getLinksByUserMalformedPageToken() throws Exception {
+    doThrow(new IllegalArgumentException("Malformed page token"))
+        .when(tinyUrlService)
+        .getLinksByUser(eq("testuser"), eq("garbage"), anyInt());
+
+    mockMvc
+        .perform(get("/tiny-url/users/testuser/links").param("pageToken", "garbage"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.success").value(false))
+        .andExpect(jsonPath("$.errorCode").value("INVALID_REQUEST"));
+  }
+}
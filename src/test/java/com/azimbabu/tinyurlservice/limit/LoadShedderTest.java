@@ -0,0 +1,66 @@
+package com.azimbabu.tinyurlservice.limit;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadShedderTest {
+
+  private final LoadShedder loadShedder =
+      new LoadShedder(
+          TinyUrlProperties.builder()
+              .loadSheddingMaxConcurrency(4)
+              .loadSheddingMinConcurrency(1)
+              .loadSheddingLatencyThresholdInMs(50L)
+              .build(),
+          new SimpleMeterRegistry());
+
+  @Test
+  void limitsConcurrency() {
+    for (int i = 0; i < 4; i++) {
+      assertTrue(loadShedder.tryAcquire());
+    }
+    assertFalse(loadShedder.tryAcquire());
+
+    loadShedder.release();
+    assertTrue(loadShedder.tryAcquire());
+  }
+
+  @Test
+  void weighsRequestsByPermits() {
+    assertTrue(loadShedder.tryAcquire(3));
+    assertFalse(loadShedder.tryAcquire(2));
+    assertTrue(loadShedder.tryAcquire());
+    loadShedder.release(3);
+    loadShedder.release();
+
+    // a request heavier than the whole limit only runs alone
+    assertTrue(loadShedder.tryAcquire(256));
+    assertFalse(loadShedder.tryAcquire());
+    loadShedder.release(256);
+    assertTrue(loadShedder.tryAcquire());
+  }
+
+  @Test
+  void shrinksLimitWhileCassandraIsSlow() {
+    loadShedder.recordLatency(TimeUnit.MILLISECONDS.toNanos(10));
+    assertEquals(4, loadShedder.getLimit());
+
+    for (int i = 0; i < 100; i++) {
+      loadShedder.recordLatency(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+    assertEquals(2, loadShedder.getLimit());
+    assertTrue(loadShedder.tryAcquire());
+    assertTrue(loadShedder.tryAcquire());
+    assertFalse(loadShedder.tryAcquire());
+
+    for (int i = 0; i < 100; i++) {
+      loadShedder.recordLatency(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+    assertEquals(4, loadShedder.getLimit());
+  }
+}
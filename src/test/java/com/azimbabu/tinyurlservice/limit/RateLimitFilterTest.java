@@ -0,0 +1,136 @@
+package com.azimbabu.tinyurlservice.limit;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class RateLimitFilterTest {
+
+  private static final String CLIENT_HEADER = "X-Client-Id";
+
+  private static final String PROXY = "10.0.0.1";
+
+  @Mock private RateLimiter rateLimiter;
+
+  @Mock private LoadShedder loadShedder;
+
+  private RateLimitFilter rateLimitFilter;
+
+  @BeforeEach
+  void setUp() {
+    initMocks(this);
+    rateLimitFilter =
+        new RateLimitFilter(
+            Optional.of(rateLimiter),
+            Optional.of(loadShedder),
+            TinyUrlProperties.builder()
+                .shortUrlLength(7)
+                .rateLimitClientHeader(CLIENT_HEADER)
+                .rateLimitTrustedProxies(List.of(PROXY))
+                .bulkInFlightWindow(256)
+                .build(),
+            new ObjectMapper(),
+            new SimpleMeterRegistry());
+  }
+
+  @Test
+  void redirectOverRate() throws Exception {
+    doReturn(TimeUnit.MILLISECONDS.toNanos(1500))
+        .when(rateLimiter)
+        .tryAcquire(eq(Route.REDIRECT), anyString());
+    MockFilterChain filterChain = new MockFilterChain();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    rateLimitFilter.doFilter(new MockHttpServletRequest("GET", "/abc1234"), response, filterChain);
+
+    assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus());
+    assertEquals("2", response.getHeader(HttpHeaders.RETRY_AFTER));
+    assertTrue(response.getContentAsString().contains("RATE_LIMITED"));
+    assertNull(filterChain.getRequest());
+  }
+
+  @Test
+  void nonRedirectPathsNotLimited() throws Exception {
+    for (String path :
+        List.of("/actuator", "/error", "/favicon.ico", "/tiny-url/abc1234", "/abc12345678")) {
+      MockFilterChain filterChain = new MockFilterChain();
+
+      rateLimitFilter.doFilter(
+          new MockHttpServletRequest("GET", path), new MockHttpServletResponse(), filterChain);
+
+      assertNotNull(filterChain.getRequest(), path);
+    }
+    verifyNoInteractions(rateLimiter, loadShedder);
+  }
+
+  @Test
+  void clientHeaderIgnoredFromUntrustedAddress() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/abc1234");
+    request.setRemoteAddr("10.0.0.9");
+    request.addHeader(CLIENT_HEADER, "client-1");
+
+    rateLimitFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+    verify(rateLimiter).tryAcquire(eq(Route.REDIRECT), eq("10.0.0.9"));
+  }
+
+  @Test
+  void clientHeaderFromTrustedProxy() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/abc1234");
+    request.setRemoteAddr(PROXY);
+    request.addHeader(CLIENT_HEADER, "client-1");
+
+    rateLimitFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+    verify(rateLimiter).tryAcquire(eq(Route.REDIRECT), eq("client-1"));
+  }
+
+  @Test
+  void createShedWhenOverloaded() throws Exception {
+    doReturn(false).when(loadShedder).tryAcquire(anyInt());
+    MockFilterChain filterChain = new MockFilterChain();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    rateLimitFilter.doFilter(
+        new MockHttpServletRequest("POST", "/tiny-url"), response, filterChain);
+
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), response.getStatus());
+    assertNull(filterChain.getRequest());
+    verify(loadShedder).tryAcquire(eq(1));
+    verify(loadShedder, never()).release(anyInt());
+  }
+
+  @Test
+  void bulkCreateWeighsInFlightWindow() throws Exception {
+    doReturn(true).when(loadShedder).tryAcquire(anyInt());
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/tiny-url/bulk");
+    request.setRemoteAddr("10.0.0.9");
+
+    rateLimitFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+    // the controller charges the later rows to the client the filter identified
+    verify(rateLimiter).tryAcquire(eq(Route.CREATE), eq("10.0.0.9"));
+    assertEquals("10.0.0.9", request.getAttribute(RateLimitFilter.CLIENT_ATTRIBUTE));
+    verify(loadShedder).tryAcquire(eq(256));
+    verify(loadShedder).release(eq(256));
+  }
+}
@@ -0,0 +1,65 @@
+package com.azimbabu.tinyurlservice.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  void burstThenRefill() {
+    long now = 0;
+    TokenBucket tokenBucket = new TokenBucket(10, 5, now);
+
+    for (int i = 0; i < 5; i++) {
+      assertEquals(0, tokenBucket.tryAcquire(now));
+    }
+    long wait = tokenBucket.tryAcquire(now);
+    assertEquals(SECOND / 10, wait);
+
+    // one token is back after a tenth of a second, the bucket is full again after half a second
+    assertEquals(0, tokenBucket.tryAcquire(now + wait));
+    assertTrue(tokenBucket.tryAcquire(now + wait) > 0);
+    now += SECOND;
+    for (int i = 0; i < 5; i++) {
+      assertEquals(0, tokenBucket.tryAcquire(now));
+    }
+    assertTrue(tokenBucket.tryAcquire(now) > 0);
+  }
+
+  @Test
+  void concurrentAcquiresNeverExceedBurst() throws InterruptedException {
+    long now = System.nanoTime();
+    TokenBucket tokenBucket = new TokenBucket(0.001, 1000, now);
+    AtomicInteger acquired = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    CountDownLatch start = new CountDownLatch(1);
+    for (int t = 0; t < 8; t++) {
+      executor.execute(
+          () -> {
+            try {
+              start.await();
+            } catch (InterruptedException e) {
+              return;
+            }
+            for (int i = 0; i < 500; i++) {
+              if (tokenBucket.tryAcquire(now) == 0) {
+                acquired.incrementAndGet();
+              }
+            }
+          });
+    }
+    start.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(1000, acquired.get());
+  }
+}
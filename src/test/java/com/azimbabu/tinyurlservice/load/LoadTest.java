@@ -0,0 +1,269 @@
+package com.azimbabu.tinyurlservice.load;
+
+import com.azimbabu.tinyurlservice.TinyUrlServiceApplication;
+import info.archinnov.achilles.embedded.CassandraEmbeddedServerBuilder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End to end load test of the create and redirect paths against an embedded Cassandra. Excluded
+ * from {@code test}, run it with {@code ./gradlew loadTest}.
+ *
+ * <p>Requests are issued at a fixed rate (open model). Each latency is measured from the time the
+ * request was scheduled to start, not from when a worker got around to sending it, so a stalled
+ * service shows up as latency instead of as fewer requests (coordinated omission correction).
+ *
+ * <p>Tuned with system properties: {@code load.rate} requests per second, {@code load.seconds},
+ * {@code load.warmupSeconds}, {@code load.keys} number of pre-created short urls, {@code
+ * load.createRatio} share of creates, {@code load.zipfExponent}, {@code load.threads}, {@code
+ * load.virtualThreads} to serve requests on virtual threads and {@code load.maxP99Millis}, which
+ * fails the test when the redirect p99 is above it.
+ */
+@Tag("load")
+public class LoadTest {
+
+  private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private static ConfigurableApplicationContext context;
+
+  private static String baseUrl;
+
+  private final HttpClient httpClient =
+      HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+  @BeforeAll
+  static void startService(@TempDir Path dataDir) throws IOException {
+    int cassandraPort = freePort();
+    CassandraEmbeddedServerBuilder.builder()
+        .withKeyspaceName("tinyurl_service")
+        .withCQLPort(cassandraPort)
+        .cleanDataFilesAtStartup(true)
+        .buildNativeCluster();
+
+    context =
+        new SpringApplicationBuilder(TinyUrlServiceApplication.class)
+            .properties(
+                "server.port=0",
+                "spring.data.cassandra.port=" + cassandraPort,
+                "tinyurl.redirect-table-path=" + dataDir.resolve("redirect-table.dat"),
+                "tinyurl.redirect-table-data-size-in-mb=16",
+                "tinyurl.bloom-filter-enabled=false",
+                "tinyurl.key-secret=load-test-secret",
+                "tinyurl.virtual-threads-enabled=" + Boolean.getBoolean("load.virtualThreads"))
+            .run();
+    int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+    baseUrl = "http://localhost:" + port;
+  }
+
+  @AfterAll
+  static void stopService() {
+    if (context != null) {
+      context.close();
+    }
+  }
+
+  @Test
+  void createAndRedirectMix() throws Exception {
+    int rate = Integer.getInteger("load.rate", 2000);
+    int seconds = Integer.getInteger("load.seconds", 30);
+    int warmupSeconds = Integer.getInteger("load.warmupSeconds", 10);
+    int keys = Integer.getInteger("load.keys", 10_000);
+    double createRatio = Double.parseDouble(System.getProperty("load.createRatio", "0.05"));
+    double zipfExponent = Double.parseDouble(System.getProperty("load.zipfExponent", "0.99"));
+    int threads = Integer.getInteger("load.threads", 64);
+
+    List<String> shortUrls = createShortUrls(keys);
+    ZipfianGenerator zipfianGenerator = new ZipfianGenerator(shortUrls.size(), zipfExponent);
+
+    Workload workload = new Workload(shortUrls, zipfianGenerator, createRatio);
+    run(workload, rate, warmupSeconds, threads);
+    workload.reset();
+    long elapsedNanos = run(workload, rate, seconds, threads);
+
+    String report = workload.report(elapsedNanos, rate);
+    System.out.println(report);
+    Path reportPath = Paths.get("build", "reports", "load", "report.txt");
+    Files.createDirectories(reportPath.getParent());
+    Files.write(reportPath, report.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(0, workload.errors.get(), "Requests failed, see " + reportPath);
+    String maxP99Millis = System.getProperty("load.maxP99Millis");
+    if (maxP99Millis != null) {
+      double p99Millis = workload.redirects.getValueAtPercentile(99) / 1e6;
+      assertTrue(
+          p99Millis <= Double.parseDouble(maxP99Millis),
+          "Redirect p99 " + p99Millis + " ms is above " + maxP99Millis + " ms");
+    }
+  }
+
+  /** Issues requests at the rate for the duration and returns the elapsed nanos. */
+  private long run(Workload workload, int rate, int seconds, int threads)
+      throws InterruptedException {
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+    long total = (long) rate * seconds;
+    AtomicLong next = new AtomicLong();
+    long start = System.nanoTime();
+
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    for (int i = 0; i < threads; i++) {
+      executorService.execute(
+          () -> {
+            long index;
+            while ((index = next.getAndIncrement()) < total) {
+              long intendedStart = start + index * intervalNanos;
+              long wait;
+              while ((wait = intendedStart - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+              }
+              workload.execute(intendedStart);
+            }
+          });
+    }
+    executorService.shutdown();
+    executorService.awaitTermination(seconds + 300, TimeUnit.SECONDS);
+    return System.nanoTime() - start;
+  }
+
+  private List<String> createShortUrls(int count) throws Exception {
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      body.append("{\"originalUrl\":\"https://www.example.com/articles/")
+          .append(i)
+          .append("\"}\n");
+    }
+    HttpResponse<Stream<String>> response =
+        httpClient.send(
+            HttpRequest.newBuilder(URI.create(baseUrl + "/tiny-url/bulk"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build(),
+            HttpResponse.BodyHandlers.ofLines());
+    assertEquals(200, response.statusCode());
+
+    List<String> shortUrls = new ArrayList<>();
+    response
+        .body()
+        .forEach(
+            line -> {
+              int start = line.indexOf("\"shortUrl\":\"") + 12;
+              shortUrls.add(line.substring(start, line.indexOf('"', start)));
+            });
+    assertEquals(count, shortUrls.size());
+    return shortUrls;
+  }
+
+  private class Workload {
+
+    private final List<String> shortUrls;
+    private final ZipfianGenerator zipfianGenerator;
+    private final double createRatio;
+    private final AtomicLong errors = new AtomicLong();
+    private Histogram creates = newHistogram();
+    private Histogram redirects = newHistogram();
+
+    private Workload(
+        List<String> shortUrls, ZipfianGenerator zipfianGenerator, double createRatio) {
+      this.shortUrls = shortUrls;
+      this.zipfianGenerator = zipfianGenerator;
+      this.createRatio = createRatio;
+    }
+
+    private void execute(long intendedStart) {
+      boolean create = ThreadLocalRandom.current().nextDouble() < createRatio;
+      HttpRequest request =
+          create
+              ? HttpRequest.newBuilder(URI.create(baseUrl + "/tiny-url"))
+                  .header("Content-Type", "application/json")
+                  .POST(
+                      HttpRequest.BodyPublishers.ofString(
+                          "{\"originalUrl\":\"https://www.example.com/new\"}"))
+                  .build()
+              : HttpRequest.newBuilder(
+                      URI.create(baseUrl + "/" + shortUrls.get(zipfianGenerator.next())))
+                  .GET()
+                  .build();
+      try {
+        HttpResponse<Void> response =
+            httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != (create ? 200 : 302)) {
+          errors.incrementAndGet();
+        }
+      } catch (IOException | InterruptedException e) {
+        errors.incrementAndGet();
+      }
+      long latency = Math.min(System.nanoTime() - intendedStart, HIGHEST_TRACKABLE_NANOS);
+      (create ? creates : redirects).recordValue(latency);
+    }
+
+    private void reset() {
+      creates = newHistogram();
+      redirects = newHistogram();
+      errors.set(0);
+    }
+
+    private String report(long elapsedNanos, int rate) {
+      double seconds = elapsedNanos / 1e9;
+      return String.format(
+          "target rate %d/s, achieved %.0f/s over %.1f s, %d errors%n%s%n%s",
+          rate,
+          (creates.getTotalCount() + redirects.getTotalCount()) / seconds,
+          seconds,
+          errors.get(),
+          summary("redirect", redirects, seconds),
+          summary("create", creates, seconds));
+    }
+
+    private String summary(String name, Histogram histogram, double seconds) {
+      return String.format(
+          "%-8s %8d requests %8.0f/s  p50 %8.2f ms  p99 %8.2f ms  p99.9 %8.2f ms  max %8.2f ms",
+          name,
+          histogram.getTotalCount(),
+          histogram.getTotalCount() / seconds,
+          histogram.getValueAtPercentile(50) / 1e6,
+          histogram.getValueAtPercentile(99) / 1e6,
+          histogram.getValueAtPercentile(99.9) / 1e6,
+          histogram.getMaxValue() / 1e6);
+    }
+
+    private Histogram newHistogram() {
+      return new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      return serverSocket.getLocalPort();
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.azimbabu.tinyurlservice.load;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws indexes in {@code [0, n)} where index {@code i} has probability proportional to {@code
+ * 1 / (i + 1) ^ exponent}, so index 0 is the hottest key. Sampling is a binary search over the
+ * precomputed cumulative distribution.
+ */
+public class ZipfianGenerator {
+
+  private final double[] cdf;
+
+  public ZipfianGenerator(int n, double exponent) {
+    cdf = new double[n];
+    double sum = 0;
+    for (int i = 0; i < n; i++) {
+      sum += 1 / Math.pow(i + 1, exponent);
+      cdf[i] = sum;
+    }
+    for (int i = 0; i < n; i++) {
+      cdf[i] /= sum;
+    }
+  }
+
+  public int next() {
+    int index = Arrays.binarySearch(cdf, ThreadLocalRandom.current().nextDouble());
+    return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+  }
+}
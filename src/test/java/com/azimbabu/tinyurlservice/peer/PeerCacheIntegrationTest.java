@@ -0,0 +1,189 @@
+package com.azimbabu.tinyurlservice.peer;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import com.azimbabu.tinyurlservice.model.UserUDT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Three peer caches talking to each other over localhost, each backed by a counting lookup. */
+public class PeerCacheIntegrationTest {
+
+  private static final int NODES = 3;
+
+  private final Map<String, TinyUrl> tinyUrls = new ConcurrentHashMap<>();
+  private final List<AtomicInteger> lookups = new ArrayList<>();
+  private final List<Set<String>> invalidated = new ArrayList<>();
+  private final List<PeerCacheServer> servers = new ArrayList<>();
+  private final List<String> addresses = new ArrayList<>();
+  private final List<PeerCache> peerCaches = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    for (int i = 0; i < NODES; i++) {
+      AtomicInteger counter = new AtomicInteger();
+      lookups.add(counter);
+      Set<String> invalidatedKeys = ConcurrentHashMap.newKeySet();
+      invalidated.add(invalidatedKeys);
+      PeerCacheServer server =
+          new PeerCacheServer(
+              "localhost",
+              0,
+              16,
+              shortUrl -> {
+                counter.incrementAndGet();
+                if (shortUrl.startsWith("broken")) {
+                  throw new IllegalStateException("Cassandra is down");
+                }
+                return Optional.ofNullable(tinyUrls.get(shortUrl));
+              },
+              invalidatedKeys::add);
+      servers.add(server);
+      addresses.add("localhost:" + server.getPort());
+    }
+    for (String address : addresses) {
+      peerCaches.add(
+          new PeerCache(
+              TinyUrlProperties.builder()
+                  .peerCacheSelf(address)
+                  .peerCachePeers(addresses)
+                  .peerCacheTimeoutInMs(1000)
+                  .peerCacheDownIntervalInMs(60000L)
+                  .peerCacheMaxConnections(4)
+                  .peerCacheNearMaximumSize(100L)
+                  .peerCacheNearTtlInSeconds(60L)
+                  .build(),
+              new SimpleMeterRegistry()));
+    }
+
+    for (int i = 0; i < 30; i++) {
+      tinyUrls.put(
+          "key" + i,
+          TinyUrl.builder()
+              .shortUrl("key" + i)
+              .originalUrl("https://example.com/" + i)
+              .user(UserUDT.builder().username("user" + i).build())
+              .createdAt(new Date(1000L * i))
+              .build());
+    }
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    peerCaches.forEach(PeerCache::close);
+    for (PeerCacheServer server : servers) {
+      server.close();
+    }
+  }
+
+  @Test
+  void fetchesFromOwner() {
+    for (int i = 0; i < 30; i++) {
+      String shortUrl = "key" + i;
+      int owner = ownerOf(shortUrl);
+      int ownerLookups = lookups.get(owner).get();
+      for (int node = 0; node < NODES; node++) {
+        PeerCache peerCache = peerCaches.get(node);
+        assertEquals(node == owner, peerCache.isOwner(shortUrl));
+        if (node != owner) {
+          PeerLookup lookup = peerCache.fetch(shortUrl);
+          assertTrue(lookup.isAnswered());
+          assertEquals(tinyUrls.get(shortUrl), lookup.getTinyUrl().get());
+          // answered by the near cache the second time
+          assertEquals(lookup.getTinyUrl(), peerCache.fetch(shortUrl).getTinyUrl());
+        }
+      }
+      assertEquals(ownerLookups + NODES - 1, lookups.get(owner).get());
+    }
+  }
+
+  @Test
+  void fetchesMissingKey() {
+    String shortUrl = keyNotOwnedBy(0, "missing");
+    PeerLookup lookup = peerCaches.get(0).fetch(shortUrl);
+
+    assertTrue(lookup.isAnswered());
+    assertEquals(Optional.empty(), lookup.getTinyUrl());
+    // misses aren't kept in the near cache, the owner is asked again
+    int ownerLookups = lookups.get(ownerOf(shortUrl)).get();
+    peerCaches.get(0).fetch(shortUrl);
+    assertEquals(ownerLookups + 1, lookups.get(ownerOf(shortUrl)).get());
+  }
+
+  @Test
+  void invalidatesOnOwner() {
+    String shortUrl = keyNotOwnedBy(0, "created");
+
+    peerCaches.get(0).invalidate(shortUrl);
+
+    assertTimeoutPreemptively(
+        Duration.ofSeconds(5),
+        () -> {
+          while (!invalidated.get(ownerOf(shortUrl)).contains(shortUrl)) {
+            Thread.sleep(10);
+          }
+        });
+  }
+
+  @Test
+  void fallsBackWhenOwnerFails() throws IOException {
+    String shortUrl = keyNotOwnedBy(0, "broken");
+    assertFalse(peerCaches.get(0).fetch(shortUrl).isAnswered());
+
+    shortUrl = keyNotOwnedBy(0, "key");
+    servers.get(ownerOf(shortUrl)).close();
+    assertFalse(peerCaches.get(0).fetch(shortUrl).isAnswered());
+  }
+
+  @Test
+  void rejectsConnectionsOverCap() throws IOException {
+    PeerCacheServer server =
+        new PeerCacheServer("localhost", 0, 1, shortUrl -> Optional.empty(), shortUrl -> {});
+    servers.add(server);
+
+    try (Socket first = new Socket("localhost", server.getPort());
+        Socket second = new Socket("localhost", server.getPort())) {
+      first.setSoTimeout(5000);
+      second.setSoTimeout(5000);
+      DataOutputStream out = new DataOutputStream(first.getOutputStream());
+      DataInputStream in = new DataInputStream(first.getInputStream());
+
+      // the second connection is closed right away, the first one is still served
+      assertEquals(-1, second.getInputStream().read());
+      PeerProtocol.writeRequest(out, "key0");
+      out.flush();
+      assertTrue(PeerProtocol.readResponse(in, "key0").isAnswered());
+    }
+  }
+
+  private int ownerOf(String shortUrl) {
+    return addresses.indexOf(new RendezvousHash(addresses).ownerOf(shortUrl));
+  }
+
+  private String keyNotOwnedBy(int node, String prefix) {
+    for (int i = 0; ; i++) {
+      String shortUrl = prefix + i;
+      if (ownerOf(shortUrl) != node) {
+        return shortUrl;
+      }
+    }
+  }
+}
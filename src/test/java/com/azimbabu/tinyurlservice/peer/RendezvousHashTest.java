@@ -0,0 +1,49 @@
+package com.azimbabu.tinyurlservice.peer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RendezvousHashTest {
+
+  private static final int KEYS = 30000;
+
+  private final RendezvousHash rendezvousHash =
+      new RendezvousHash(Arrays.asList("node-a:7070", "node-b:7070", "node-c:7070"));
+
+  @Test
+  void spreadsKeysEvenly() {
+    Map<String, Integer> counts = new HashMap<>();
+    for (int i = 0; i < KEYS; i++) {
+      counts.merge(rendezvousHash.ownerOf("key" + i), 1, Integer::sum);
+    }
+
+    assertEquals(3, counts.size());
+    counts.values().forEach(count -> assertTrue(Math.abs(count - KEYS / 3) < KEYS / 30));
+  }
+
+  @Test
+  void movesOnlyKeysOfRemovedNode() {
+    RendezvousHash withoutC = new RendezvousHash(Arrays.asList("node-a:7070", "node-b:7070"));
+    for (int i = 0; i < KEYS; i++) {
+      String key = "key" + i;
+      String owner = rendezvousHash.ownerOf(key);
+      if (!owner.equals("node-c:7070")) {
+        assertEquals(owner, withoutC.ownerOf(key));
+      }
+    }
+  }
+
+  @Test
+  void ignoresNodeOrder() {
+    RendezvousHash reordered =
+        new RendezvousHash(Arrays.asList("node-c:7070", "node-a:7070", "node-b:7070"));
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(rendezvousHash.ownerOf("key" + i), reordered.ownerOf("key" + i));
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package com.azimbabu.tinyurlservice.repository;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.Redirect;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import com.azimbabu.tinyurlservice.model.UserUDT;
+import com.datastax.driver.core.Session;
+import info.archinnov.achilles.internals.runtime.AbstractManagerFactory;
+import info.archinnov.achilles.junit.AchillesTestResource;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+
+import static com.azimbabu.tinyurlservice.config.CassandraTestUtils.embeddedCassandra;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TinyUrlDaoTest {
+
+  private static final int TTL_IN_SECONDS = 3600;
+
+  private static Session session;
+
+  private static TinyUrlDao tinyUrlDao;
+
+  @BeforeAll
+  static void setUp() {
+    AchillesTestResource<AbstractManagerFactory> cassandra = embeddedCassandra();
+    session = cassandra.getNativeSession();
+    tinyUrlDao =
+        new TinyUrlDao(
+            session,
+            TinyUrlProperties.builder()
+                .lookupConsistencyLevel("ONE")
+                .claimConsistencyLevel("ONE")
+                .claimSerialConsistencyLevel("SERIAL")
+                .build());
+  }
+
+  @Test
+  void insertAndFind() {
+    TinyUrl tinyUrl = buildTinyUrl("dao0001", "myalias", Instant.now().plus(Duration.ofHours(1)));
+
+    assertTrue(tinyUrlDao.insertIfNotExists(tinyUrl, TTL_IN_SECONDS));
+
+    assertEquals(Optional.of(tinyUrl), tinyUrlDao.findByShortUrl("dao0001"));
+    assertEquals(tinyUrl, tinyUrlDao.findByShortUrlAsync("dao0001").block());
+    int ttl =
+        session
+            .execute("SELECT TTL(originalurl) FROM tiny_url WHERE shorturl = ?", "dao0001")
+            .one()
+            .getInt(0);
+    assertTrue(ttl > 0 && ttl <= TTL_IN_SECONDS);
+  }
+
+  @Test
+  void findRedirect() {
+    TinyUrl tinyUrl = buildTinyUrl("dao0004", null, Instant.now().plus(Duration.ofHours(1)));
+    assertTrue(tinyUrlDao.insertIfNotExists(tinyUrl, null));
+
+    assertEquals(Optional.of(Redirect.of(tinyUrl)), tinyUrlDao.findRedirect("dao0004"));
+    assertEquals(Redirect.of(tinyUrl), tinyUrlDao.findRedirectAsync("dao0004").block());
+    assertFalse(tinyUrlDao.findRedirect("dao0000").isPresent());
+    assertNull(tinyUrlDao.findRedirectAsync("dao0000").block());
+  }
+
+  @Test
+  void insertTakenShortUrl() {
+    TinyUrl tinyUrl = buildTinyUrl("dao0002", null, Instant.now().plus(Duration.ofHours(1)));
+    assertTrue(tinyUrlDao.insertIfNotExists(tinyUrl, null));
+
+    TinyUrl other = tinyUrl.toBuilder().originalUrl("http://www.other.com").build();
+
+    assertFalse(tinyUrlDao.insertIfNotExistsAsync(other, null).block());
+    assertEquals(Optional.of(tinyUrl), tinyUrlDao.findByShortUrl("dao0002"));
+  }
+
+  @Test
+  void findMissingShortUrl() {
+    assertFalse(tinyUrlDao.findByShortUrl("dao0000").isPresent());
+    assertNull(tinyUrlDao.findByShortUrlAsync("dao0000").block());
+  }
+
+  @Test
+  void replaceIfExpiredAt() {
+    TinyUrl expired = buildTinyUrl("dao0003", "dao0003", Instant.now().minusSeconds(60));
+    assertTrue(tinyUrlDao.insertIfNotExists(expired, null));
+    TinyUrl replacement =
+        TinyUrl.builder()
+            .shortUrl("dao0003")
+            .originalUrl("http://www.other.com")
+            .createdAt(new Date())
+            .expiredAt(Date.from(Instant.now().plus(Duration.ofHours(1))))
+            .build();
+
+    // the row changed since it was read
+    assertFalse(tinyUrlDao.replaceIfExpiredAt(replacement, new Date(), TTL_IN_SECONDS));
+    assertTrue(
+        tinyUrlDao.replaceIfExpiredAt(replacement, expired.getExpiredAt(), TTL_IN_SECONDS));
+    // the alias and user of the expired tiny url are cleared
+    assertEquals(Optional.of(replacement), tinyUrlDao.findByShortUrl("dao0003"));
+    // only one of two concurrent claims of the same expired row wins
+    assertFalse(
+        tinyUrlDao
+            .replaceIfExpiredAtAsync(replacement, expired.getExpiredAt(), TTL_IN_SECONDS)
+            .block());
+  }
+
+  private TinyUrl buildTinyUrl(String shortUrl, String customAlias, Instant expiredAt) {
+    return TinyUrl.builder()
+        .shortUrl(shortUrl)
+        .originalUrl("http://www.test.com")
+        .customAlias(customAlias)
+        .createdAt(new Date())
+        .expiredAt(Date.from(expiredAt))
+        .user(UserUDT.builder().username("testuser").build())
+        .build();
+  }
+}
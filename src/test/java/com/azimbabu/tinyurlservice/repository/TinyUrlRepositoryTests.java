@@ -6,11 +6,13 @@ import org.junit.Rule;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
 
 import static com.azimbabu.tinyurlservice.config.CassandraTestUtils.embeddedCassandra;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 
 @SpringBootTest
+@ActiveProfiles("dev")
 public class TinyUrlRepositoryTests {
 
   @Autowired
@@ -0,0 +1,87 @@
+package com.azimbabu.tinyurlservice.service;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.cql.CqlOperations;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ShortKeyAllocatorTest {
+
+  private CqlOperations cqlOperations;
+
+  private Row row;
+
+  private ShortKeyAllocator shortKeyAllocator;
+
+  @BeforeEach
+  void setUp() {
+    cqlOperations = mock(CqlOperations.class);
+    row = mock(Row.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    doReturn(row).when(resultSet).one();
+    doReturn(resultSet).when(cqlOperations).queryForResultSet(anyString(), any());
+
+    CassandraOperations cassandraOperations = mock(CassandraOperations.class);
+    doReturn(cqlOperations).when(cassandraOperations).getCqlOperations();
+    shortKeyAllocator =
+        new ShortKeyAllocator(
+            cassandraOperations,
+            TinyUrlProperties.builder()
+                .shortUrlLength(7)
+                .keySecret("secret")
+                .keyRangeSize(10)
+                .keyRangeRefillThreshold(2)
+                .keyRangeLeaseTimeoutInMs(5000L)
+                .build());
+  }
+
+  @AfterEach
+  void tearDown() {
+    shortKeyAllocator.shutdown();
+  }
+
+  @Test
+  void nextIdFromLeasedBlock() {
+    doReturn(100L).when(row).getLong("nextvalue");
+    doReturn(true).when(cqlOperations).execute(anyString(), eq(110L), anyString(), eq(100L));
+
+    for (long id = 100; id < 105; id++) {
+      assertEquals(id, shortKeyAllocator.nextId());
+    }
+  }
+
+  @Test
+  void nextIdRetriesLostLease() {
+    doReturn(100L, 110L).when(row).getLong("nextvalue");
+    doReturn(false).when(cqlOperations).execute(anyString(), eq(110L), anyString(), eq(100L));
+    doReturn(true).when(cqlOperations).execute(anyString(), eq(120L), anyString(), eq(110L));
+
+    assertEquals(110, shortKeyAllocator.nextId());
+  }
+
+  @Test
+  void nextIdLeaseUnavailable() {
+    doReturn(100L).when(row).getLong("nextvalue");
+    doReturn(false).when(cqlOperations).execute(anyString(), any(), any(), any());
+
+    ServiceException e = assertThrows(ServiceException.class, shortKeyAllocator::nextId);
+    assertEquals(ErrorCode.KEY_RANGE_UNAVAILABLE, e.getErrorCode());
+  }
+
+  @Test
+  void nextIdKeySpaceExhausted() {
+    doReturn(ShortKeyCodec.keySpace(7)).when(row).getLong("nextvalue");
+
+    ServiceException e = assertThrows(ServiceException.class, shortKeyAllocator::nextId);
+    assertEquals(ErrorCode.KEY_RANGE_EXHAUSTED, e.getErrorCode());
+  }
+}
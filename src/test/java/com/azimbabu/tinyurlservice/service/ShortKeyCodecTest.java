@@ -0,0 +1,94 @@
+package com.azimbabu.tinyurlservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShortKeyCodecTest {
+
+  private final ShortKeyCodec shortKeyCodec = new ShortKeyCodec(7, "secret");
+
+  @Test
+  void encodeDecode() {
+    long value = 3_000_000_000_000L;
+    String key = shortKeyCodec.encode(value);
+
+    assertEquals(7, key.length());
+    assertEquals(value, shortKeyCodec.decode(key));
+    assertEquals("aaaaaaa", shortKeyCodec.encode(0));
+    assertEquals("9999999", shortKeyCodec.encode(shortKeyCodec.getKeySpace() - 1));
+  }
+
+  @Test
+  void decodeInvalidKey() {
+    assertEquals(-1, shortKeyCodec.decode(null));
+    assertEquals(-1, shortKeyCodec.decode("abc"));
+    assertEquals(-1, shortKeyCodec.decode("abc-123"));
+  }
+
+  @Test
+  void encodeIdDecodeId() {
+    for (long id = 0; id < 1000; id++) {
+      assertEquals(id, shortKeyCodec.decodeId(shortKeyCodec.encodeId(id)));
+    }
+  }
+
+  @Test
+  void permutationIsBijective() {
+    ShortKeyCodec smallCodec = new ShortKeyCodec(2, "secret");
+    Set<Long> values = new HashSet<>();
+    for (long id = 0; id < smallCodec.getKeySpace(); id++) {
+      long value = smallCodec.permute(id);
+      assertTrue(value >= 0 && value < smallCodec.getKeySpace());
+      assertTrue(values.add(value));
+    }
+  }
+
+  @Test
+  void consecutiveIdsAreNotSequentialKeys() {
+    long first = shortKeyCodec.permute(100);
+    long second = shortKeyCodec.permute(101);
+    assertNotEquals(1, Math.abs(second - first));
+  }
+
+  @Test
+  void randomKeys() {
+    Set<String> keys = new HashSet<>();
+    for (int i = 0; i < 10_000; i++) {
+      String key = shortKeyCodec.randomKey();
+      assertTrue(shortKeyCodec.decode(key) >= 0);
+      keys.add(key);
+    }
+    assertEquals(10_000, keys.size());
+  }
+
+  @Test
+  void checkDigits() {
+    ShortKeyCodec checkedCodec = new ShortKeyCodec(7, 2, "secret");
+    assertEquals(ShortKeyCodec.keySpace(5), checkedCodec.getKeySpace());
+
+    for (long id = 0; id < 1000; id++) {
+      String key = checkedCodec.encodeId(id);
+      assertEquals(7, key.length());
+      assertTrue(checkedCodec.isValid(key));
+      assertEquals(id, checkedCodec.decodeId(key));
+    }
+
+    // changing a check digit or the secret invalidates the key
+    String key = checkedCodec.encodeId(42);
+    char last = key.charAt(6);
+    String tampered = key.substring(0, 6) + (last == 'a' ? 'b' : 'a');
+    assertFalse(checkedCodec.isValid(tampered));
+    assertFalse(new ShortKeyCodec(7, 2, "other").isValid(key));
+    assertTrue(checkedCodec.hasKeyFormat(tampered));
+    assertFalse(checkedCodec.hasKeyFormat("abc-123"));
+  }
+
+  @Test
+  void lengthOutOfRange() {
+    assertThrows(IllegalArgumentException.class, () -> new ShortKeyCodec(11, "secret"));
+  }
+}
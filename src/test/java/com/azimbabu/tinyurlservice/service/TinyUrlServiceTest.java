@@ -1,24 +1,50 @@
 package com.azimbabu.tinyurlservice.service;
 
+import com.azimbabu.tinyurlservice.cache.RedirectTable;
+import com.azimbabu.tinyurlservice.cache.ShortUrlBloomFilter;
+import com.azimbabu.tinyurlservice.cache.TinyUrlCache;
+import com.azimbabu.tinyurlservice.cache.UserCache;
 import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.dto.TinyUrlRequest;
+import com.azimbabu.tinyurlservice.dto.UserLinksResponse;
+import com.azimbabu.tinyurlservice.model.LinkByUser;
+import com.azimbabu.tinyurlservice.model.Redirect;
 import com.azimbabu.tinyurlservice.model.TinyUrl;
+import com.azimbabu.tinyurlservice.model.UrlByHash;
 import com.azimbabu.tinyurlservice.model.User;
 import com.azimbabu.tinyurlservice.model.UserUDT;
+import com.azimbabu.tinyurlservice.peer.PeerCache;
+import com.azimbabu.tinyurlservice.peer.PeerLookup;
+import com.azimbabu.tinyurlservice.repository.LinkByUserRepository;
+import com.azimbabu.tinyurlservice.repository.ReactiveLinkByUserRepository;
+import com.azimbabu.tinyurlservice.repository.ReactiveTinyUrlRepository;
+import com.azimbabu.tinyurlservice.repository.ReactiveUrlByHashRepository;
 import com.azimbabu.tinyurlservice.repository.TinyUrlRepository;
+import com.azimbabu.tinyurlservice.repository.UrlByHashRepository;
 import com.azimbabu.tinyurlservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.springframework.data.domain.SliceImpl;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -27,17 +53,59 @@ public class TinyUrlServiceTest {
 
   @Mock private TinyUrlRepository tinyUrlRepository;
 
+  @Mock private ReactiveTinyUrlRepository reactiveTinyUrlRepository;
+
+  @Mock private LinkByUserRepository linkByUserRepository;
+
+  @Mock private ReactiveLinkByUserRepository reactiveLinkByUserRepository;
+
   @Mock private UserRepository userRepository;
 
+  @Mock private ShortKeyAllocator shortKeyAllocator;
+
   private TinyUrlProperties tinyUrlProperties;
 
+  private SimpleMeterRegistry meterRegistry;
+
+  private Optional<RedirectTable> redirectTable = Optional.empty();
+
+  private Optional<ShortUrlBloomFilter> shortUrlBloomFilter = Optional.empty();
+
+  private Optional<UrlDeduplicator> urlDeduplicator = Optional.empty();
+
+  private Optional<PeerCache> peerCache = Optional.empty();
+
   private TinyUrlService tinyUrlService;
 
   @BeforeEach
   void setUp() {
     initMocks(this);
-    tinyUrlProperties = buildTinyUrlProperties();
-    tinyUrlService = new TinyUrlService(tinyUrlRepository, userRepository, tinyUrlProperties);
+    doReturn(Mono.empty()).when(reactiveLinkByUserRepository).insert(any(LinkByUser.class), any());
+    meterRegistry = new SimpleMeterRegistry();
+    createService(buildTinyUrlProperties());
+  }
+
+  /**
+   * Builds the service under test with the optional components set on this test. The only call of
+   * the service constructor, so a new constructor argument is added here and nowhere else.
+   */
+  private void createService(TinyUrlProperties tinyUrlProperties) {
+    this.tinyUrlProperties = tinyUrlProperties;
+    tinyUrlService =
+        new TinyUrlService(
+            tinyUrlRepository,
+            reactiveTinyUrlRepository,
+            linkByUserRepository,
+            reactiveLinkByUserRepository,
+            new UserCache(userRepository, tinyUrlProperties, new SimpleMeterRegistry()),
+            tinyUrlProperties,
+            shortKeyAllocator,
+            new TinyUrlCache(tinyUrlProperties, new SimpleMeterRegistry()),
+            redirectTable,
+            shortUrlBloomFilter,
+            urlDeduplicator,
+            peerCache,
+            meterRegistry);
   }
 
   @Test
@@ -52,14 +120,81 @@ public class TinyUrlServiceTest {
         IllegalArgumentException.class, () -> tinyUrlService.createTinyUrl("", null, null, 500l));
   }
 
+  @Test
+  void negativeExpirationCheck() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> tinyUrlService.createTinyUrl("http://www.test.com", null, null, -1l));
+    verifyNoInteractions(tinyUrlRepository);
+  }
+
+  @Test
+  void zeroExpirationCheck() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> tinyUrlService.createTinyUrl("http://www.test.com", null, null, 0l));
+    verifyNoInteractions(tinyUrlRepository);
+  }
+
   @Test
   void customAliasCheck() {
     String customAlias = "abcd123";
     // custom alias exists
-    doReturn(Optional.of(mock(TinyUrl.class)))
+    doReturn(false).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
+    // Expecting service exception with CUSTOM_ALIAS_EXISTS error code
+    ServiceException exception =
+        assertThrows(
+            ServiceException.class,
+            () -> tinyUrlService.createTinyUrl("http://www.test.com", customAlias, null, 500l));
+    assertEquals(ErrorCode.CUSTOM_ALIAS_EXISTS, exception.getErrorCode());
+  }
+
+  @Test
+  void customAliasLiveNotReclaimed() {
+    String customAlias = "abcd123";
+    doReturn(false).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
+    doReturn(Optional.of(buildTinyUrl(customAlias, Instant.now().plusSeconds(60))))
         .when(tinyUrlRepository)
         .findByShortUrl(eq(customAlias));
-    // Expecting service exception with CUSTOM_ALIAS_EXISTS error code
+
+    ServiceException exception =
+        assertThrows(
+            ServiceException.class,
+            () -> tinyUrlService.createTinyUrl("http://www.test.com", customAlias, null, 500l));
+    assertEquals(ErrorCode.CUSTOM_ALIAS_EXISTS, exception.getErrorCode());
+    verify(tinyUrlRepository, never()).replaceIfExpiredAt(any(TinyUrl.class), any(), any());
+  }
+
+  @Test
+  void customAliasExpiredReclaimed() {
+    String customAlias = "abcd123";
+    Date expiredAt = Date.from(Instant.now().minusSeconds(60));
+    doReturn(false).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
+    doReturn(Optional.of(buildTinyUrl(customAlias, expiredAt.toInstant())))
+        .when(tinyUrlRepository)
+        .findByShortUrl(eq(customAlias));
+    doReturn(true)
+        .when(tinyUrlRepository)
+        .replaceIfExpiredAt(any(TinyUrl.class), eq(expiredAt), any());
+
+    TinyUrl tinyUrl =
+        tinyUrlService.createTinyUrl("http://www.test.com/new", customAlias, null, 500l);
+
+    assertEquals(customAlias, tinyUrl.getShortUrl());
+    assertEquals("http://www.test.com/new", tinyUrl.getOriginalUrl());
+    assertEquals(Optional.of(tinyUrl), tinyUrlService.getTinyUrlByShortUrl(customAlias));
+  }
+
+  @Test
+  void customAliasExpiredReclaimedConcurrently() {
+    String customAlias = "abcd123";
+    doReturn(false).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
+    doReturn(Optional.of(buildTinyUrl(customAlias, Instant.now().minusSeconds(60))))
+        .when(tinyUrlRepository)
+        .findByShortUrl(eq(customAlias));
+    // another request replaced the expired row first
+    doReturn(false).when(tinyUrlRepository).replaceIfExpiredAt(any(TinyUrl.class), any(), any());
+
     ServiceException exception =
         assertThrows(
             ServiceException.class,
@@ -85,10 +220,7 @@ public class TinyUrlServiceTest {
     String customAlias = "abcd123";
 
     // custom alias doesn't exist
-    doReturn(Optional.empty()).when(tinyUrlRepository).findByShortUrl(eq(customAlias));
-
-    // mock saving
-    doAnswer(returnsFirstArg()).when(tinyUrlRepository).save(any(TinyUrl.class));
+    doReturn(true).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
 
     TinyUrl tinyUrl = tinyUrlService.createTinyUrl(originalUrl, customAlias, null, 500l);
 
@@ -101,12 +233,26 @@ public class TinyUrlServiceTest {
     assertNull(tinyUrl.getUser());
   }
 
+  @Test
+  void createTinyUrlReplacesRedirect() {
+    RedirectTable table = mock(RedirectTable.class);
+    redirectTable = Optional.of(table);
+    createService(tinyUrlProperties);
+    doReturn(true).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
+
+    TinyUrl tinyUrl = tinyUrlService.createTinyUrl("http://www.test.com", "abcd123", null, 500l);
+
+    // verify that a redirect left from a previous tiny url of the key is replaced
+    verify(table).invalidate(eq("abcd123"));
+    verify(table).put(eq("abcd123"), eq(Redirect.of(tinyUrl)));
+  }
+
   @Test
   void buildShortUrl() {
     String originalUrl = "http://www.test.com";
 
     // mock saving
-    doAnswer(returnsFirstArg()).when(tinyUrlRepository).save(any(TinyUrl.class));
+    doReturn(true).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
 
     TinyUrl tinyUrl = tinyUrlService.createTinyUrl(originalUrl, null, null, 500l);
 
@@ -128,7 +274,7 @@ public class TinyUrlServiceTest {
     User user = buildUser(username);
     doReturn(Optional.of(user)).when(userRepository).findByUsername(eq(username));
     // mock saving
-    doAnswer(returnsFirstArg()).when(tinyUrlRepository).save(any(TinyUrl.class));
+    doReturn(true).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
 
     TinyUrl tinyUrl = tinyUrlService.createTinyUrl(originalUrl, null, username, 500l);
 
@@ -142,8 +288,39 @@ public class TinyUrlServiceTest {
     UserUDT tinyUrlUser = tinyUrl.getUser();
     assertNotNull(tinyUrlUser);
     assertEquals(user.getUsername(), tinyUrlUser.getUsername());
-    assertEquals(user.getEmail(), tinyUrlUser.getEmail());
-    assertEquals(user.getLastLoginDate(), tinyUrlUser.getLastLoginDate());
+
+    // verify that the tiny url is added to the links of its owner
+    verify(linkByUserRepository)
+        .insert(
+            argThat(
+                link ->
+                    username.equals(link.getUsername())
+                        && tinyUrl.getShortUrl().equals(link.getShortUrl())),
+            any());
+  }
+
+  @Test
+  void saveWithCachedUser() {
+    String username = "testuser@gmail.com";
+    doReturn(Optional.of(buildUser(username))).when(userRepository).findByUsername(eq(username));
+    doReturn(true).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
+
+    tinyUrlService.createTinyUrl("http://www.test.com/1", null, username, 500l);
+    tinyUrlService.createTinyUrl("http://www.test.com/2", null, username, 500l);
+
+    // verify that the owner is read once for both tiny urls
+    verify(userRepository, times(1)).findByUsername(eq(username));
+  }
+
+  @Test
+  void saveWithUnknownUser() {
+    String username = "unknown@gmail.com";
+    doReturn(Optional.empty()).when(userRepository).findByUsername(eq(username));
+    doReturn(true).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
+
+    TinyUrl tinyUrl = tinyUrlService.createTinyUrl("http://www.test.com", null, username, 500l);
+
+    assertNull(tinyUrl.getUser());
   }
 
   @Test
@@ -153,7 +330,7 @@ public class TinyUrlServiceTest {
     int days = 7;
 
     // mock saving
-    doAnswer(returnsFirstArg()).when(tinyUrlRepository).save(any(TinyUrl.class));
+    doReturn(true).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
 
     TinyUrl tinyUrl =
         tinyUrlService.createTinyUrl(originalUrl, null, null, Duration.ofDays(days).getSeconds());
@@ -175,7 +352,7 @@ public class TinyUrlServiceTest {
     Instant now = Instant.now();
 
     // mock saving
-    doAnswer(returnsFirstArg()).when(tinyUrlRepository).save(any(TinyUrl.class));
+    doReturn(true).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
 
     TinyUrl tinyUrl = tinyUrlService.createTinyUrl(originalUrl, null, null, null);
 
@@ -199,7 +376,7 @@ public class TinyUrlServiceTest {
     int days = 700;
 
     // mock saving
-    doAnswer(returnsFirstArg()).when(tinyUrlRepository).save(any(TinyUrl.class));
+    doReturn(true).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
 
     TinyUrl tinyUrl =
         tinyUrlService.createTinyUrl(originalUrl, null, null, Duration.ofDays(days).getSeconds());
@@ -223,14 +400,11 @@ public class TinyUrlServiceTest {
 
     // mock the scenario that first and second generated short urls exist and third generated short
     // url doesn't exist.
-    doReturn(true)
-        .doReturn(true)
+    doReturn(false)
         .doReturn(false)
+        .doReturn(true)
         .when(tinyUrlRepository)
-        .existsByShortUrl(anyString());
-
-    // mock saving
-    doAnswer(returnsFirstArg()).when(tinyUrlRepository).save(any(TinyUrl.class));
+        .insertIfNotExists(any(TinyUrl.class), any());
 
     TinyUrl tinyUrl = tinyUrlService.createTinyUrl(originalUrl, null, null, 500l);
 
@@ -242,8 +416,8 @@ public class TinyUrlServiceTest {
     assertNotNull(tinyUrl.getExpiredAt());
     assertNull(tinyUrl.getUser());
 
-    // verify that existsByShortUrl is called 3 times
-    verify(tinyUrlRepository, times(3)).existsByShortUrl(anyString());
+    // verify that the short url is claimed 3 times
+    verify(tinyUrlRepository, times(3)).insertIfNotExists(any(TinyUrl.class), any());
   }
 
   @Test
@@ -251,13 +425,7 @@ public class TinyUrlServiceTest {
     String originalUrl = "http://www.test.com";
 
     // mock the scenario that all the retries are exhausted
-    doReturn(true)
-        .doReturn(true)
-        .doReturn(true)
-        .doReturn(true)
-        .doReturn(true)
-        .when(tinyUrlRepository)
-        .existsByShortUrl(anyString());
+    doReturn(false).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
 
     // Expecting service exception with CUSTOM_ALIAS_EXISTS error code
     ServiceException exception =
@@ -266,9 +434,33 @@ public class TinyUrlServiceTest {
             () -> tinyUrlService.createTinyUrl(originalUrl, null, null, 500l));
     assertEquals(ErrorCode.SHORT_URL_RETRY_EXHAUSTED, exception.getErrorCode());
 
-    // verify that existsByShortUrl is called 3 times
+    // verify that the short url is claimed max retry times
     verify(tinyUrlRepository, times(tinyUrlProperties.getMaxShortUrlRetry()))
-        .existsByShortUrl(anyString());
+        .insertIfNotExists(any(TinyUrl.class), any());
+    assertEquals(
+        (double) tinyUrlProperties.getMaxShortUrlRetry(),
+        meterRegistry.get("tinyurl.create.collisions").counter().count());
+    assertEquals(1, meterRegistry.get("tinyurl.create.retry.exhausted").counter().count());
+  }
+
+  @Test
+  void buildShortUrlFromKeyRange() {
+    tinyUrlProperties.setKeyRangeEnabled(true);
+
+    // mock two consecutive leased key ids
+    doReturn(41L).doReturn(42L).when(shortKeyAllocator).nextId();
+    // mock saving
+    doReturn(true).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
+
+    TinyUrl first = tinyUrlService.createTinyUrl("http://www.test.com", null, null, 500l);
+    TinyUrl second = tinyUrlService.createTinyUrl("http://www.test.com", null, null, 500l);
+
+    assertEquals(tinyUrlProperties.getShortUrlLength(), first.getShortUrl().length());
+    assertEquals(tinyUrlProperties.getShortUrlLength(), second.getShortUrl().length());
+    assertNotEquals(first.getShortUrl(), second.getShortUrl());
+
+    // verify that no existence check is made for leased keys
+    verify(tinyUrlRepository, never()).findByShortUrl(anyString());
   }
 
   @Test
@@ -295,6 +487,421 @@ public class TinyUrlServiceTest {
     assertTrue(tinyUrlService.getTinyUrlByShortUrl(shortUrl).isPresent());
   }
 
+  @Test
+  void getTinyUrlByShortUrlExpired() {
+    String shortUrl = "abc1234";
+    TinyUrl tinyUrl =
+        TinyUrl.builder()
+            .shortUrl(shortUrl)
+            .originalUrl("http://www.test.com")
+            .expiredAt(Date.from(Instant.now().minus(Duration.ofMinutes(1))))
+            .build();
+    doReturn(Optional.of(tinyUrl)).when(tinyUrlRepository).findByShortUrl(eq(shortUrl));
+
+    assertFalse(tinyUrlService.getTinyUrlByShortUrl(shortUrl).isPresent());
+    assertFalse(tinyUrlService.findRedirect(shortUrl).isPresent());
+  }
+
+  @Test
+  void saveWithStorageTtl() {
+    tinyUrlProperties.setStorageTtlEnabled(true);
+    int days = 7;
+
+    // mock saving with ttl
+    doReturn(true).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
+
+    TinyUrl tinyUrl =
+        tinyUrlService.createTinyUrl(
+            "http://www.test.com", null, null, Duration.ofDays(days).getSeconds());
+
+    assertNotNull(tinyUrl);
+    verify(tinyUrlRepository)
+        .insertIfNotExists(any(TinyUrl.class), eq((int) Duration.ofDays(days).getSeconds()));
+  }
+
+  @Test
+  void getTinyUrlByShortUrlCached() {
+    String shortUrl = "abc1234";
+    TinyUrl tinyUrl =
+        TinyUrl.builder()
+            .shortUrl(shortUrl)
+            .originalUrl("http://www.test.com")
+            .expiredAt(Date.from(Instant.now().plus(Duration.ofDays(1))))
+            .build();
+    doReturn(Optional.of(tinyUrl)).when(tinyUrlRepository).findByShortUrl(eq(shortUrl));
+
+    assertTrue(tinyUrlService.getTinyUrlByShortUrl(shortUrl).isPresent());
+    assertTrue(tinyUrlService.getTinyUrlByShortUrl(shortUrl).isPresent());
+
+    // verify that the second lookup is served from the cache
+    verify(tinyUrlRepository, times(1)).findByShortUrl(eq(shortUrl));
+  }
+
+  @Test
+  void getTinyUrlByShortUrlNotFoundCached() {
+    String shortUrl = "abc1234";
+    doReturn(Optional.empty()).when(tinyUrlRepository).findByShortUrl(eq(shortUrl));
+
+    assertFalse(tinyUrlService.getTinyUrlByShortUrl(shortUrl).isPresent());
+    assertFalse(tinyUrlService.getTinyUrlByShortUrl(shortUrl).isPresent());
+
+    // verify that the miss is cached as well
+    verify(tinyUrlRepository, times(1)).findByShortUrl(eq(shortUrl));
+  }
+
+  @Test
+  void getTinyUrlByShortUrlDefinitelyAbsent() {
+    ShortUrlBloomFilter bloomFilter = mock(ShortUrlBloomFilter.class);
+    doReturn(false).when(bloomFilter).mightContain(anyString());
+    shortUrlBloomFilter = Optional.of(bloomFilter);
+    createService(tinyUrlProperties);
+
+    assertFalse(tinyUrlService.getTinyUrlByShortUrl("abc1234").isPresent());
+    StepVerifier.create(tinyUrlService.findRedirectReactive("abc1234")).verifyComplete();
+
+    // verify that keys known to be absent never reach Cassandra
+    verifyNoInteractions(tinyUrlRepository, reactiveTinyUrlRepository);
+  }
+
+  @Test
+  void createTinyUrlAddsToBloomFilter() {
+    ShortUrlBloomFilter bloomFilter = mock(ShortUrlBloomFilter.class);
+    shortUrlBloomFilter = Optional.of(bloomFilter);
+    createService(tinyUrlProperties);
+    doReturn(true).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
+
+    TinyUrl tinyUrl = tinyUrlService.createTinyUrl("http://www.test.com", "abcd123", null, 500l);
+
+    // verify that a key created here is never reported absent before the next rebuild
+    verify(bloomFilter).put(eq(tinyUrl.getShortUrl()));
+  }
+
+  @Test
+  void getTinyUrlByShortUrlFromPeer() {
+    PeerCache peers = mock(PeerCache.class);
+    peerCache = Optional.of(peers);
+    createService(tinyUrlProperties);
+    TinyUrl tinyUrl =
+        TinyUrl.builder().shortUrl("abc1234").originalUrl("https://www.google.com").build();
+    doReturn(false).when(peers).isOwner(anyString());
+    doReturn(PeerLookup.answered(Optional.of(tinyUrl))).when(peers).fetch(eq("abc1234"));
+
+    assertEquals(tinyUrl, tinyUrlService.getTinyUrlByShortUrl("abc1234").get());
+    StepVerifier.create(tinyUrlService.getTinyUrlByShortUrlReactive("abc1234"))
+        .expectNext(tinyUrl)
+        .verifyComplete();
+    verifyNoInteractions(tinyUrlRepository, reactiveTinyUrlRepository);
+
+    // verify that keys whose owner is unavailable are looked up locally
+    doReturn(PeerLookup.unavailable()).when(peers).fetch(anyString());
+    doReturn(Optional.empty()).when(tinyUrlRepository).findByShortUrl(eq("def5678"));
+    assertFalse(tinyUrlService.getTinyUrlByShortUrl("def5678").isPresent());
+    verify(tinyUrlRepository, times(1)).findByShortUrl(eq("def5678"));
+    doReturn(Mono.just(tinyUrl.toBuilder().shortUrl("ghi9012").build()))
+        .when(reactiveTinyUrlRepository)
+        .findByShortUrl(eq("ghi9012"));
+    StepVerifier.create(tinyUrlService.getTinyUrlByShortUrlReactive("ghi9012"))
+        .expectNextCount(1)
+        .verifyComplete();
+  }
+
+  @Test
+  void createTinyUrlInvalidatesOwnerCache() {
+    PeerCache peers = mock(PeerCache.class);
+    peerCache = Optional.of(peers);
+    createService(tinyUrlProperties);
+    doReturn(false).when(peers).isOwner(anyString());
+    doReturn(true).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
+
+    TinyUrl tinyUrl = tinyUrlService.createTinyUrl("http://www.test.com", "abcd123", null, 500l);
+
+    // verify that a miss the owner cached before the create is dropped
+    verify(peers).invalidate(eq(tinyUrl.getShortUrl()));
+  }
+
+  @Test
+  void createTinyUrlDeduplicated() {
+    UrlByHashRepository urlByHashRepository = mock(UrlByHashRepository.class);
+    tinyUrlProperties.setDedupeWindowInSeconds(86400L);
+    urlDeduplicator =
+        Optional.of(
+            new UrlDeduplicator(
+                urlByHashRepository,
+                mock(ReactiveUrlByHashRepository.class),
+                tinyUrlProperties,
+                meterRegistry));
+    createService(tinyUrlProperties);
+    doReturn(true).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
+    doReturn(Optional.empty()).when(urlByHashRepository).findById(anyString());
+
+    TinyUrl created = tinyUrlService.createTinyUrl("http://www.test.com/a", null, null, null);
+
+    ArgumentCaptor<UrlByHash> indexed = ArgumentCaptor.forClass(UrlByHash.class);
+    verify(urlByHashRepository).insert(indexed.capture(), any());
+    assertEquals(created.getShortUrl(), indexed.getValue().getShortUrl());
+
+    // the same url, spelled differently, is answered from the index
+    doReturn(Optional.of(indexed.getValue()))
+        .when(urlByHashRepository)
+        .findById(eq(indexed.getValue().getHash()));
+    TinyUrl repeated = tinyUrlService.createTinyUrl("HTTP://WWW.test.com:80/a", null, null, null);
+
+    assertEquals(created.getShortUrl(), repeated.getShortUrl());
+    verify(tinyUrlRepository, times(1)).insertIfNotExists(any(TinyUrl.class), any());
+    assertEquals(1.0, meterRegistry.counter("tinyurl.create.deduplicated").count());
+  }
+
+  @Test
+  void findRedirectForgedKey() {
+    tinyUrlProperties.setKeyCheckEnabled(true);
+    tinyUrlProperties.setKeyCheckDigits(2);
+    createService(tinyUrlProperties);
+    ShortKeyCodec shortKeyCodec = ShortKeyCodec.of(tinyUrlProperties);
+    String key = shortKeyCodec.encodeId(42);
+    String forged = key.substring(0, 6) + (key.charAt(6) == 'a' ? 'b' : 'a');
+
+    assertFalse(tinyUrlService.findRedirect(forged).isPresent());
+    StepVerifier.create(tinyUrlService.findRedirectReactive(forged)).verifyComplete();
+    assertFalse(tinyUrlService.getTinyUrlByShortUrl(forged).isPresent());
+
+    // verify that forged keys never reach Cassandra
+    verifyNoInteractions(tinyUrlRepository, reactiveTinyUrlRepository);
+    assertEquals(3.0, meterRegistry.counter("tinyurl.lookup.forged").count());
+  }
+
+  @Test
+  void customAliasInKeyFormatWithKeyCheck() {
+    tinyUrlProperties.setKeyCheckEnabled(true);
+    tinyUrlProperties.setKeyCheckDigits(2);
+    createService(tinyUrlProperties);
+    doReturn(true).when(tinyUrlRepository).insertIfNotExists(any(TinyUrl.class), any());
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> tinyUrlService.createTinyUrl("http://www.test.com", "abcd123", null, 500l));
+    assertEquals(
+        "abc-123",
+        tinyUrlService.createTinyUrl("http://www.test.com", "abc-123", null, 500l).getShortUrl());
+    assertEquals(
+        "abc12",
+        tinyUrlService.createTinyUrl("http://www.test.com", "abc12", null, 500l).getShortUrl());
+  }
+
+  @Test
+  void findRedirectReactive() {
+    String shortUrl = "abc1234";
+    TinyUrl tinyUrl =
+        TinyUrl.builder()
+            .shortUrl(shortUrl)
+            .originalUrl("http://www.test.com")
+            .expiredAt(Date.from(Instant.now().plus(Duration.ofDays(1))))
+            .build();
+    doReturn(Mono.just(tinyUrl)).when(reactiveTinyUrlRepository).findByShortUrl(eq(shortUrl));
+
+    StepVerifier.create(tinyUrlService.findRedirectReactive(shortUrl))
+        .assertNext(redirect -> assertEquals(tinyUrl.getOriginalUrl(), redirect.getOriginalUrl()))
+        .verifyComplete();
+    // second lookup is served from the cache
+    StepVerifier.create(tinyUrlService.findRedirectReactive(shortUrl))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    verify(reactiveTinyUrlRepository, times(1)).findByShortUrl(eq(shortUrl));
+  }
+
+  @Test
+  void findRedirectReadsRedirectColumns() {
+    RedirectTable table = mock(RedirectTable.class);
+    redirectTable = Optional.of(table);
+    createService(tinyUrlProperties);
+    Redirect redirect =
+        new Redirect("http://www.test.com", Date.from(Instant.now().plus(Duration.ofDays(1))));
+    doReturn(Optional.of(redirect)).when(tinyUrlRepository).findRedirectByShortUrl(eq("abc1234"));
+    doReturn(Mono.just(redirect))
+        .when(reactiveTinyUrlRepository)
+        .findRedirectByShortUrl(eq("abc1234"));
+
+    assertEquals(Optional.of(redirect), tinyUrlService.findRedirect("abc1234"));
+    StepVerifier.create(tinyUrlService.findRedirectReactive("abc1234"))
+        .expectNext(redirect)
+        .verifyComplete();
+
+    // verify that the redirect table rather than the tiny url cache keeps the redirect
+    verify(table, times(2)).put(eq("abc1234"), eq(redirect));
+    verify(tinyUrlRepository, never()).findByShortUrl(anyString());
+    verify(reactiveTinyUrlRepository, never()).findByShortUrl(anyString());
+  }
+
+  @Test
+  void findRedirectNotFoundCachedWithRedirectTable() {
+    redirectTable = Optional.of(mock(RedirectTable.class));
+    createService(tinyUrlProperties);
+    doReturn(Optional.empty()).when(tinyUrlRepository).findRedirectByShortUrl(eq("abc1234"));
+
+    assertFalse(tinyUrlService.findRedirect("abc1234").isPresent());
+    assertFalse(tinyUrlService.findRedirect("abc1234").isPresent());
+    StepVerifier.create(tinyUrlService.findRedirectReactive("abc1234")).verifyComplete();
+
+    // verify that the miss is cached in the tiny url cache
+    verify(tinyUrlRepository, times(1)).findRedirectByShortUrl(eq("abc1234"));
+    verifyNoInteractions(reactiveTinyUrlRepository);
+  }
+
+  @Test
+  void findRedirectReactiveNotFound() {
+    String shortUrl = "abc1234";
+    doReturn(Mono.empty()).when(reactiveTinyUrlRepository).findByShortUrl(eq(shortUrl));
+
+    StepVerifier.create(tinyUrlService.findRedirectReactive(shortUrl)).verifyComplete();
+    StepVerifier.create(tinyUrlService.findRedirectReactive(shortUrl)).verifyComplete();
+
+    // verify that the miss is cached as well
+    verify(reactiveTinyUrlRepository, times(1)).findByShortUrl(eq(shortUrl));
+  }
+
+  @Test
+  void createTinyUrlsInBulk() {
+    String username = "testuser@gmail.com";
+    doReturn(Optional.of(buildUser(username))).when(userRepository).findByUsername(eq(username));
+    // first custom alias is taken, every other claim succeeds
+    doReturn(Mono.just(false))
+        .when(reactiveTinyUrlRepository)
+        .insertIfNotExists(argThat(tinyUrl -> "taken".equals(tinyUrl.getShortUrl())), any());
+    doReturn(Mono.just(true))
+        .when(reactiveTinyUrlRepository)
+        .insertIfNotExists(argThat(tinyUrl -> !"taken".equals(tinyUrl.getShortUrl())), any());
+    doReturn(Mono.just(buildTinyUrl("taken", Instant.now().plusSeconds(60))))
+        .when(reactiveTinyUrlRepository)
+        .findByShortUrl(eq("taken"));
+
+    Flux<TinyUrlRequest> requests =
+        Flux.just(
+            buildTinyUrlRequest("http://www.test.com/1", null),
+            buildTinyUrlRequest("http://www.test.com/2", "taken"),
+            buildTinyUrlRequest("", null),
+            buildTinyUrlRequest("http://www.test.com/4", "free"));
+
+    StepVerifier.create(tinyUrlService.createTinyUrls(requests, username, () -> true))
+        .assertNext(
+            response -> {
+              assertTrue(response.isSuccess());
+              assertEquals("http://www.test.com/1", response.getData().getOriginalUrl());
+              assertEquals(username, response.getData().getUser().getUsername());
+            })
+        .assertNext(
+            response -> assertEquals(ErrorCode.CUSTOM_ALIAS_EXISTS, response.getErrorCode()))
+        .assertNext(response -> assertEquals(ErrorCode.INVALID_REQUEST, response.getErrorCode()))
+        .assertNext(response -> assertEquals("free", response.getData().getShortUrl()))
+        .verifyComplete();
+
+    // verify that the owner is looked up once for the whole batch
+    verify(userRepository, times(1)).findByUsername(eq(username));
+  }
+
+  @Test
+  void createTinyUrlsRateLimited() {
+    doReturn(Mono.just(true))
+        .when(reactiveTinyUrlRepository)
+        .insertIfNotExists(any(TinyUrl.class), any());
+    // the client has tokens for two rows
+    AtomicInteger asked = new AtomicInteger();
+    BooleanSupplier rowPermit = () -> asked.incrementAndGet() <= 2;
+
+    Flux<TinyUrlRequest> requests =
+        Flux.just(
+            buildTinyUrlRequest("http://www.test.com/1", "alias1"),
+            buildTinyUrlRequest("http://www.test.com/2", "alias2"),
+            buildTinyUrlRequest("http://www.test.com/3", "alias3"),
+            buildTinyUrlRequest("http://www.test.com/4", "alias4"));
+
+    StepVerifier.create(tinyUrlService.createTinyUrls(requests, null, rowPermit))
+        .assertNext(response -> assertEquals("alias1", response.getData().getShortUrl()))
+        .assertNext(response -> assertEquals("alias2", response.getData().getShortUrl()))
+        .assertNext(response -> assertEquals(ErrorCode.RATE_LIMITED, response.getErrorCode()))
+        .assertNext(response -> assertEquals(ErrorCode.RATE_LIMITED, response.getErrorCode()))
+        .verifyComplete();
+
+    // verify that the rows after the first denied one neither take tokens nor reach Cassandra
+    assertEquals(3, asked.get());
+    verify(reactiveTinyUrlRepository, times(2)).insertIfNotExists(any(TinyUrl.class), any());
+  }
+
+  @Test
+  void getLinksByUserAcrossMonths() {
+    String username = "testuser@gmail.com";
+    YearMonth thisMonth = YearMonth.now(ZoneOffset.UTC);
+    int thisBucket = LinkByUser.bucketOf(thisMonth);
+    int lastBucket = LinkByUser.bucketOf(thisMonth.minusMonths(1));
+    User user = buildUser(username);
+    user.setCreatedAt(Date.from(Instant.now().minus(Duration.ofDays(400))));
+    doReturn(Optional.of(user)).when(userRepository).findByUsername(eq(username));
+    doReturn(new SliceImpl<>(List.of(buildLinkByUser(username, "abc1234"))))
+        .when(linkByUserRepository)
+        .findByUsernameAndBucket(eq(username), eq(thisBucket), any());
+    doReturn(new SliceImpl<>(List.of(buildLinkByUser(username, "xyz7890"))))
+        .when(linkByUserRepository)
+        .findByUsernameAndBucket(eq(username), eq(lastBucket), any());
+
+    UserLinksResponse page = tinyUrlService.getLinksByUser(username, null, 2);
+
+    assertEquals(2, page.getData().size());
+    assertEquals("abc1234", page.getData().get(0).getShortUrl());
+    assertEquals("xyz7890", page.getData().get(1).getShortUrl());
+    // the next page starts at the beginning of the month before
+    assertEquals(LinkByUser.bucketOf(thisMonth.minusMonths(2)) + ":", page.getNextPageToken());
+  }
+
+  @Test
+  void getLinksByUserStopsAtFirstBucket() {
+    String username = "testuser@gmail.com";
+    int thisBucket = LinkByUser.bucketOf(YearMonth.now(ZoneOffset.UTC));
+    // a user created this month
+    doReturn(Optional.of(buildUser(username))).when(userRepository).findByUsername(eq(username));
+    doReturn(new SliceImpl<>(List.of(buildLinkByUser(username, "abc1234"))))
+        .when(linkByUserRepository)
+        .findByUsernameAndBucket(eq(username), eq(thisBucket), any());
+
+    UserLinksResponse page = tinyUrlService.getLinksByUser(username, null, 20);
+
+    assertEquals(1, page.getData().size());
+    assertNull(page.getNextPageToken());
+    // verify that months before the user was created are never read
+    verify(linkByUserRepository, times(1)).findByUsernameAndBucket(anyString(), anyInt(), any());
+  }
+
+  @Test
+  void getLinksByUnknownUser() {
+    UserLinksResponse page = tinyUrlService.getLinksByUser("unknown@gmail.com", null, 20);
+
+    assertTrue(page.getData().isEmpty());
+    assertNull(page.getNextPageToken());
+    verifyNoInteractions(linkByUserRepository);
+  }
+
+  @Test
+  void getLinksByUserMalformedPageToken() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> tinyUrlService.getLinksByUser("testuser@gmail.com", "garbage", 20));
+  }
+
+  private TinyUrl buildTinyUrl(String shortUrl, Instant expiredAt) {
+    return TinyUrl.builder()
+        .shortUrl(shortUrl)
+        .customAlias(shortUrl)
+        .originalUrl("http://www.test.com/old")
+        .expiredAt(Date.from(expiredAt))
+        .build();
+  }
+
+  private LinkByUser buildLinkByUser(String username, String shortUrl) {
+    return LinkByUser.builder().username(username).shortUrl(shortUrl).createdAt(new Date()).build();
+  }
+
+  private TinyUrlRequest buildTinyUrlRequest(String originalUrl, String customAlias) {
+    return TinyUrlRequest.builder().originalUrl(originalUrl).customAlias(customAlias).build();
+  }
+
   private User buildUser(String username) {
     return User.builder()
         .username(username)
@@ -310,6 +917,12 @@ public class TinyUrlServiceTest {
         .maxShortUrlRetry(5)
         .maxUrlExpirationInDays(365)
         .defaultUrlExpirationInDays(30)
+        .bulkInFlightWindow(4)
+        .cacheMaximumSize(100L)
+        .cacheTtlInSeconds(60L)
+        .cacheNegativeTtlInSeconds(10L)
+        .userCacheMaximumSize(100L)
+        .userCacheTtlInSeconds(60L)
         .build();
   }
 }
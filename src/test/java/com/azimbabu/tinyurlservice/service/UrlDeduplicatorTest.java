@@ -0,0 +1,115 @@
+package com.azimbabu.tinyurlservice.service;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.TinyUrl;
+import com.azimbabu.tinyurlservice.model.UrlByHash;
+import com.azimbabu.tinyurlservice.repository.ReactiveUrlByHashRepository;
+import com.azimbabu.tinyurlservice.repository.UrlByHashRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class UrlDeduplicatorTest {
+
+  private static final Instant REQUESTED_EXPIRED_AT = Instant.now().plus(Duration.ofDays(30));
+
+  @Mock private UrlByHashRepository urlByHashRepository;
+
+  @Mock private ReactiveUrlByHashRepository reactiveUrlByHashRepository;
+
+  private UrlDeduplicator urlDeduplicator;
+
+  @BeforeEach
+  void setUp() {
+    initMocks(this);
+    urlDeduplicator =
+        new UrlDeduplicator(
+            urlByHashRepository,
+            reactiveUrlByHashRepository,
+            TinyUrlProperties.builder().dedupeWindowInSeconds(86400L).build(),
+            new SimpleMeterRegistry());
+  }
+
+  @Test
+  void normalize() {
+    assertEquals("http://www.test.com/a", UrlDeduplicator.normalize("HTTP://WWW.test.com:80/a"));
+    assertEquals("https://test.com/", UrlDeduplicator.normalize(" https://Test.com:443 "));
+    assertEquals(
+        "https://test.com:8443/Path?q=1#Frag",
+        UrlDeduplicator.normalize("https://test.com:8443/Path?q=1#Frag"));
+    assertEquals("not a url", UrlDeduplicator.normalize("not a url"));
+  }
+
+  @Test
+  void hash() {
+    String hash = UrlDeduplicator.hash("user", "http://www.test.com/a");
+
+    assertEquals(32, hash.length());
+    assertEquals(hash, UrlDeduplicator.hash("user", "http://WWW.TEST.COM/a"));
+    assertNotEquals(hash, UrlDeduplicator.hash("other", "http://www.test.com/a"));
+    assertNotEquals(hash, UrlDeduplicator.hash(null, "http://www.test.com/a"));
+    assertNotEquals(hash, UrlDeduplicator.hash("user", "http://www.test.com/A"));
+  }
+
+  @Test
+  void reuseWithinWindow() {
+    assertTrue(reusable(REQUESTED_EXPIRED_AT.minus(Duration.ofHours(23))));
+    assertTrue(reusable(REQUESTED_EXPIRED_AT.plus(Duration.ofHours(23))));
+  }
+
+  @Test
+  void noReuseOutsideWindow() {
+    assertFalse(reusable(REQUESTED_EXPIRED_AT.minus(Duration.ofDays(2))));
+    // a tiny url living much longer than requested is not handed out either
+    assertFalse(reusable(REQUESTED_EXPIRED_AT.plus(Duration.ofDays(300))));
+  }
+
+  @Test
+  void noReuseOfExpired() {
+    assertFalse(reusable(Instant.now().minusSeconds(1), Instant.now()));
+  }
+
+  @Test
+  void reuseOnlyBetweenNeverExpiring() {
+    assertTrue(reusable(null, null));
+    assertFalse(reusable(null, REQUESTED_EXPIRED_AT));
+    assertFalse(reusable(REQUESTED_EXPIRED_AT, null));
+  }
+
+  private boolean reusable(Instant expiredAt) {
+    return reusable(expiredAt, REQUESTED_EXPIRED_AT);
+  }
+
+  private boolean reusable(Instant expiredAt, Instant requestedExpiredAt) {
+    doReturn(
+            Optional.of(
+                UrlByHash.builder()
+                    .shortUrl("abc1234")
+                    .originalUrl("http://www.test.com/a")
+                    .expiredAt(expiredAt != null ? Date.from(expiredAt) : null)
+                    .build()))
+        .when(urlByHashRepository)
+        .findById(anyString());
+    return urlDeduplicator
+        .find(
+            TinyUrl.builder()
+                .originalUrl("http://www.test.com/a")
+                .expiredAt(requestedExpiredAt != null ? Date.from(requestedExpiredAt) : null)
+                .build())
+        .isPresent();
+  }
+}
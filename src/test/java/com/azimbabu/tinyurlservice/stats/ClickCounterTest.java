@@ -0,0 +1,141 @@
+package com.azimbabu.tinyurlservice.stats;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.LocalDate;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ClickCounterTest {
+
+  @Mock private Session session;
+
+  @Mock private PreparedStatement incrementClicks;
+
+  private ClickCounter clickCounter;
+
+  @BeforeEach
+  void setUp() {
+    initMocks(this);
+    doReturn(incrementClicks).when(session).prepare(anyString());
+    doAnswer(invocation -> mock(BoundStatement.class)).when(incrementClicks).bind(any());
+    doAnswer(invocation -> completedFuture()).when(session).executeAsync(any(Statement.class));
+    clickCounter =
+        new ClickCounter(session, TinyUrlProperties.builder().clickFlushMaxInFlight(2).build());
+  }
+
+  @Test
+  void drainCounts() {
+    long now = System.currentTimeMillis();
+    IntStream.range(0, 1000).parallel().forEach(i -> clickCounter.record("abc1234", now));
+    clickCounter.record("xyz7890", now);
+
+    Map<String, Map<LocalDate, Long>> clicks = clickCounter.drain();
+
+    LocalDate today = LocalDate.fromMillisSinceEpoch(now);
+    assertEquals(2, clicks.size());
+    assertEquals(Long.valueOf(1000), clicks.get("abc1234").get(today));
+    assertEquals(Long.valueOf(1), clicks.get("xyz7890").get(today));
+  }
+
+  @Test
+  void drainCountsByClickDay() {
+    long now = System.currentTimeMillis();
+    long yesterday = now - 86_400_000L;
+    clickCounter.record("abc1234", yesterday);
+    clickCounter.record("abc1234", now);
+    clickCounter.record("abc1234", yesterday);
+
+    Map<LocalDate, Long> clicks = clickCounter.drain().get("abc1234");
+
+    // verify that clicks are counted in their own day, not the day of the flush
+    assertEquals(Long.valueOf(2), clicks.get(LocalDate.fromMillisSinceEpoch(yesterday)));
+    assertEquals(Long.valueOf(1), clicks.get(LocalDate.fromMillisSinceEpoch(now)));
+  }
+
+  @Test
+  void flushBatchesPerPartition() {
+    long now = System.currentTimeMillis();
+    clickCounter.record("abc1234", now - 86_400_000L);
+    clickCounter.record("abc1234", now);
+    clickCounter.record("xyz7890", now);
+    clickCounter.record("pqr4567", now);
+
+    clickCounter.flush();
+
+    // verify that only the days of one short url share a batch
+    ArgumentCaptor<Statement> statements = ArgumentCaptor.forClass(Statement.class);
+    verify(session, times(3)).executeAsync(statements.capture());
+    List<Statement> written = statements.getAllValues();
+    assertEquals(1, written.stream().filter(BatchStatement.class::isInstance).count());
+    written.stream()
+        .filter(BatchStatement.class::isInstance)
+        .forEach(batch -> assertEquals(2, ((BatchStatement) batch).size()));
+    verify(incrementClicks).bind(eq(1L), eq("xyz7890"), any());
+    verify(incrementClicks).bind(eq(1L), eq("pqr4567"), any());
+  }
+
+  @Test
+  void drainResetsCounts() {
+    clickCounter.record("abc1234");
+    clickCounter.drain();
+
+    assertTrue(clickCounter.drain().isEmpty());
+  }
+
+  @Test
+  void flushFailureReleasesWrite() {
+    doThrow(new IllegalStateException("session closed"))
+        .when(session)
+        .executeAsync(any(Statement.class));
+    IntStream.range(0, 5).forEach(i -> clickCounter.record("abc123" + i));
+
+    // verify that failed writes don't hold on to their in-flight permits
+    assertTimeoutPreemptively(Duration.ofSeconds(5), clickCounter::flush);
+    verify(session, times(5)).executeAsync(any(Statement.class));
+  }
+
+  @Test
+  void flushWithoutClicks() {
+    clickCounter.flush();
+
+    // verify that nothing is written when there were no redirects
+    verify(session, never()).executeAsync(any(Statement.class));
+  }
+
+  private static ResultSetFuture completedFuture() throws Exception {
+    ResultSetFuture future = mock(ResultSetFuture.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    doReturn(true).when(future).isDone();
+    doReturn(resultSet).when(future).get();
+    doReturn(resultSet).when(future).getUninterruptibly();
+    doAnswer(
+            invocation -> {
+              invocation.<Executor>getArgument(1).execute(invocation.getArgument(0));
+              return null;
+            })
+        .when(future)
+        .addListener(any(Runnable.class), any(Executor.class));
+    return future;
+  }
+}
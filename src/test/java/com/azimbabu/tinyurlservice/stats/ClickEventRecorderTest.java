@@ -0,0 +1,172 @@
+package com.azimbabu.tinyurlservice.stats;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.model.ClickEvent;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ClickEventRecorderTest {
+
+  @Mock private Session session;
+
+  private SimpleMeterRegistry meterRegistry;
+
+  private ClickEventRecorder clickEventRecorder;
+
+  @BeforeEach
+  void setUp() {
+    initMocks(this);
+    meterRegistry = new SimpleMeterRegistry();
+    clickEventRecorder =
+        new ClickEventRecorder(
+            session,
+            TinyUrlProperties.builder()
+                .clickEventBufferSize(4)
+                .clickEventBatchSize(50)
+                .clickEventMaxInFlight(2)
+                .build(),
+            meterRegistry);
+  }
+
+  @Test
+  void dropsWhenFull() {
+    for (int i = 0; i < 4; i++) {
+      assertTrue(clickEventRecorder.record("abc1234", null, "curl"));
+    }
+    assertFalse(clickEventRecorder.record("abc1234", null, "curl"));
+
+    assertEquals(4, clickEventRecorder.pending());
+    assertEquals(4.0, meterRegistry.get("tinyurl.click.events.lag").gauge().value());
+    assertEquals(1.0, meterRegistry.get("tinyurl.click.events.dropped").counter().count());
+  }
+
+  @Test
+  void groupByPartition() {
+    long day = 86_400_000L;
+    List<ClickEvent> clickEvents =
+        List.of(
+            buildClickEvent("abc1234", day),
+            buildClickEvent("xyz7890", day + 1),
+            buildClickEvent("abc1234", day + 2),
+            buildClickEvent("abc1234", 2 * day));
+
+    Map<String, List<ClickEvent>> partitions = ClickEventRecorder.groupByPartition(clickEvents);
+
+    assertEquals(3, partitions.size());
+    assertEquals(2, partitions.get("1/abc1234").size());
+    assertEquals(1, partitions.get("1/xyz7890").size());
+    assertEquals(1, partitions.get("2/abc1234").size());
+  }
+
+  @Test
+  void flushCapsBatchesInFlight() throws Exception {
+    List<Runnable> completions = new CopyOnWriteArrayList<>();
+    doReturn(mock(PreparedStatement.class, RETURNS_MOCKS)).when(session).prepare(anyString());
+    doAnswer(invocation -> pendingFuture(completions))
+        .when(session)
+        .executeAsync(any(Statement.class));
+    // three partitions, one batch each
+    for (int i = 0; i < 3; i++) {
+      clickEventRecorder.record("abc123" + i, null, "curl");
+    }
+
+    Thread flush = new Thread(clickEventRecorder::flush);
+    flush.start();
+
+    // verify that the third batch waits for one of the first two to complete
+    verify(session, timeout(1000).times(2)).executeAsync(any(Statement.class));
+    Thread.sleep(100);
+    verify(session, times(2)).executeAsync(any(Statement.class));
+
+    while (flush.isAlive()) {
+      for (Runnable completion : completions) {
+        completions.remove(completion);
+        completion.run();
+      }
+      flush.join(10);
+    }
+    verify(session, times(3)).executeAsync(any(Statement.class));
+    assertEquals(3.0, meterRegistry.get("tinyurl.click.events.written").counter().count());
+  }
+
+  @Test
+  void flushesOneAtATime() throws Exception {
+    List<Runnable> completions = new CopyOnWriteArrayList<>();
+    doReturn(mock(PreparedStatement.class, RETURNS_MOCKS)).when(session).prepare(anyString());
+    doAnswer(invocation -> pendingFuture(completions))
+        .when(session)
+        .executeAsync(any(Statement.class));
+    clickEventRecorder.record("abc1230", null, "curl");
+    Thread scheduledFlush = new Thread(clickEventRecorder::flush);
+    scheduledFlush.start();
+    verify(session, timeout(1000).times(1)).executeAsync(any(Statement.class));
+
+    // the shutdown flush waits for the scheduled one instead of draining the buffer alongside it
+    clickEventRecorder.record("abc1231", null, "curl");
+    Thread shutdownFlush = new Thread(clickEventRecorder::flush);
+    shutdownFlush.start();
+    Thread.sleep(100);
+    assertEquals(Thread.State.BLOCKED, shutdownFlush.getState());
+    assertEquals(1, clickEventRecorder.pending());
+
+    while (scheduledFlush.isAlive() || shutdownFlush.isAlive()) {
+      for (Runnable completion : completions) {
+        completions.remove(completion);
+        completion.run();
+      }
+      shutdownFlush.join(10);
+    }
+    verify(session, times(2)).executeAsync(any(Statement.class));
+    assertEquals(2.0, meterRegistry.get("tinyurl.click.events.written").counter().count());
+  }
+
+  @Test
+  void flushWithoutEvents() {
+    clickEventRecorder.flush();
+
+    // verify that nothing is written when there were no redirects
+    verifyNoInteractions(session);
+  }
+
+  /** A future that completes when the added completion is run. */
+  private static ResultSetFuture pendingFuture(List<Runnable> completions) throws Exception {
+    ResultSetFuture future = mock(ResultSetFuture.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    doReturn(true).when(future).isDone();
+    doReturn(resultSet).when(future).get();
+    doReturn(resultSet).when(future).getUninterruptibly();
+    doAnswer(
+            invocation -> {
+              Runnable listener = invocation.getArgument(0);
+              Executor executor = invocation.getArgument(1);
+              completions.add(() -> executor.execute(listener));
+              return null;
+            })
+        .when(future)
+        .addListener(any(Runnable.class), any(Executor.class));
+    return future;
+  }
+
+  private ClickEvent buildClickEvent(String shortUrl, long clickedAt) {
+    return ClickEvent.builder().shortUrl(shortUrl).clickedAt(new Date(clickedAt)).build();
+  }
+}
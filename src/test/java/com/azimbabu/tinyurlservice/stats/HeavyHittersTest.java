@@ -0,0 +1,79 @@
+package com.azimbabu.tinyurlservice.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HeavyHittersTest {
+
+  @Test
+  void tracksHeavyKeys() {
+    HeavyHitters heavyHitters = new HeavyHitters(20, 4096, 4);
+    Random random = new Random(42);
+
+    // 10 heavy keys with roughly 10000 down to 1000 hits among 50000 single hit keys, with a
+    // snapshot every 100 keys like the periodic snapshots of the tracker
+    for (int i = 0; i < 50_000; i++) {
+      if (i % 100 == 0) {
+        heavyHitters.snapshot();
+      }
+      heavyHitters.add("light" + i);
+      if (random.nextInt(5) == 0) {
+        int heavy = random.nextInt(10);
+        for (int j = 0; j <= heavy; j++) {
+          heavyHitters.add("heavy" + j);
+        }
+      }
+    }
+
+    Map<String, Long> snapshot = heavyHitters.snapshot();
+    assertTrue(snapshot.size() <= 20);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(snapshot.containsKey("heavy" + i), "heavy" + i + " missing");
+    }
+  }
+
+  @Test
+  void snapshotKeepsTopCandidates() {
+    HeavyHitters heavyHitters = new HeavyHitters(2, 1024, 4);
+    heavyHitters.add("low", 1);
+    heavyHitters.add("middle", 2);
+    heavyHitters.add("high", 3);
+
+    assertEquals(Set.of("middle", "high"), heavyHitters.snapshot().keySet());
+
+    // a key not beating the weakest kept candidate doesn't become one
+    heavyHitters.add("new", 2);
+    assertEquals(Set.of("middle", "high"), heavyHitters.snapshot().keySet());
+
+    // a key beating it replaces it on the next snapshot
+    heavyHitters.add("new", 2);
+    assertEquals(Set.of("new", "high"), heavyHitters.snapshot().keySet());
+  }
+
+  @Test
+  void keysWithSameHashCodeCountedApart() {
+    HeavyHitters heavyHitters = new HeavyHitters(10, 1024, 4);
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+
+    heavyHitters.add("Aa", 100);
+
+    assertEquals(100, heavyHitters.estimate("Aa"));
+    assertEquals(0, heavyHitters.estimate("BB"));
+  }
+
+  @Test
+  void estimateNeverUndercounts() {
+    HeavyHitters heavyHitters = new HeavyHitters(10, 256, 4);
+    for (int i = 0; i < 1000; i++) {
+      heavyHitters.add("key" + (i % 100));
+    }
+    for (int i = 0; i < 100; i++) {
+      assertTrue(heavyHitters.estimate("key" + i) >= 10);
+    }
+  }
+}
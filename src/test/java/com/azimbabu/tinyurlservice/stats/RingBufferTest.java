@@ -0,0 +1,70 @@
+package com.azimbabu.tinyurlservice.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RingBufferTest {
+
+  @Test
+  void rejectsWhenFull() {
+    RingBuffer<Integer> ringBuffer = new RingBuffer<>(3);
+    assertEquals(4, ringBuffer.capacity());
+
+    for (int i = 0; i < 4; i++) {
+      assertTrue(ringBuffer.offer(i));
+    }
+    assertFalse(ringBuffer.offer(4));
+
+    List<Integer> elements = new ArrayList<>();
+    assertEquals(2, ringBuffer.drainTo(elements, 2));
+    assertEquals(List.of(0, 1), elements);
+    assertTrue(ringBuffer.offer(5));
+    assertEquals(3, ringBuffer.size());
+  }
+
+  @Test
+  void concurrentProducers() throws InterruptedException {
+    int producers = 4;
+    int perProducer = 100_000;
+    RingBuffer<Integer> ringBuffer = new RingBuffer<>(1024);
+    ExecutorService executorService = Executors.newFixedThreadPool(producers);
+    CountDownLatch done = new CountDownLatch(producers);
+
+    for (int p = 0; p < producers; p++) {
+      int first = p * perProducer;
+      executorService.execute(
+          () -> {
+            for (int i = first; i < first + perProducer; i++) {
+              while (!ringBuffer.offer(i)) {
+                Thread.onSpinWait();
+              }
+            }
+            done.countDown();
+          });
+    }
+
+    Set<Integer> consumed = new HashSet<>();
+    List<Integer> elements = new ArrayList<>();
+    while (consumed.size() < producers * perProducer) {
+      elements.clear();
+      ringBuffer.drainTo(elements, 256);
+      consumed.addAll(elements);
+    }
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    executorService.shutdown();
+
+    // verify that every element arrived exactly once
+    assertEquals(producers * perProducer, consumed.size());
+    assertEquals(0, ringBuffer.size());
+  }
+}
@@ -0,0 +1,122 @@
+package com.azimbabu.tinyurlservice.stats;
+
+import com.azimbabu.tinyurlservice.config.TinyUrlProperties;
+import com.azimbabu.tinyurlservice.dto.TopLink;
+import com.azimbabu.tinyurlservice.model.TopLinksSnapshot;
+import com.azimbabu.tinyurlservice.repository.TopLinksSnapshotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.InsertOptions;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TopLinksTrackerTest {
+
+  private static final String NODE_ID = "node-1";
+
+  @Mock private TopLinksSnapshotRepository topLinksSnapshotRepository;
+
+  @Mock private CassandraOperations cassandraOperations;
+
+  private LocalDate today;
+
+  private TopLinksTracker topLinksTracker;
+
+  @BeforeEach
+  void setUp() {
+    initMocks(this);
+    today = LocalDate.now(ZoneOffset.UTC);
+    topLinksTracker =
+        new TopLinksTracker(
+            topLinksSnapshotRepository,
+            cassandraOperations,
+            TinyUrlProperties.builder()
+                .nodeId(NODE_ID)
+                .topLinksCapacity(10)
+                .topLinksSketchWidth(1024)
+                .topLinksSketchDepth(4)
+                .build());
+  }
+
+  @Test
+  void snapshotWritesTrackedClicks() {
+    for (int i = 0; i < 3; i++) {
+      topLinksTracker.record("abc1234");
+    }
+    topLinksTracker.record("xyz7890");
+
+    topLinksTracker.snapshot();
+
+    TopLinksSnapshot snapshot = captureSnapshot();
+    assertEquals(today, snapshot.getDay());
+    assertEquals(NODE_ID, snapshot.getNodeId());
+    assertEquals(Map.of("abc1234", 3L, "xyz7890", 1L), snapshot.getClicks());
+  }
+
+  @Test
+  void snapshotRestoresOwnClicksAfterRestart() {
+    doReturn(
+            List.of(
+                buildSnapshot(today, NODE_ID, Map.of("abc1234", 5L)),
+                buildSnapshot(today, "node-2", Map.of("xyz7890", 7L))))
+        .when(topLinksSnapshotRepository)
+        .findByDay(eq(today));
+    topLinksTracker.record("abc1234");
+
+    topLinksTracker.snapshot();
+
+    // the clicks written before the restart are kept, other nodes' rows are left to them
+    assertEquals(Map.of("abc1234", 6L), captureSnapshot().getClicks());
+  }
+
+  @Test
+  void topLinksMergedAcrossNodesAndDays() {
+    doReturn(
+            List.of(
+                buildSnapshot(today, "node-2", Map.of("abc1234", 10L)),
+                buildSnapshot(today, "node-3", Map.of("abc1234", 5L, "xyz7890", 2L))))
+        .when(topLinksSnapshotRepository)
+        .findByDay(eq(today));
+    doReturn(List.of(buildSnapshot(today.minusDays(3), "node-2", Map.of("pqr4567", 20L))))
+        .when(topLinksSnapshotRepository)
+        .findByDay(eq(today.minusDays(3)));
+
+    topLinksTracker.snapshot();
+
+    assertEquals(
+        List.of(new TopLink("abc1234", 15), new TopLink("xyz7890", 2)),
+        topLinksTracker.getTopLinks(StatsPeriod.DAILY));
+    assertEquals(
+        List.of(
+            new TopLink("pqr4567", 20), new TopLink("abc1234", 15), new TopLink("xyz7890", 2)),
+        topLinksTracker.getTopLinks(StatsPeriod.WEEKLY));
+  }
+
+  @Test
+  void topLinksEmptyBeforeFirstSnapshot() {
+    assertTrue(topLinksTracker.getTopLinks(StatsPeriod.MONTHLY).isEmpty());
+  }
+
+  private TopLinksSnapshot captureSnapshot() {
+    ArgumentCaptor<TopLinksSnapshot> snapshot = ArgumentCaptor.forClass(TopLinksSnapshot.class);
+    verify(cassandraOperations).insert(snapshot.capture(), any(InsertOptions.class));
+    return snapshot.getValue();
+  }
+
+  private TopLinksSnapshot buildSnapshot(
+      LocalDate day, String nodeId, Map<String, Long> clicks) {
+    return TopLinksSnapshot.builder().day(day).nodeId(nodeId).clicks(clicks).build();
+  }
+}